@@ -0,0 +1,119 @@
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.time.LocalTime;
+import java.util.List;
+
+// The application classes live in the default package, which code in a named package (and so
+// every JMH benchmark) cannot name. These handles bind to them once at class init; as static
+// finals they are JIT constants, so calls through them inline like direct calls.
+final class Core {
+    static final MethodHandle PUNE; // () -> MetroNetwork
+    static final MethodHandle ENGINE; // (MetroNetwork) -> RoutingEngine
+    static final MethodHandle SIZE; // (MetroNetwork) -> int
+    static final MethodHandle ROUTE; // (RoutingEngine, int, int) -> Route
+    static final MethodHandle ROUTE_REFERENCE; // (RoutingEngine, int, int) -> Route
+    static final MethodHandle ROUTE_ASTAR; // (RoutingEngine, int, int) -> Route
+    static final MethodHandle ROUTE_BIDIRECTIONAL; // (RoutingEngine, int, int) -> Route
+    static final MethodHandle MIN_DISTANCE_NODE; // (float[], boolean[]) -> int
+    static final MethodHandle STATION; // (MetroNetwork, String) -> int
+    static final MethodHandle GET_STATION_NAME; // (MetroNetwork, int) -> String
+    static final MethodHandle STATIONS; // (MetroNetwork) -> StationDirectory
+    static final MethodHandle FIND_BY_PREFIX; // (StationDirectory, CharSequence, int[]) -> int
+    static final MethodHandle SUGGEST; // (MetroNetwork, String, int) -> List<Suggestion>
+    static final MethodHandle LOOKUP_ROUTE; // (MetroNetwork, int, int) -> Route
+    static final MethodHandle AS_LIST; // (Route) -> List<Integer>
+    static final MethodHandle ROUTE_STATIONS; // (Route) -> int[]
+    static final MethodHandle LINES; // (MetroNetwork) -> MetroLines
+    static final MethodHandle HOP_LINES; // (MetroLines, int[]) -> int[]
+    static final MethodHandle NEW_PLANNER; // (MetroNetwork) -> RoutePlanner
+    static final MethodHandle FIND_PATH; // (RoutePlanner, Route, int[], LocalTime, StringBuilder) -> void
+    static final MethodHandle TIMETABLE; // (MetroNetwork) -> Timetable
+    static final MethodHandle EARLIEST_ARRIVAL; // (Timetable, int, int, int) -> Journey
+    static final MethodHandle K_SHORTEST; // (RoutingEngine, int, int, int) -> List<Route>
+    static final MethodHandle RAPTOR; // (MetroNetwork) -> Raptor
+    static final MethodHandle PARETO_JOURNEYS; // (Raptor, int, int, int) -> List<Journey>
+    static final MethodHandle CONTRACTION_HIERARCHY; // (MetroNetwork) -> ContractionHierarchy
+    static final MethodHandle ROUTE_CH; // (ContractionHierarchy, int, int) -> Route
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            Class<?> network = Class.forName("MetroNetwork");
+            Class<?> engine = Class.forName("RoutingEngine");
+            Class<?> route = Class.forName("Route");
+            Class<?> planner = Class.forName("RoutePlanner");
+            Class<?> timetable = Class.forName("Timetable");
+            Class<?> journey = Class.forName("Journey");
+            Class<?> raptor = Class.forName("Raptor");
+            Class<?> hierarchy = Class.forName("ContractionHierarchy");
+            Class<?> lines = Class.forName("MetroLines");
+            MethodHandles.Lookup plannerLookup = MethodHandles.privateLookupIn(planner, lookup);
+
+            PUNE = erase(lookup.findStatic(network, "pune", MethodType.methodType(network)));
+            ENGINE = erase(lookup.findVirtual(network, "engine", MethodType.methodType(engine)));
+            SIZE = erase(lookup.findVirtual(network, "size", MethodType.methodType(int.class)));
+            ROUTE = erase(lookup.findVirtual(engine, "route", MethodType.methodType(route, int.class, int.class)));
+            ROUTE_REFERENCE = erase(lookup.findVirtual(engine, "routeReference",
+                    MethodType.methodType(route, int.class, int.class)));
+            ROUTE_ASTAR = erase(lookup.findVirtual(engine, "routeAStar",
+                    MethodType.methodType(route, int.class, int.class)));
+            ROUTE_BIDIRECTIONAL = erase(lookup.findVirtual(engine, "routeBidirectional",
+                    MethodType.methodType(route, int.class, int.class)));
+            MIN_DISTANCE_NODE = lookup.findStatic(engine, "minDistanceNode",
+                    MethodType.methodType(int.class, float[].class, boolean[].class));
+            Class<?> directory = Class.forName("StationDirectory");
+            STATION = erase(lookup.findVirtual(network, "stationIndex", MethodType.methodType(int.class, String.class)));
+            GET_STATION_NAME = erase(lookup.findVirtual(network, "stationName",
+                    MethodType.methodType(String.class, int.class)));
+            STATIONS = erase(lookup.findVirtual(network, "stations", MethodType.methodType(directory)));
+            FIND_BY_PREFIX = erase(lookup.findVirtual(directory, "findByPrefix",
+                    MethodType.methodType(int.class, CharSequence.class, int[].class)));
+            SUGGEST = erase(lookup.findVirtual(network, "suggest",
+                    MethodType.methodType(List.class, String.class, int.class)));
+            LOOKUP_ROUTE = erase(lookup.findVirtual(network, "lookupRoute",
+                    MethodType.methodType(route, int.class, int.class)));
+            AS_LIST = erase(lookup.findVirtual(route, "asList", MethodType.methodType(List.class)));
+            ROUTE_STATIONS = erase(lookup.findVirtual(route, "stations", MethodType.methodType(int[].class)));
+            LINES = erase(lookup.findVirtual(network, "lines", MethodType.methodType(lines)));
+            HOP_LINES = erase(lookup.findVirtual(lines, "hopLines", MethodType.methodType(int[].class, int[].class)));
+            NEW_PLANNER = erase(lookup.findConstructor(planner, MethodType.methodType(void.class, network)));
+            FIND_PATH = erase(plannerLookup.findVirtual(planner, "findPath", MethodType.methodType(void.class,
+                    route, int[].class, LocalTime.class, StringBuilder.class)));
+            TIMETABLE = erase(lookup.findVirtual(network, "timetable", MethodType.methodType(timetable)));
+            EARLIEST_ARRIVAL = erase(lookup.findVirtual(timetable, "earliestArrival",
+                    MethodType.methodType(journey, int.class, int.class, int.class)));
+            K_SHORTEST = erase(lookup.findVirtual(engine, "kShortestRoutes",
+                    MethodType.methodType(List.class, int.class, int.class, int.class)));
+            RAPTOR = erase(lookup.findVirtual(network, "raptor", MethodType.methodType(raptor)));
+            PARETO_JOURNEYS = erase(lookup.findVirtual(raptor, "paretoJourneys",
+                    MethodType.methodType(List.class, int.class, int.class, int.class)));
+            CONTRACTION_HIERARCHY = erase(lookup.findVirtual(network, "contractionHierarchy",
+                    MethodType.methodType(hierarchy)));
+            ROUTE_CH = erase(lookup.findVirtual(hierarchy, "route", MethodType.methodType(route, int.class, int.class)));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private Core() {
+    }
+
+    // Replaces default-package types in the signature with Object so callers can use invokeExact
+    private static MethodHandle erase(MethodHandle handle) {
+        MethodType type = handle.type();
+        for (int i = 0; i < type.parameterCount(); i++) {
+            if (isAppClass(type.parameterType(i)))
+                type = type.changeParameterType(i, Object.class);
+        }
+        if (isAppClass(type.returnType()))
+            type = type.changeReturnType(Object.class);
+        return handle.asType(type);
+    }
+
+    private static boolean isAppClass(Class<?> type) {
+        return !type.isPrimitive() && !type.isArray() && type.getPackageName().isEmpty();
+    }
+}
@@ -0,0 +1,250 @@
+package bench;
+
+import java.time.LocalTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Routing core and text rendering over every ordered station pair (30 * 29 = 870).
+// Scores are per pair (or per lookup), so they compare directly across engine changes.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RoutingBenchmark {
+    static final int PAIRS = 870;
+    static final int STATIONS = 30;
+    static final int NAME_LOOKUPS = 34;
+
+    // Every spelling the UI accepts today, including aliases and odd casing
+    static final String[] LOOKUP_NAMES = {
+            "PCMC", "Sant Tukaram Nagar", "bhosari", "Nashik Phata", "Bhosari/Nashik Phata", "Kasarwadi",
+            "Phugewadi", "Dapodi", "Bopodi", "Khadaki", "Range Hill", "Shivaji Nagar", "shivajinagar",
+            "Budhwar Peth", "Mandai", "Swargate", "Chandani Chowk", "Vanaz", "Anand Nagar", "Ideal colony",
+            "Nal Stop", "Garware College", "Deccan Gymkhana", "Chhatrapati Sambhaji Udyan", "PMC",
+            "Civil Court", "Mangalwar Peth", "Pune Railway Station", "Ruby Hall Clinic", "Bund Garden",
+            "Yerawada", "Kalayani Nagar", "  RAMWADI  ", "Hinjewadi" };
+
+    static final String[] PREFIXES = { "p", "pu", "pun", "pune", "s", "sw", "ci", "civi", "ra", "b" };
+    static final int PREFIXES_PER_INVOCATION = 10;
+
+    // Misspellings, partial names and aliases as typed into the station boxes
+    static final String[] MISSPELLINGS = { "swargte", "shivjinagar", "nashik", "kalyani nagar", "dec", "bund gardn",
+            "yerwada", "mandia", "pune stn", "hinjewadi" };
+    static final int SUGGESTIONS_PER_INVOCATION = 10;
+
+    Object network;
+    Object engine;
+    Object planner;
+    Object stations;
+    Object timetable;
+    Object raptor;
+    Object hierarchy;
+    int[] departures;
+    int[] prefixMatches;
+    int[] sources;
+    int[] destinations;
+    Object[] routes;
+    int[][] hopLines;
+    LocalTime now;
+    float[] dist;
+    boolean[] visited;
+
+    @Setup
+    public void setUp() throws Throwable {
+        network = (Object) Core.PUNE.invokeExact();
+        engine = (Object) Core.ENGINE.invokeExact(network);
+        planner = (Object) Core.NEW_PLANNER.invokeExact(network);
+        stations = (Object) Core.STATIONS.invokeExact(network);
+        timetable = (Object) Core.TIMETABLE.invokeExact(network);
+        raptor = (Object) Core.RAPTOR.invokeExact(network);
+        hierarchy = (Object) Core.CONTRACTION_HIERARCHY.invokeExact(network);
+        prefixMatches = new int[8];
+        int n = (int) Core.SIZE.invokeExact(network);
+        if (n != STATIONS)
+            throw new IllegalStateException("Benchmark expects " + STATIONS + " stations, network has " + n);
+
+        if (LOOKUP_NAMES.length != NAME_LOOKUPS)
+            throw new IllegalStateException("NAME_LOOKUPS is out of date");
+
+        sources = new int[PAIRS];
+        destinations = new int[PAIRS];
+        routes = new Object[PAIRS];
+        hopLines = new int[PAIRS][];
+        Object lines = (Object) Core.LINES.invokeExact(network);
+        int p = 0;
+        for (int s = 0; s < n; s++) {
+            for (int d = 0; d < n; d++) {
+                if (s == d)
+                    continue;
+                sources[p] = s;
+                destinations[p] = d;
+                routes[p] = (Object) Core.ROUTE.invokeExact(engine, s, d);
+                int[] stations = (int[]) Core.ROUTE_STATIONS.invokeExact(routes[p]);
+                hopLines[p] = (int[]) Core.HOP_LINES.invokeExact(lines, stations);
+                p++;
+            }
+        }
+        now = LocalTime.of(9, 41);
+
+        // Departures spread over the service day, one per pair
+        departures = new int[PAIRS];
+        for (int i = 0; i < PAIRS; i++) {
+            departures[i] = 6 * 3600 + (int) ((long) i * 7919 % (17 * 3600));
+        }
+
+        // Mid-search snapshot for minDistanceNode: half the stations settled
+        dist = new float[n];
+        visited = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            dist[i] = (i * 7919 % 97) / 3f;
+            visited[i] = i % 2 == 0;
+        }
+
+        // Warm the lazily built all-pairs table outside the measurement
+        Object warm = (Object) Core.LOOKUP_ROUTE.invokeExact(network, 0, 1);
+        if (warm == null)
+            throw new IllegalStateException("Route table did not load");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void dijkstra(Blackhole bh) throws Throwable {
+        for (int i = 0; i < PAIRS; i++) {
+            bh.consume((Object) Core.ROUTE.invokeExact(engine, sources[i], destinations[i]));
+        }
+    }
+
+    // Goal-directed A* with the scaled great-circle heuristic from the station coordinates
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void aStar(Blackhole bh) throws Throwable {
+        for (int i = 0; i < PAIRS; i++) {
+            bh.consume((Object) Core.ROUTE_ASTAR.invokeExact(engine, sources[i], destinations[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void bidirectional(Blackhole bh) throws Throwable {
+        for (int i = 0; i < PAIRS; i++) {
+            bh.consume((Object) Core.ROUTE_BIDIRECTIONAL.invokeExact(engine, sources[i], destinations[i]));
+        }
+    }
+
+    // Upward searches over the contraction hierarchy, shortcuts unpacked into stations
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void contractionHierarchy(Blackhole bh) throws Throwable {
+        for (int i = 0; i < PAIRS; i++) {
+            bh.consume((Object) Core.ROUTE_CH.invokeExact(hierarchy, sources[i], destinations[i]));
+        }
+    }
+
+    // Yen's k shortest loopless routes, k = 5
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void kShortest(Blackhole bh) throws Throwable {
+        for (int i = 0; i < PAIRS; i++) {
+            bh.consume((List<?>) Core.K_SHORTEST.invokeExact(engine, sources[i], destinations[i], 5));
+        }
+    }
+
+    // Connection scan over the generated full-day timetable
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void earliestArrival(Blackhole bh) throws Throwable {
+        for (int i = 0; i < PAIRS; i++) {
+            bh.consume((Object) Core.EARLIEST_ARRIVAL.invokeExact(timetable, sources[i], destinations[i], departures[i]));
+        }
+    }
+
+    // RAPTOR rounds over the same timetable, returning every arrival / changes trade-off
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void paretoJourneys(Blackhole bh) throws Throwable {
+        for (int i = 0; i < PAIRS; i++) {
+            bh.consume((List<?>) Core.PARETO_JOURNEYS.invokeExact(raptor, sources[i], destinations[i], departures[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void dijkstraReference(Blackhole bh) throws Throwable {
+        for (int i = 0; i < PAIRS; i++) {
+            bh.consume((Object) Core.ROUTE_REFERENCE.invokeExact(engine, sources[i], destinations[i]));
+        }
+    }
+
+    @Benchmark
+    public int minDistanceNode() throws Throwable {
+        return (int) Core.MIN_DISTANCE_NODE.invokeExact(dist, visited);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NAME_LOOKUPS)
+    public void station(Blackhole bh) throws Throwable {
+        for (String name : LOOKUP_NAMES) {
+            bh.consume((int) Core.STATION.invokeExact(network, name));
+        }
+    }
+
+    // Typeahead-style prefixes of one to four characters
+    @Benchmark
+    @OperationsPerInvocation(PREFIXES_PER_INVOCATION)
+    public void stationPrefix(Blackhole bh) throws Throwable {
+        for (String prefix : PREFIXES) {
+            bh.consume((int) Core.FIND_BY_PREFIX.invokeExact(stations, (CharSequence) prefix, prefixMatches));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SUGGESTIONS_PER_INVOCATION)
+    public void suggest(Blackhole bh) throws Throwable {
+        for (String typed : MISSPELLINGS) {
+            bh.consume((List<?>) Core.SUGGEST.invokeExact(network, typed, 5));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STATIONS)
+    public void getStationName(Blackhole bh) throws Throwable {
+        for (int i = 0; i < STATIONS; i++) {
+            bh.consume((String) Core.GET_STATION_NAME.invokeExact(network, i));
+        }
+    }
+
+    // Rendering only: routes are computed in setUp
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void findPath(Blackhole bh) throws Throwable {
+        for (int i = 0; i < PAIRS; i++) {
+            StringBuilder result = new StringBuilder();
+            Core.FIND_PATH.invokeExact(planner, routes[i], hopLines[i], now, result);
+            bh.consume(result);
+        }
+    }
+
+    // Next-hop table walk plus boxing into the List<Integer> the map highlighter consumes
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void getPathAsList(Blackhole bh) throws Throwable {
+        for (int i = 0; i < PAIRS; i++) {
+            Object route = (Object) Core.LOOKUP_ROUTE.invokeExact(network, sources[i], destinations[i]);
+            bh.consume(Core.AS_LIST.invoke(route));
+        }
+    }
+}
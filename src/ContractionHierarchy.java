@@ -0,0 +1,695 @@
+// Contraction hierarchy over a MetroGraph for point-to-point queries that settle only a handful of nodes.
+// Preprocessing contracts nodes one by one, least important first (fewest shortcuts added, fewest
+// neighbours already gone), inserting a shortcut wherever the only shortest path between two neighbours ran
+// through the contracted node. A query then searches upward in rank from both ends and unpacks the
+// shortcuts of the best meeting point back into stations. Like NextHopTable, the hierarchy is one
+// little-endian int buffer that can be written to disk and memory-mapped.
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+public final class ContractionHierarchy {
+    private static final int MAGIC = 0x504D4348; // "PMCH"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32; // magic, version, nodes, edges, up, down, graph fingerprint
+
+    // -Dmetro.ch.witness=<nodes> bounds each witness search; a search that gives up adds the shortcut anyway
+    static final int WITNESS_SETTLE_LIMIT = Integer.getInteger("metro.ch.witness", 500);
+
+    // Edge records: from, to, the two edges a shortcut stands for (-1 for a track edge), weight bits
+    private static final int EDGE_STRIDE = 5;
+    // Search adjacency entries: neighbour, weight bits, edge id
+    private static final int ARC_STRIDE = 3;
+
+    private final int n;
+    private final int edges;
+    private final long fingerprint;
+    private final IntBuffer data;
+    // Section starts within data, in file order
+    private final int rankAt;
+    private final int upOffsetsAt; // up: edges to higher-ranked nodes, searched forward from the source
+    private final int upAt;
+    private final int downOffsetsAt; // down: edges from higher-ranked nodes, searched backward from the destination
+    private final int downAt;
+    private final int edgesAt;
+
+    private final ThreadLocal<QueryContext> contexts;
+
+    // Filled in by build(), zero for a mapped hierarchy
+    private long buildNanos;
+    private int shortcuts;
+
+    private ContractionHierarchy(int n, int edges, int upCount, int downCount, long fingerprint, IntBuffer data) {
+        this.n = n;
+        this.edges = edges;
+        this.fingerprint = fingerprint;
+        this.data = data;
+        rankAt = 0;
+        upOffsetsAt = rankAt + n;
+        upAt = upOffsetsAt + n + 1;
+        downOffsetsAt = upAt + ARC_STRIDE * upCount;
+        downAt = downOffsetsAt + n + 1;
+        edgesAt = downAt + ARC_STRIDE * downCount;
+        this.contexts = ThreadLocal.withInitial(() -> new QueryContext(n));
+    }
+
+    // Builds the hierarchy on the heap; -Dmetro.ch=<file> goes through mapOrBuild() instead
+    public static ContractionHierarchy build(MetroGraph graph) {
+        long start = System.nanoTime();
+        ContractionHierarchy hierarchy = new Contractor(graph).run();
+        hierarchy.buildNanos = System.nanoTime() - start;
+        return hierarchy;
+    }
+
+    // Opens the hierarchy at path, building and writing it first if it is missing or was built for another graph
+    public static ContractionHierarchy mapOrBuild(MetroGraph graph, Path path) throws IOException {
+        if (Files.exists(path)) {
+            ContractionHierarchy mapped = map(path);
+            if (mapped.n == graph.size() && mapped.fingerprint == graph.fingerprint())
+                return mapped;
+        }
+        ContractionHierarchy built = build(graph);
+        built.write(path);
+        ContractionHierarchy mapped = map(path);
+        mapped.buildNanos = built.buildNanos;
+        mapped.shortcuts = built.shortcuts;
+        return mapped;
+    }
+
+    // Maps a previously written hierarchy read-only
+    public static ContractionHierarchy map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(buffer, path.toString());
+        }
+    }
+
+    static ContractionHierarchy read(ByteBuffer buffer, String source) throws IOException {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC)
+            throw new IOException("Not a contraction hierarchy: " + source);
+        if (buffer.getInt(4) != VERSION)
+            throw new IOException("Unsupported contraction hierarchy version " + buffer.getInt(4) + " in " + source);
+        int n = buffer.getInt(8);
+        int edges = buffer.getInt(12);
+        int up = buffer.getInt(16);
+        int down = buffer.getInt(20);
+        if (n < 0 || edges < 0 || up < 0 || down < 0 || buffer.limit() != byteSize(n, edges, up, down))
+            throw new IOException("Truncated contraction hierarchy: " + source);
+        IntBuffer data = buffer.slice(HEADER_BYTES, buffer.limit() - HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN)
+                .asIntBuffer();
+        return new ContractionHierarchy(n, edges, up, down, buffer.getLong(24), data);
+    }
+
+    // Writes through a temporary file so a reader never maps a half-written hierarchy
+    public void write(Path path) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        long size = byteSize(n, edges, upCount(), downCount());
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, n).putInt(12, edges).putInt(16, upCount())
+                    .putInt(20, downCount()).putLong(24, fingerprint);
+            buffer.slice(HEADER_BYTES, (int) (size - HEADER_BYTES)).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer()
+                    .put(0, data, 0, data.limit());
+            buffer.force();
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static long byteSize(int n, int edges, int up, int down) {
+        return HEADER_BYTES + 4L * (n + 2L * (n + 1) + (long) ARC_STRIDE * (up + down) + (long) EDGE_STRIDE * edges);
+    }
+
+    // Builds (or maps) the hierarchy for the configured network and reports what it cost and how fast it answers
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: java -cp bin ContractionHierarchy <hierarchy-file>");
+            System.exit(2);
+        }
+        MetroNetwork network = MetroNetwork.load();
+        ContractionHierarchy hierarchy = mapOrBuild(network.graph(), Paths.get(args[0]));
+        System.out.println(hierarchy.report());
+
+        Random random = new Random(42);
+        int n = hierarchy.size();
+        int queries = 100_000;
+        int[] pairs = new int[2 * queries];
+        for (int i = 0; i < pairs.length; i++) {
+            pairs[i] = random.nextInt(n);
+        }
+        long settled = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            hierarchy.route(pairs[2 * i], pairs[2 * i + 1]);
+            settled += hierarchy.lastSettledCount();
+        }
+        double micros = (System.nanoTime() - start) / 1e3 / queries;
+        System.out.printf("%d random queries: %.2f us each, %.1f nodes settled on average%n", queries, micros,
+                (double) settled / queries);
+    }
+
+    public String report() {
+        if (buildNanos == 0)
+            return String.format("Mapped contraction hierarchy: %d nodes, %d edges", n, edges);
+        return String.format("Contracted %d nodes in %d ms: %d shortcuts, %d edges in the hierarchy", n,
+                buildNanos / 1_000_000, shortcuts, edges);
+    }
+
+    public int size() {
+        return n;
+    }
+
+    public int edgeCount() {
+        return edges;
+    }
+
+    // Shortcuts added by build(), or -1 for a mapped hierarchy whose build statistics are not kept
+    public int shortcutCount() {
+        return buildNanos == 0 ? -1 : shortcuts;
+    }
+
+    public long buildMillis() {
+        return buildNanos / 1_000_000;
+    }
+
+    long fingerprint() {
+        return fingerprint;
+    }
+
+    public int rank(int node) {
+        return data.get(rankAt + node);
+    }
+
+    private int upCount() {
+        return data.get(upOffsetsAt + n);
+    }
+
+    private int downCount() {
+        return data.get(downOffsetsAt + n);
+    }
+
+    // Shortest route: upward searches from both ends, then the shortcuts on the best meeting point unpacked
+    public Route route(int source, int destination) {
+        if (source < 0 || source >= n || destination < 0 || destination >= n)
+            throw new IllegalArgumentException("Unknown station index: " + (source < 0 || source >= n ? source : destination));
+        QueryContext ctx = contexts.get();
+        ctx.reset();
+        IntBuffer data = this.data;
+        IndexedMinHeap forward = ctx.forwardQueue;
+        IndexedMinHeap backward = ctx.backwardQueue;
+        ctx.reachForward(source, 0, -1);
+        forward.insertOrDecrease(source, 0);
+        ctx.reachBackward(destination, 0, -1);
+        backward.insertOrDecrease(destination, 0);
+        float best = Float.MAX_VALUE;
+        int meet = -1;
+
+        while (!forward.isEmpty() || !backward.isEmpty()) {
+            float forwardKey = forward.isEmpty() ? Float.MAX_VALUE : forward.peekKey();
+            float backwardKey = backward.isEmpty() ? Float.MAX_VALUE : backward.peekKey();
+            if (Math.min(forwardKey, backwardKey) >= best)
+                break;
+            ctx.settled++;
+            boolean isForward = forwardKey <= backwardKey;
+            int u = isForward ? forward.poll() : backward.poll();
+            float base = isForward ? ctx.forwardDist[u] : ctx.backwardDist[u];
+            float through = base + (isForward ? ctx.backwardDistance(u) : ctx.forwardDistance(u));
+            if (through < best) {
+                best = through;
+                meet = u;
+            }
+            int offsets = isForward ? upOffsetsAt : downOffsetsAt;
+            int arcs = isForward ? upAt : downAt;
+            for (int a = data.get(offsets + u), end = data.get(offsets + u + 1); a < end; a++) {
+                int at = arcs + a * ARC_STRIDE;
+                int v = data.get(at);
+                float candidate = base + Float.intBitsToFloat(data.get(at + 1));
+                if (isForward) {
+                    if (candidate < ctx.forwardDistance(v)) {
+                        ctx.reachForward(v, candidate, data.get(at + 2));
+                        forward.insertOrDecrease(v, candidate);
+                    }
+                } else if (candidate < ctx.backwardDistance(v)) {
+                    ctx.reachBackward(v, candidate, data.get(at + 2));
+                    backward.insertOrDecrease(v, candidate);
+                }
+            }
+        }
+        if (meet < 0)
+            return Route.notFound(source, destination);
+        return unpack(ctx, source, destination, meet);
+    }
+
+    // Nodes settled by the calling thread's last route()
+    public int lastSettledCount() {
+        return contexts.get().settled;
+    }
+
+    // Source to meeting point over forward edges, meeting point to destination over backward ones, every
+    // shortcut expanded into the track edges it stands for; the length is summed from the source in path
+    // order, like a one-way search sums it
+    private Route unpack(QueryContext ctx, int source, int destination, int meet) {
+        int[] path = ctx.pathEdges;
+        int count = 0;
+        for (int node = meet; node != source;) {
+            int edge = ctx.forwardEdge[node];
+            path[count++] = edge;
+            node = data.get(edgesAt + edge * EDGE_STRIDE);
+        }
+        // Forward edges were collected meeting point first; flip them into travel order
+        for (int i = 0, j = count - 1; i < j; i++, j--) {
+            int swap = path[i];
+            path[i] = path[j];
+            path[j] = swap;
+        }
+        for (int node = meet; node != destination;) {
+            int edge = ctx.backwardEdge[node];
+            path[count++] = edge;
+            node = data.get(edgesAt + edge * EDGE_STRIDE + 1);
+        }
+
+        int[] stations = ctx.stations;
+        int length = 0;
+        stations[length++] = source;
+        float distance = 0;
+        int[] stack = ctx.stack;
+        for (int i = 0; i < count; i++) {
+            int top = 0;
+            stack[top++] = path[i];
+            while (top > 0) {
+                int edge = stack[--top];
+                int at = edgesAt + edge * EDGE_STRIDE;
+                int first = data.get(at + 2);
+                if (first < 0) {
+                    distance += Float.intBitsToFloat(data.get(at + 4));
+                    stations[length++] = data.get(at + 1);
+                } else {
+                    stack[top++] = data.get(at + 3);
+                    stack[top++] = first;
+                }
+            }
+        }
+        return new Route(source, destination, Arrays.copyOf(stations, length), distance);
+    }
+
+    // Per-thread search state, stamped per query
+    private static final class QueryContext {
+        final float[] forwardDist;
+        final float[] backwardDist;
+        final int[] forwardEdge; // edge each search reached the node by
+        final int[] backwardEdge;
+        final int[] forwardStamp;
+        final int[] backwardStamp;
+        final IndexedMinHeap forwardQueue;
+        final IndexedMinHeap backwardQueue;
+        final int[] pathEdges;
+        final int[] stations;
+        int[] stack;
+        int generation;
+        int settled;
+
+        QueryContext(int n) {
+            forwardDist = new float[n];
+            backwardDist = new float[n];
+            forwardEdge = new int[n];
+            backwardEdge = new int[n];
+            forwardStamp = new int[n];
+            backwardStamp = new int[n];
+            forwardQueue = new IndexedMinHeap(n);
+            backwardQueue = new IndexedMinHeap(n);
+            pathEdges = new int[Math.max(1, n)];
+            stations = new int[Math.max(1, n)];
+            stack = new int[Math.max(2, n)];
+        }
+
+        void reset() {
+            forwardQueue.clear();
+            backwardQueue.clear();
+            settled = 0;
+            if (++generation == 0) {
+                Arrays.fill(forwardStamp, 0);
+                Arrays.fill(backwardStamp, 0);
+                generation = 1;
+            }
+        }
+
+        float forwardDistance(int node) {
+            return forwardStamp[node] == generation ? forwardDist[node] : Float.MAX_VALUE;
+        }
+
+        float backwardDistance(int node) {
+            return backwardStamp[node] == generation ? backwardDist[node] : Float.MAX_VALUE;
+        }
+
+        void reachForward(int node, float distance, int edge) {
+            forwardStamp[node] = generation;
+            forwardDist[node] = distance;
+            forwardEdge[node] = edge;
+        }
+
+        void reachBackward(int node, float distance, int edge) {
+            backwardStamp[node] = generation;
+            backwardDist[node] = distance;
+            backwardEdge[node] = edge;
+        }
+    }
+
+    // ===== PREPROCESSING =====
+
+    // Mutable working graph for contraction: edge records plus live in/out lists per uncontracted node
+    private static final class Contractor {
+        final int n;
+        final long fingerprint;
+        int edgeCount;
+        int[] from;
+        int[] to;
+        int[] firstChild;
+        int[] secondChild;
+        float[] weight;
+        boolean[] upward; // finalized as an up edge of its lower end
+        boolean[] downward; // finalized as a down edge of its lower end
+        int shortcuts;
+
+        final int[][] out;
+        final int[] outSize;
+        final int[][] in;
+        final int[] inSize;
+        final int[] contractedNeighbours;
+        final int[] depth; // longest chain of contracted nodes below, keeps the contraction spread out
+        final int[] rank;
+
+        // Witness search scratch
+        final float[] witnessDist;
+        final int[] witnessStamp;
+        final int[] witnessTarget; // stamped for the nodes a search still has to settle
+        final IndexedMinHeap witnessQueue;
+        int witnessGeneration;
+        // Per-contraction scratch: the nodes behind the contracted one and the edges leading to them
+        int[] targets = new int[16];
+        int[] targetEdges = new int[16];
+
+        Contractor(MetroGraph graph) {
+            n = graph.size();
+            fingerprint = graph.fingerprint();
+            int capacity = Math.max(16, graph.edgeCount() * 2);
+            from = new int[capacity];
+            to = new int[capacity];
+            firstChild = new int[capacity];
+            secondChild = new int[capacity];
+            weight = new float[capacity];
+            out = new int[n][];
+            in = new int[n][];
+            outSize = new int[n];
+            inSize = new int[n];
+            for (int u = 0; u < n; u++) {
+                out[u] = new int[4];
+                in[u] = new int[4];
+            }
+            contractedNeighbours = new int[n];
+            depth = new int[n];
+            rank = new int[n];
+            witnessDist = new float[n];
+            witnessStamp = new int[n];
+            witnessTarget = new int[n];
+            witnessQueue = new IndexedMinHeap(Math.max(1, n));
+
+            // Track edges, keeping the lightest of any parallel ones
+            for (int u = 0; u < n; u++) {
+                for (int e = graph.firstEdge(u), end = graph.endEdge(u); e < end; e++) {
+                    int v = graph.target(e);
+                    if (v != u)
+                        addEdge(u, v, graph.weight(e), -1, -1);
+                }
+            }
+        }
+
+        ContractionHierarchy run() {
+            IndexedMinHeap queue = new IndexedMinHeap(Math.max(1, n));
+            for (int v = 0; v < n; v++) {
+                queue.insertOrDecrease(v, priority(v));
+            }
+            upward = new boolean[edgeCount];
+            downward = new boolean[edgeCount];
+            int next = 0;
+            while (!queue.isEmpty()) {
+                int v = queue.poll();
+                // Lazy update: neighbours are not re-simulated after each contraction, so re-check before contracting
+                float p = priority(v);
+                if (!queue.isEmpty() && p > queue.peekKey()) {
+                    queue.insertOrDecrease(v, p);
+                    continue;
+                }
+                rank[v] = next++;
+                contract(v);
+                for (int i = 0; i < outSize[v]; i++) {
+                    touch(v, to[out[v][i]]);
+                }
+                for (int i = 0; i < inSize[v]; i++) {
+                    touch(v, from[in[v][i]]);
+                }
+                detach(v);
+            }
+            return freeze();
+        }
+
+        private void touch(int contracted, int neighbour) {
+            contractedNeighbours[neighbour]++;
+            depth[neighbour] = Math.max(depth[neighbour], depth[contracted] + 1);
+        }
+
+        // Twice the edge difference (shortcuts added minus edges removed), plus neighbours already contracted and
+        // depth; the usual weighting, which on grids gave fewer shortcuts and a faster build than edge difference alone
+        private float priority(int v) {
+            int added = shortcutsFor(v, false);
+            return 2 * (added - inSize[v] - outSize[v]) + contractedNeighbours[v] + depth[v];
+        }
+
+        private void contract(int v) {
+            for (int i = 0; i < outSize[v]; i++) {
+                upward[out[v][i]] = true;
+            }
+            for (int i = 0; i < inSize[v]; i++) {
+                downward[in[v][i]] = true;
+            }
+            shortcutsFor(v, true);
+        }
+
+        // For every u -> v -> w, a shortcut u -> w unless a witness path avoiding v is at least as short
+        private int shortcutsFor(int v, boolean add) {
+            int count = 0;
+            for (int i = 0; i < inSize[v]; i++) {
+                int inEdge = in[v][i];
+                int u = from[inEdge];
+                int targetCount = 0;
+                float limit = 0;
+                for (int j = 0; j < outSize[v]; j++) {
+                    int outEdge = out[v][j];
+                    int w = to[outEdge];
+                    if (w == u)
+                        continue;
+                    if (targetCount == targets.length) {
+                        targets = Arrays.copyOf(targets, targetCount * 2);
+                        targetEdges = Arrays.copyOf(targetEdges, targetCount * 2);
+                    }
+                    targets[targetCount] = w;
+                    targetEdges[targetCount++] = outEdge;
+                    limit = Math.max(limit, weight[inEdge] + weight[outEdge]);
+                }
+                if (targetCount == 0)
+                    continue;
+                witnessSearch(u, v, limit, targetCount);
+                for (int j = 0; j < targetCount; j++) {
+                    int outEdge = targetEdges[j];
+                    float via = weight[inEdge] + weight[outEdge];
+                    if (witnessDistance(targets[j]) <= via)
+                        continue;
+                    count++;
+                    if (add)
+                        addShortcut(u, targets[j], via, inEdge, outEdge);
+                }
+            }
+            return count;
+        }
+
+        // Bounded Dijkstra from u over uncontracted nodes, never through v; done once the targets are settled
+        private void witnessSearch(int u, int v, float limit, int targetCount) {
+            if (++witnessGeneration == 0) {
+                Arrays.fill(witnessStamp, 0);
+                Arrays.fill(witnessTarget, 0);
+                witnessGeneration = 1;
+            }
+            for (int j = 0; j < targetCount; j++) {
+                witnessTarget[targets[j]] = witnessGeneration;
+            }
+            int remaining = targetCount;
+            IndexedMinHeap queue = witnessQueue;
+            queue.clear();
+            witnessStamp[u] = witnessGeneration;
+            witnessDist[u] = 0;
+            queue.insertOrDecrease(u, 0);
+            int settled = 0;
+            while (!queue.isEmpty() && queue.peekKey() <= limit && settled++ < WITNESS_SETTLE_LIMIT) {
+                int x = queue.poll();
+                if (witnessTarget[x] == witnessGeneration && --remaining == 0)
+                    break;
+                float base = witnessDist[x];
+                for (int i = 0; i < outSize[x]; i++) {
+                    int e = out[x][i];
+                    int y = to[e];
+                    if (y == v)
+                        continue;
+                    float candidate = base + weight[e];
+                    if (candidate < witnessDistance(y)) {
+                        witnessStamp[y] = witnessGeneration;
+                        witnessDist[y] = candidate;
+                        queue.insertOrDecrease(y, candidate);
+                    }
+                }
+            }
+        }
+
+        private float witnessDistance(int node) {
+            return witnessStamp[node] == witnessGeneration ? witnessDist[node] : Float.MAX_VALUE;
+        }
+
+        private void addShortcut(int u, int w, float via, int inEdge, int outEdge) {
+            int existing = find(u, w);
+            if (existing >= 0) {
+                if (weight[existing] <= via)
+                    return;
+                remove(out, outSize, u, existing);
+                remove(in, inSize, w, existing);
+            }
+            shortcuts++;
+            addEdge(u, w, via, inEdge, outEdge);
+        }
+
+        private void addEdge(int u, int v, float w, int first, int second) {
+            int existing = find(u, v);
+            if (existing >= 0 && first < 0) {
+                // Parallel track edge: keep the lighter one
+                if (w < weight[existing])
+                    weight[existing] = w;
+                return;
+            }
+            if (edgeCount == from.length) {
+                int capacity = edgeCount * 2;
+                from = Arrays.copyOf(from, capacity);
+                to = Arrays.copyOf(to, capacity);
+                firstChild = Arrays.copyOf(firstChild, capacity);
+                secondChild = Arrays.copyOf(secondChild, capacity);
+                weight = Arrays.copyOf(weight, capacity);
+            }
+            if (upward != null && edgeCount == upward.length) {
+                upward = Arrays.copyOf(upward, edgeCount * 2);
+                downward = Arrays.copyOf(downward, edgeCount * 2);
+            }
+            int e = edgeCount++;
+            from[e] = u;
+            to[e] = v;
+            firstChild[e] = first;
+            secondChild[e] = second;
+            weight[e] = w;
+            append(out, outSize, u, e);
+            append(in, inSize, v, e);
+        }
+
+        private int find(int u, int v) {
+            for (int i = 0; i < outSize[u]; i++) {
+                if (to[out[u][i]] == v)
+                    return out[u][i];
+            }
+            return -1;
+        }
+
+        // Removes v's edges from its neighbours' lists; v keeps none once contracted
+        private void detach(int v) {
+            for (int i = 0; i < outSize[v]; i++) {
+                int e = out[v][i];
+                remove(in, inSize, to[e], e);
+            }
+            for (int i = 0; i < inSize[v]; i++) {
+                int e = in[v][i];
+                remove(out, outSize, from[e], e);
+            }
+            outSize[v] = 0;
+            inSize[v] = 0;
+            out[v] = null;
+            in[v] = null;
+        }
+
+        private static void append(int[][] lists, int[] sizes, int node, int e) {
+            if (sizes[node] == lists[node].length)
+                lists[node] = Arrays.copyOf(lists[node], sizes[node] * 2);
+            lists[node][sizes[node]++] = e;
+        }
+
+        private static void remove(int[][] lists, int[] sizes, int node, int e) {
+            int[] list = lists[node];
+            for (int i = 0; i < sizes[node]; i++) {
+                if (list[i] == e) {
+                    list[i] = list[--sizes[node]];
+                    return;
+                }
+            }
+        }
+
+        // Lays the finished hierarchy out in file order: ranks, up arcs and down arcs in CSR form, edge records.
+        // Only edges that were live when their lower end was contracted are searched; all are kept for unpacking.
+        private ContractionHierarchy freeze() {
+            int[] upOffsets = new int[n + 1];
+            int[] downOffsets = new int[n + 1];
+            for (int e = 0; e < edgeCount; e++) {
+                if (upward[e])
+                    upOffsets[from[e] + 1]++;
+                if (downward[e])
+                    downOffsets[to[e] + 1]++;
+            }
+            for (int v = 0; v < n; v++) {
+                upOffsets[v + 1] += upOffsets[v];
+                downOffsets[v + 1] += downOffsets[v];
+            }
+            int up = upOffsets[n];
+            int down = downOffsets[n];
+            long ints = (byteSize(n, edgeCount, up, down) - HEADER_BYTES) / 4;
+            if (ints > Integer.MAX_VALUE)
+                throw new IllegalStateException("Contraction hierarchy too large for one buffer: " + ints + " ints");
+            IntBuffer data = ByteBuffer.allocateDirect((int) ints * 4).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            ContractionHierarchy hierarchy = new ContractionHierarchy(n, edgeCount, up, down, fingerprint, data);
+            hierarchy.shortcuts = shortcuts;
+
+            data.put(hierarchy.rankAt, rank, 0, n);
+            data.put(hierarchy.upOffsetsAt, upOffsets, 0, n + 1);
+            data.put(hierarchy.downOffsetsAt, downOffsets, 0, n + 1);
+            int[] upCursor = Arrays.copyOf(upOffsets, n);
+            int[] downCursor = Arrays.copyOf(downOffsets, n);
+            for (int e = 0; e < edgeCount; e++) {
+                int bits = Float.floatToIntBits(weight[e]);
+                if (upward[e]) {
+                    int at = hierarchy.upAt + upCursor[from[e]]++ * ARC_STRIDE;
+                    data.put(at, to[e]).put(at + 1, bits).put(at + 2, e);
+                }
+                if (downward[e]) {
+                    int at = hierarchy.downAt + downCursor[to[e]]++ * ARC_STRIDE;
+                    data.put(at, from[e]).put(at + 1, bits).put(at + 2, e);
+                }
+                int at = hierarchy.edgesAt + e * EDGE_STRIDE;
+                data.put(at, from[e]).put(at + 1, to[e]).put(at + 2, firstChild[e]).put(at + 3, secondChild[e])
+                        .put(at + 4, bits);
+            }
+            return hierarchy;
+        }
+    }
+}
@@ -0,0 +1,619 @@
+// Builds a MetroNetwork from a GTFS feed directory (stops, routes, trips, stop_times, transfers).
+// Files are streamed row by row, so memory follows the size of the network, not of stop_times.txt.
+// GTFS string ids are dictionary-encoded to dense ints on first sight; platforms fold into their
+// parent station. Every trip in the feed goes into one service day; calendars are not applied.
+// Run with: java -cp bin GtfsImporter <feed directory>
+//      or:   java -cp bin GtfsImporter --check data/gtfs/pune   (must match the built-in network; exits 1 if not)
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.FloatBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public final class GtfsImporter {
+    static final int DEFAULT_TRANSFER_SECONDS = 120;
+    static final float MIN_EDGE_KM = 0.01f;
+    // Track length assumed next to a stop without coordinates, about one station spacing
+    static final float UNLOCATED_EDGE_KM = 1f;
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+
+    private final Path feed;
+
+    // Dictionaries: GTFS id -> dense int
+    private final Map<String, Integer> stopIds = new HashMap<>();
+    private final Map<String, Integer> routeIds = new HashMap<>();
+    private final Map<String, Integer> tripIds = new HashMap<>();
+
+    // Per station
+    private final List<String> stationNames = new ArrayList<>();
+    private double[] latitude = new double[64];
+    private double[] longitude = new double[64];
+
+    private final List<String> routeNames = new ArrayList<>();
+    private int[] tripRoute = new int[64];
+
+    private MetroGraph.Builder graph;
+    private MetroLines.Builder lines; // one line per route, ids match route indices
+    private final Set<Long> edges = new HashSet<>();
+    private Timetable.Builder timetable;
+
+    // Stats
+    private long stopTimeRows;
+    private int connections;
+    private int footpaths;
+    private long importNanos;
+    private long peakHeapBytes;
+
+    public GtfsImporter(Path feed) {
+        this.feed = feed;
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean check = args.length == 2 && args[0].equals("--check");
+        if (args.length != 1 && !check) {
+            System.err.println("Usage: java -cp bin GtfsImporter [--check] <gtfs feed directory>");
+            System.exit(2);
+        }
+        GtfsImporter importer = new GtfsImporter(Paths.get(args[args.length - 1]));
+        MetroNetwork network = importer.load();
+        System.out.println(importer.report());
+        System.out.println("Network: " + network.size() + " stations, " + network.graph().edgeCount() + " directed edges");
+        if (check) {
+            List<String> mismatches = compare(network, MetroNetwork.pune());
+            for (String mismatch : mismatches.subList(0, Math.min(mismatches.size(), 20))) {
+                System.out.println("MISMATCH " + mismatch);
+            }
+            System.out.println(mismatches.isEmpty() ? "Feed matches the built-in network"
+                    : mismatches.size() + " mismatches against the built-in network");
+            if (!mismatches.isEmpty())
+                System.exit(1);
+        }
+    }
+
+    // Differences between an imported network and a reference, matching stations by name: station sets, lines
+    // per station, the route between every pair, every timetable connection and every footpath. Edge weights
+    // are not compared, since the importer measures track by great-circle distance.
+    static List<String> compare(MetroNetwork imported, MetroNetwork reference) {
+        List<String> mismatches = new ArrayList<>();
+        int n = imported.size();
+        if (n != reference.size())
+            mismatches.add("stations: " + n + " imported, " + reference.size() + " built in");
+        int[] toReference = new int[n];
+        for (int i = 0; i < n; i++) {
+            toReference[i] = reference.stationIndex(imported.stationName(i));
+            if (toReference[i] < 0)
+                mismatches.add("station " + imported.stationName(i) + " is not built in");
+            else if (!imported.lines().describe(i).equals(reference.lines().describe(toReference[i])))
+                mismatches.add("lines at " + imported.stationName(i) + ": " + imported.lines().describe(i) + ", built in "
+                        + reference.lines().describe(toReference[i]));
+        }
+        if (!mismatches.isEmpty())
+            return mismatches;
+
+        for (int s = 0; s < n; s++) {
+            for (int d = 0; d < n; d++) {
+                Route route = imported.engine().route(s, d);
+                Route expected = reference.engine().route(toReference[s], toReference[d]);
+                boolean same = route.isFound() == expected.isFound() && route.length() == expected.length();
+                for (int i = 0; same && i < route.length(); i++) {
+                    same = toReference[route.station(i)] == expected.station(i);
+                }
+                if (!same)
+                    mismatches.add("route " + imported.stationName(s) + " -> " + imported.stationName(d));
+            }
+        }
+
+        Timetable timetable = imported.timetable();
+        Timetable expected = reference.timetable();
+        long[] connections = new long[timetable.connectionCount()];
+        for (int c = 0; c < connections.length; c++) {
+            connections[c] = connectionKey(toReference[timetable.departureStop(c)], toReference[timetable.arrivalStop(c)],
+                    timetable.departureTime(c), timetable.arrivalTime(c));
+        }
+        long[] expectedConnections = new long[expected.connectionCount()];
+        for (int c = 0; c < expectedConnections.length; c++) {
+            expectedConnections[c] = connectionKey(expected.departureStop(c), expected.arrivalStop(c),
+                    expected.departureTime(c), expected.arrivalTime(c));
+        }
+        Arrays.sort(connections);
+        Arrays.sort(expectedConnections);
+        int extra = 0;
+        int missing = 0;
+        for (int i = 0, j = 0; i < connections.length || j < expectedConnections.length;) {
+            if (j == expectedConnections.length || (i < connections.length && connections[i] < expectedConnections[j])) {
+                extra++;
+                i++;
+            } else if (i == connections.length || connections[i] > expectedConnections[j]) {
+                missing++;
+                j++;
+            } else {
+                i++;
+                j++;
+            }
+        }
+        if (extra + missing > 0)
+            mismatches.add("timetable: " + extra + " connections not built in, " + missing + " built-in connections missing");
+        for (int a = 0; a < n; a++) {
+            for (int b = 0; b < n; b++) {
+                int walk = timetable.footpathSeconds(a, b);
+                int expectedWalk = expected.footpathSeconds(toReference[a], toReference[b]);
+                if (walk != expectedWalk)
+                    mismatches.add("footpath " + imported.stationName(a) + " -> " + imported.stationName(b) + ": "
+                            + walk + " s, built in " + expectedWalk + " s");
+            }
+        }
+        return mismatches;
+    }
+
+    // Stops in 10 bits each and times in 20 (Timetable.MAX_TIME), enough for the stations compared here
+    private static long connectionKey(int from, int to, int departure, int arrival) {
+        return ((long) from << 54) | ((long) to << 44) | ((long) departure << 20) | arrival;
+    }
+
+    public MetroNetwork load() throws IOException {
+        resetPeakHeap();
+        long start = System.nanoTime();
+
+        readStops();
+        readRoutes();
+        readTrips();
+        int n = stationNames.size();
+        graph = MetroGraph.builder(n);
+        timetable = Timetable.builder(n);
+        lines = MetroLines.builder();
+        for (String name : routeNames) {
+            lines.addLine(name);
+        }
+        readStopTimes();
+        readTransfers();
+
+        StationDirectory.Builder directory = StationDirectory.builder();
+        Set<String> usedNames = new HashSet<>();
+        for (int i = 0; i < n; i++) {
+            // Two stations may share a display name; the directory needs unique keys
+            String name = stationNames.get(i);
+            for (int k = 2; !usedNames.add(StationDirectory.normalize(name)); k++) {
+                name = stationNames.get(i) + " (" + k + ")";
+            }
+            directory.addStation(i, name);
+        }
+        float[] lat = new float[n];
+        float[] lon = new float[n];
+        for (int i = 0; i < n; i++) {
+            lat[i] = (float) latitude[i];
+            lon[i] = (float) longitude[i];
+        }
+        MetroGraph built = graph.build();
+        MetroNetwork network = new MetroNetwork(directory.build(), lines.build(built), built, timetable.build(),
+                FloatBuffer.wrap(lat), FloatBuffer.wrap(lon));
+
+        importNanos = System.nanoTime() - start;
+        peakHeapBytes = peakHeap();
+        return network;
+    }
+
+    public String report() {
+        return String.format("Imported %s in %d ms: %d stations, %d routes, %d trips, %d stop times, "
+                + "%d connections, %d footpaths, peak heap %.1f MB",
+                feed, importNanos / 1_000_000, stationNames.size(), routeNames.size(), tripIds.size(), stopTimeRows,
+                connections, footpaths, peakHeapBytes / (1024.0 * 1024.0));
+    }
+
+    public long importMillis() {
+        return importNanos / 1_000_000;
+    }
+
+    public long peakHeapBytes() {
+        return peakHeapBytes;
+    }
+
+    // ===== FILES =====
+
+    // Stations first (location_type 1 or stops without a parent), then platforms onto their parents
+    private void readStops() throws IOException {
+        Map<String, String> parentOf = new HashMap<>();
+        try (CsvFile csv = CsvFile.open(feed.resolve("stops.txt"))) {
+            int id = csv.require("stop_id");
+            int name = csv.require("stop_name");
+            int lat = csv.column("stop_lat");
+            int lon = csv.column("stop_lon");
+            int parent = csv.column("parent_station");
+            while (csv.next()) {
+                String parentId = csv.get(parent);
+                if (!parentId.isEmpty()) {
+                    parentOf.put(csv.get(id), parentId);
+                    continue;
+                }
+                int station = stationNames.size();
+                if (stopIds.putIfAbsent(csv.get(id), station) != null)
+                    throw csv.error("Duplicate stop_id " + csv.get(id));
+                stationNames.add(csv.get(name).isEmpty() ? csv.get(id) : csv.get(name));
+                ensureStationCapacity(station + 1);
+                latitude[station] = parseDouble(csv.get(lat));
+                longitude[station] = parseDouble(csv.get(lon));
+            }
+        }
+        // Boarding areas hang off platforms, which hang off stations: follow the chain up
+        for (String stop : parentOf.keySet()) {
+            String parent = parentOf.get(stop);
+            for (int depth = 0; !stopIds.containsKey(parent) && parentOf.containsKey(parent) && depth < 4; depth++) {
+                parent = parentOf.get(parent);
+            }
+            Integer station = stopIds.get(parent);
+            if (station == null)
+                throw new IOException("stops.txt: stop " + stop + " has unknown parent " + parentOf.get(stop));
+            stopIds.put(stop, station);
+        }
+    }
+
+    private void readRoutes() throws IOException {
+        try (CsvFile csv = CsvFile.open(feed.resolve("routes.txt"))) {
+            int id = csv.require("route_id");
+            int shortName = csv.column("route_short_name");
+            int longName = csv.column("route_long_name");
+            while (csv.next()) {
+                String name = csv.get(shortName).isEmpty() ? csv.get(longName) : csv.get(shortName);
+                if (routeIds.putIfAbsent(csv.get(id), routeNames.size()) != null)
+                    throw csv.error("Duplicate route_id " + csv.get(id));
+                routeNames.add(name.isEmpty() ? csv.get(id) : name);
+            }
+        }
+    }
+
+    private void readTrips() throws IOException {
+        try (CsvFile csv = CsvFile.open(feed.resolve("trips.txt"))) {
+            int id = csv.require("trip_id");
+            int route = csv.require("route_id");
+            while (csv.next()) {
+                Integer routeIndex = routeIds.get(csv.get(route));
+                if (routeIndex == null)
+                    throw csv.error("Unknown route_id " + csv.get(route));
+                int trip = tripIds.size();
+                if (tripIds.putIfAbsent(csv.get(id), trip) != null)
+                    throw csv.error("Duplicate trip_id " + csv.get(id));
+                if (trip == tripRoute.length)
+                    tripRoute = Arrays.copyOf(tripRoute, trip * 2);
+                tripRoute[trip] = routeIndex;
+            }
+        }
+    }
+
+    // Rows of one trip must be contiguous (as every published feed has them); within a trip they may
+    // come in any stop_sequence order. Only the current trip is buffered.
+    private void readStopTimes() throws IOException {
+        BitSet finished = new BitSet(tripIds.size());
+        TripBuffer buffer = new TripBuffer();
+        try (CsvFile csv = CsvFile.open(feed.resolve("stop_times.txt"))) {
+            int tripColumn = csv.require("trip_id");
+            int arrival = csv.require("arrival_time");
+            int departure = csv.require("departure_time");
+            int stop = csv.require("stop_id");
+            int sequence = csv.require("stop_sequence");
+            String currentTripId = null;
+            int currentTrip = -1;
+            while (csv.next()) {
+                stopTimeRows++;
+                String tripId = csv.get(tripColumn);
+                if (!tripId.equals(currentTripId)) {
+                    flushTrip(currentTrip, buffer);
+                    Integer trip = tripIds.get(tripId);
+                    if (trip == null)
+                        throw csv.error("Unknown trip_id " + tripId);
+                    if (finished.get(trip))
+                        throw csv.error("stop_times.txt must list each trip's rows together; " + tripId + " appears twice");
+                    finished.set(trip);
+                    currentTripId = tripId;
+                    currentTrip = trip;
+                }
+                Integer station = stopIds.get(csv.get(stop));
+                if (station == null)
+                    throw csv.error("Unknown stop_id " + csv.get(stop));
+                buffer.add(parseInt(csv.get(sequence)), station, parseTime(csv.get(arrival)),
+                        parseTime(csv.get(departure)));
+            }
+            flushTrip(currentTrip, buffer);
+        }
+    }
+
+    private void flushTrip(int gtfsTrip, TripBuffer buffer) {
+        if (gtfsTrip < 0 || buffer.size == 0)
+            return;
+        buffer.sortBySequence();
+        int route = tripRoute[gtfsTrip];
+        int trip = timetable.newTrip();
+        int lastTimed = -1;
+        for (int i = 0; i < buffer.size; i++) {
+            int station = buffer.station[i];
+            lines.serve(station, route);
+            if (i > 0 && buffer.station[i - 1] != station) {
+                addEdge(buffer.station[i - 1], station);
+                lines.ride(buffer.station[i - 1], station, route);
+            }
+            // Untimed stops are passed through; the connection runs between timed ones
+            if (buffer.arrival[i] >= 0 || buffer.departure[i] >= 0) {
+                if (lastTimed >= 0 && buffer.station[lastTimed] != station) {
+                    int depart = buffer.departure[lastTimed] >= 0 ? buffer.departure[lastTimed] : buffer.arrival[lastTimed];
+                    int arrive = buffer.arrival[i] >= 0 ? buffer.arrival[i] : buffer.departure[i];
+                    if (arrive >= depart) {
+                        timetable.addConnection(trip, buffer.station[lastTimed], station, depart, arrive);
+                        connections++;
+                    }
+                }
+                lastTimed = i;
+            }
+        }
+        buffer.size = 0;
+    }
+
+    private void readTransfers() throws IOException {
+        Path file = feed.resolve("transfers.txt");
+        if (!Files.exists(file))
+            return;
+        try (CsvFile csv = CsvFile.open(file)) {
+            int from = csv.require("from_stop_id");
+            int to = csv.require("to_stop_id");
+            int type = csv.column("transfer_type");
+            int minTime = csv.column("min_transfer_time");
+            Set<Long> seen = new HashSet<>();
+            while (csv.next()) {
+                if ("3".equals(csv.get(type))) // transfer not possible
+                    continue;
+                Integer a = stopIds.get(csv.get(from));
+                Integer b = stopIds.get(csv.get(to));
+                if (a == null || b == null)
+                    throw csv.error("Unknown stop in transfer " + csv.get(from) + " -> " + csv.get(to));
+                if (a.intValue() == b.intValue())
+                    continue;
+                // Footpaths are symmetric; keep the first time given for either direction
+                long key = ((long) Math.min(a, b) << 32) | Math.max(a, b);
+                if (!seen.add(key))
+                    continue;
+                String seconds = csv.get(minTime);
+                int walk = seconds.isEmpty() ? DEFAULT_TRANSFER_SECONDS : Math.max(1, parseInt(seconds));
+                timetable.addFootpath(a, b, walk);
+                footpaths++;
+                addEdge(a, b);
+                addEdge(b, a);
+                lines.transfer(a, b, walk);
+                lines.transfer(b, a, walk);
+            }
+        }
+    }
+
+    // ===== HELPERS =====
+
+    private void addEdge(int u, int v) {
+        if (u == v || !edges.add(((long) u << 32) | v))
+            return;
+        float km = (float) haversineKm(latitude[u], longitude[u], latitude[v], longitude[v]);
+        graph.addEdge(u, v, Float.isNaN(km) ? UNLOCATED_EDGE_KM : Math.max(km, MIN_EDGE_KM));
+    }
+
+    private void ensureStationCapacity(int n) {
+        if (n > latitude.length) {
+            int capacity = Math.max(n, latitude.length * 2);
+            latitude = Arrays.copyOf(latitude, capacity);
+            longitude = Arrays.copyOf(longitude, capacity);
+        }
+    }
+
+    static double haversineKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.sqrt(a));
+    }
+
+    // "H:MM:SS" or "HH:MM:SS" (hours may pass 24 for after-midnight trips) to seconds; -1 when empty
+    static int parseTime(String value) {
+        int length = value.length();
+        if (length == 0)
+            return -1;
+        int seconds = 0;
+        int field = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c == ':') {
+                seconds = seconds * 60 + field;
+                field = 0;
+            } else if (c >= '0' && c <= '9') {
+                field = field * 10 + (c - '0');
+            } else if (c != ' ') {
+                throw new NumberFormatException("Bad GTFS time: " + value);
+            }
+        }
+        return seconds * 60 + field;
+    }
+
+    private static int parseInt(String value) {
+        return Integer.parseInt(value.trim());
+    }
+
+    // Empty or missing coordinates become NaN, which the network, A* and the map read as unknown
+    private static double parseDouble(String value) {
+        return value.trim().isEmpty() ? Double.NaN : Double.parseDouble(value.trim());
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP)
+                pool.resetPeakUsage();
+        }
+    }
+
+    // Sum of per-pool peaks: an upper bound, since pools peak at different moments
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP)
+                peak += pool.getPeakUsage().getUsed();
+        }
+        return peak;
+    }
+
+    // Stop times of the trip being read
+    private static final class TripBuffer {
+        int[] sequence = new int[64];
+        int[] station = new int[64];
+        int[] arrival = new int[64];
+        int[] departure = new int[64];
+        int size;
+
+        void add(int seq, int stop, int arrive, int depart) {
+            if (size == sequence.length) {
+                sequence = Arrays.copyOf(sequence, size * 2);
+                station = Arrays.copyOf(station, size * 2);
+                arrival = Arrays.copyOf(arrival, size * 2);
+                departure = Arrays.copyOf(departure, size * 2);
+            }
+            sequence[size] = seq;
+            station[size] = stop;
+            arrival[size] = arrive;
+            departure[size] = depart;
+            size++;
+        }
+
+        // Insertion sort: rows almost always arrive in order already
+        void sortBySequence() {
+            for (int i = 1; i < size; i++) {
+                int seq = sequence[i];
+                int stop = station[i];
+                int arrive = arrival[i];
+                int depart = departure[i];
+                int j = i - 1;
+                while (j >= 0 && sequence[j] > seq) {
+                    sequence[j + 1] = sequence[j];
+                    station[j + 1] = station[j];
+                    arrival[j + 1] = arrival[j];
+                    departure[j + 1] = departure[j];
+                    j--;
+                }
+                sequence[j + 1] = seq;
+                station[j + 1] = stop;
+                arrival[j + 1] = arrive;
+                departure[j + 1] = depart;
+            }
+        }
+    }
+
+    // Streaming RFC 4180 reader: one row in memory at a time, fields looked up by header name
+    static final class CsvFile implements Closeable {
+        private final Path path;
+        private final BufferedReader reader;
+        private final Map<String, Integer> header = new HashMap<>();
+        private final List<String> fields = new ArrayList<>();
+        private final StringBuilder field = new StringBuilder();
+        private long line;
+
+        private CsvFile(Path path, BufferedReader reader) {
+            this.path = path;
+            this.reader = reader;
+        }
+
+        static CsvFile open(Path path) throws IOException {
+            if (!Files.exists(path))
+                throw new IOException("Missing file " + path);
+            CsvFile csv = new CsvFile(path, Files.newBufferedReader(path, StandardCharsets.UTF_8));
+            if (!csv.next())
+                throw new IOException("Empty file " + path);
+            for (int i = 0; i < csv.fields.size(); i++) {
+                String name = csv.fields.get(i).trim();
+                if (i == 0 && !name.isEmpty() && name.charAt(0) == '\uFEFF') // byte order mark
+                    name = name.substring(1);
+                csv.header.put(name, i);
+            }
+            return csv;
+        }
+
+        int column(String name) {
+            return header.getOrDefault(name, -1);
+        }
+
+        int require(String name) throws IOException {
+            int column = column(name);
+            if (column < 0)
+                throw new IOException(path + " has no " + name + " column");
+            return column;
+        }
+
+        // Empty string for a missing column or a short row
+        String get(int column) {
+            return column >= 0 && column < fields.size() ? fields.get(column) : "";
+        }
+
+        IOException error(String message) {
+            return new IOException(path.getFileName() + " line " + line + ": " + message);
+        }
+
+        boolean next() throws IOException {
+            String row;
+            do {
+                row = reader.readLine();
+                line++;
+                if (row == null)
+                    return false;
+            } while (row.isEmpty());
+
+            fields.clear();
+            field.setLength(0);
+            boolean quoted = false;
+            for (int i = 0;; i++) {
+                if (i == row.length()) {
+                    if (!quoted)
+                        break;
+                    // Quoted field with an embedded line break
+                    String more = reader.readLine();
+                    line++;
+                    if (more == null)
+                        throw error("Unterminated quoted field");
+                    field.append('\n');
+                    row = more;
+                    i = -1;
+                    continue;
+                }
+                char c = row.charAt(i);
+                if (quoted) {
+                    if (c == '"') {
+                        if (i + 1 < row.length() && row.charAt(i + 1) == '"') {
+                            field.append('"');
+                            i++;
+                        } else {
+                            quoted = false;
+                        }
+                    } else {
+                        field.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            fields.add(field.toString());
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
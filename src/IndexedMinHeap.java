@@ -0,0 +1,112 @@
+// Binary min-heap of node ids keyed by float distance, with decrease-key and no boxing
+import java.util.Arrays;
+
+public final class IndexedMinHeap {
+    private final int[] heap; // heap slot -> node
+    private final int[] position; // node -> heap slot, -1 when not queued
+    private final float[] keys; // node -> current key
+    private int size;
+
+    public IndexedMinHeap(int capacity) {
+        heap = new int[capacity];
+        position = new int[capacity];
+        keys = new float[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    public int capacity() {
+        return position.length;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int node) {
+        return position[node] >= 0;
+    }
+
+    public float key(int node) {
+        return keys[node];
+    }
+
+    public float peekKey() {
+        return keys[heap[0]];
+    }
+
+    // Inserts the node, or lowers its key if it is already queued with a larger one
+    public void insertOrDecrease(int node, float key) {
+        int slot = position[node];
+        if (slot < 0) {
+            slot = size++;
+            heap[slot] = node;
+            position[node] = slot;
+            keys[node] = key;
+            siftUp(slot);
+        } else if (key < keys[node]) {
+            keys[node] = key;
+            siftUp(slot);
+        }
+    }
+
+    public int poll() {
+        int top = heap[0];
+        position[top] = -1;
+        size--;
+        if (size > 0) {
+            int last = heap[size];
+            heap[0] = last;
+            position[last] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    // Empties the heap in O(size) so it can be reused by the next query
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            position[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int slot) {
+        int node = heap[slot];
+        float key = keys[node];
+        while (slot > 0) {
+            int parent = (slot - 1) >>> 1;
+            int parentNode = heap[parent];
+            if (keys[parentNode] <= key)
+                break;
+            heap[slot] = parentNode;
+            position[parentNode] = slot;
+            slot = parent;
+        }
+        heap[slot] = node;
+        position[node] = slot;
+    }
+
+    private void siftDown(int slot) {
+        int node = heap[slot];
+        float key = keys[node];
+        int half = size >>> 1;
+        while (slot < half) {
+            int child = 2 * slot + 1;
+            int right = child + 1;
+            if (right < size && keys[heap[right]] < keys[heap[child]])
+                child = right;
+            int childNode = heap[child];
+            if (key <= keys[childNode])
+                break;
+            heap[slot] = childNode;
+            position[childNode] = slot;
+            slot = child;
+        }
+        heap[slot] = node;
+        position[node] = slot;
+    }
+}
@@ -0,0 +1,103 @@
+// Immutable result of one timetable query: the rides and walks from source to destination.
+// Times are seconds of the day; a walking leg has trip -1.
+public final class Journey {
+    private final int source;
+    private final int destination;
+    private final int requestedDeparture;
+    private final int[] from;
+    private final int[] to;
+    private final int[] departure;
+    private final int[] arrival;
+    private final int[] trip;
+    private final boolean found;
+
+    Journey(int source, int destination, int requestedDeparture, int[] from, int[] to, int[] departure, int[] arrival,
+            int[] trip) {
+        this(source, destination, requestedDeparture, from, to, departure, arrival, trip, true);
+    }
+
+    private Journey(int source, int destination, int requestedDeparture, int[] from, int[] to, int[] departure,
+            int[] arrival, int[] trip, boolean found) {
+        this.source = source;
+        this.destination = destination;
+        this.requestedDeparture = requestedDeparture;
+        this.from = from;
+        this.to = to;
+        this.departure = departure;
+        this.arrival = arrival;
+        this.trip = trip;
+        this.found = found;
+    }
+
+    static Journey notFound(int source, int destination, int requestedDeparture) {
+        int[] none = new int[0];
+        return new Journey(source, destination, requestedDeparture, none, none, none, none, none, false);
+    }
+
+    public int source() {
+        return source;
+    }
+
+    public int destination() {
+        return destination;
+    }
+
+    public boolean isFound() {
+        return found;
+    }
+
+    // The time the rider was ready to leave
+    public int requestedDeparture() {
+        return requestedDeparture;
+    }
+
+    // Departure of the first leg, or the requested time for an empty journey
+    public int departure() {
+        return from.length > 0 ? departure[0] : requestedDeparture;
+    }
+
+    // Arrival at the destination, or -1 when no train gets there today
+    public int arrival() {
+        if (!found)
+            return -1;
+        return from.length > 0 ? arrival[from.length - 1] : requestedDeparture;
+    }
+
+    public int legCount() {
+        return from.length;
+    }
+
+    public int legFrom(int leg) {
+        return from[leg];
+    }
+
+    public int legTo(int leg) {
+        return to[leg];
+    }
+
+    public int legDeparture(int leg) {
+        return departure[leg];
+    }
+
+    public int legArrival(int leg) {
+        return arrival[leg];
+    }
+
+    public int legTrip(int leg) {
+        return trip[leg];
+    }
+
+    public boolean isWalk(int leg) {
+        return trip[leg] < 0;
+    }
+
+    // Changes between trains, counting a walk between two rides as one change
+    public int transfers() {
+        int rides = 0;
+        for (int t : trip) {
+            if (t >= 0)
+                rides++;
+        }
+        return Math.max(0, rides - 1);
+    }
+}
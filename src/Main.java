@@ -10,30 +10,34 @@ import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 import javafx.stage.Stage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
 import java.time.LocalTime;
 import java.util.*;
 import java.util.stream.Collectors;
 import javafx.concurrent.Task;
 import javafx.geometry.HPos;
 import javafx.geometry.VPos;
+import javafx.scene.Group;
 import javafx.scene.Node;
 import javafx.scene.shape.*;
 import javafx.animation.*;
 import javafx.util.Duration;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class Main extends Application {
-    // Static variables and methods
-    static final int V = 30;
-    static final int MAX = 30;
-    static int[] predecessor = new int[30];
-    static int[] reversePath = new int[30];
-    static int[] correctPath = new int[30];
-    static String[] color = new String[30];
-    static Stack<Integer> stack = new Stack<>();
-    static float[][] adj = new float[MAX][MAX];
-    static float[] dist = new float[MAX];
+    // Network data and routing live outside the UI so the headless RouteServer can share them
+    private MetroNetwork network;
+    private RoutePlanner planner;
+    private RouteCache routeCache;
 
     // GUI components
     private ComboBox<String> sourceComboBox;
@@ -41,18 +45,50 @@ public class Main extends Application {
     private TextArea resultArea;
     private List<String> stationNames;
     private VBox routeDisplayBox;
-    private List<Label> stepLabels; // Add this line to track step numbers
+    // One background thread filters both station boxes as the user types
+    private ScheduledExecutorService typeaheadExecutor;
+
+    // Routes listed under "Alternative routes" after the directions, including the shortest
+    private static final int ALTERNATIVES = 3;
+
+    // Route work runs on one thread with room for a single waiting task; older waiting work is dropped
+    private static final long STEP_DELAY_MS = Long.getLong("metro.ui.stepDelay", 0);
+    private final ExecutorService routeExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(1), r -> {
+                Thread thread = new Thread(r, "route-worker");
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.DiscardOldestPolicy());
+    private Task<RouteResult> currentRouteTask; // FX thread only
 
     // Enhanced UI components for better visibility
     private ProgressIndicator progressIndicator;
     private Label statusLabel;
     private ScrollPane mapScrollPane;
     private Pane mapPane;
+    // Map layers, bottom to top: grid and tracks, stations, the route overlay, and transient messages.
+    // Clearing a route only empties the overlay, so it costs the same however large the network is.
+    private final Group baseLayer = new Group();
+    private final Group stationLayer = new Group();
+    private final Group overlayLayer = new Group();
+    private final Group messageLayer = new Group();
+    // Route lines, step labels and glow rings are reused from route to route rather than recreated
+    private final OverlayPool overlayPool = new OverlayPool(overlayLayer);
+    private final List<Circle> highlightedStations = new ArrayList<>();
     private Map<Integer, Circle> stationCircles;
     private Map<Integer, Label> stationLabels;
     private List<Line> connectionLines;
     private VBox mapContainer;
-    private List<Line> routeLines; // For highlighting route connections
+    private MetroMapCanvas mapCanvas; // Canvas rendering mode; null when the map is built from nodes
+    // Every route animation runs from this one clock and stops when the route is cleared
+    private final RouteAnimator routeAnimator = new RouteAnimator();
+    private static final double STEP_SECONDS = 0.3; // between stations lighting up along a route
+
+    // -Dmetro.map=canvas draws the map on one Canvas instead of a node per shape. The node map only knows the
+    // built-in 30-station layout, so any other network always gets the canvas.
+    private static final String MAP_MODE = System.getProperty("metro.map", "nodes");
+    private static final int SCHEMATIC_STATIONS = 30;
+    private static final String MAP_STYLESHEET = "/map.css"; // style classes for the route overlay
 
     public static void main(String[] args) {
         launch(args);
@@ -61,8 +97,13 @@ public class Main extends Application {
     @Override
     public void start(Stage primaryStage) {
         // Initialize data
-        giveColorToStation();
-        createGraph();
+        try {
+            network = MetroNetwork.load();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        planner = new RoutePlanner(network);
+        routeCache = new RouteCache(planner);
         initializeStationNames();
 
         // ===== Root Layout =====
@@ -107,6 +148,15 @@ public class Main extends Application {
         destinationComboBox.setEditable(true);
         destinationComboBox.getItems().addAll(stationNames);
 
+        // Typeahead filtering off the FX thread
+        typeaheadExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "station-typeahead");
+            thread.setDaemon(true);
+            return thread;
+        });
+        new StationTypeahead(network, sourceComboBox, stationNames, typeaheadExecutor);
+        new StationTypeahead(network, destinationComboBox, stationNames, typeaheadExecutor);
+
         // Find Route Button - FIXED TO USE ENHANCED VERSION
         Button findRouteBtn = new Button("🔍 Find Route");
         findRouteBtn.setPrefWidth(150);
@@ -157,6 +207,10 @@ public class Main extends Application {
         mainScrollPane.setStyle("-fx-background-color: #2b2b2b;");
 
         Scene scene = new Scene(mainScrollPane, 1200, 800);
+        URL mapStyles = Main.class.getResource(MAP_STYLESHEET);
+        if (mapStyles == null)
+            throw new IllegalStateException("Stylesheet " + MAP_STYLESHEET + " is missing from the classpath");
+        scene.getStylesheets().add(mapStyles.toExternalForm());
         // Increased from 900, 700
         // Apply basic styling since CSS files might not exist
         routeDisplayBox.setStyle("-fx-background-color: #2b2b2b;");
@@ -199,9 +253,22 @@ public class Main extends Application {
         primaryStage.show();
     }
 
+    @Override
+    public void stop() {
+        if (typeaheadExecutor != null)
+            typeaheadExecutor.shutdownNow();
+        routeExecutor.shutdownNow();
+    }
+
     // Clear route highlighting and selections
     // Clear route highlighting and selections
     private void clearRoute() {
+        // A route still being worked out would otherwise land on the cleared map; its handlers drop stale tasks
+        if (currentRouteTask != null) {
+            currentRouteTask.cancel(true);
+            currentRouteTask = null;
+        }
+        progressIndicator.setVisible(false);
         sourceComboBox.setValue(null);
         destinationComboBox.setValue(null);
         resultArea.clear();
@@ -222,151 +289,50 @@ public class Main extends Application {
     // Reset all map highlighting
     // Reset all map highlighting
     private void resetMapHighlighting() {
-        if (stationCircles != null) {
-            for (Circle station : stationCircles.values()) {
-                station.setStrokeWidth(2);
-                station.setStroke(javafx.scene.paint.Color.WHITE);
-                station.setScaleX(1.0);
-                station.setScaleY(1.0);
-            }
-        }
-
-        // Remove route lines
-        if (routeLines != null) {
-            for (Line line : routeLines) {
-                mapPane.getChildren().remove(line);
-            }
-            routeLines.clear();
+        routeAnimator.clear();
+        if (mapCanvas != null) {
+            mapCanvas.clearRoute();
+            return;
         }
-
-        // FIXED: Remove step labels (route numbers)
-        if (stepLabels != null) {
-            for (Label stepLabel : stepLabels) {
-                mapPane.getChildren().remove(stepLabel);
-            }
-            stepLabels.clear();
+        for (Circle station : highlightedStations) {
+            station.setStrokeWidth(2);
+            station.setStroke(javafx.scene.paint.Color.WHITE);
+            station.setScaleX(1.0);
+            station.setScaleY(1.0);
         }
+        highlightedStations.clear();
 
-        // FIXED: Remove all glow effects and other temporary visual elements
-        // This removes any leftover glow circles or temporary elements
-        mapPane.getChildren().removeIf(node -> {
-            if (node instanceof Circle) {
-                Circle circle = (Circle) node;
-                // Remove glow circles (they have stroke but no fill and are larger)
-                return circle.getFill() == null && circle.getStroke() != null && circle.getRadius() > 15;
-            }
-            return false;
-        });
+        // Route lines, step labels and glow rings all live in the overlay, hidden until the next route
+        overlayPool.releaseAll();
     }
 
     // Helper to find the route as a list of station names
     private List<String> findRouteBetweenStations(String source, String destination) {
-        int sourceIdx = getStationIndex(source);
-        int destIdx = getStationIndex(destination);
+        int sourceIdx = network.stationIndex(source);
+        int destIdx = network.stationIndex(destination);
 
         if (sourceIdx < 0 || destIdx < 0)
             return Collections.emptyList();
 
-        dijkstra(sourceIdx, destIdx);
-
-        List<String> path = new ArrayList<>();
-        int current = destIdx;
+        Route route = network.lines().route(sourceIdx, destIdx);
+        if (!route.isFound())
+            return Collections.emptyList();
 
-        while (current != sourceIdx) {
-            path.add(getStationName(current));
-            if (predecessor[current] == -1) {
-                // No path found
-                return Collections.emptyList();
-            }
-            current = predecessor[current];
+        List<String> path = new ArrayList<>(route.length());
+        for (int i = 0; i < route.length(); i++) {
+            path.add(network.stationName(route.station(i)));
         }
-
-        path.add(getStationName(sourceIdx));
-        Collections.reverse(path);
         return path;
     }
 
     private void initializeStationNames() {
         stationNames = new ArrayList<>();
-        for (int i = 0; i < 30; i++) {
-            stationNames.add(getStationName(i).trim());
+        for (int i = 0; i < network.size(); i++) {
+            stationNames.add(network.stationName(i).trim());
         }
         Collections.sort(stationNames);
     }
 
-    // Helper method to check if the station name is similar to the target (case-insensitive, partial match)
-    public static boolean checkStation(String input, String target) {
-        if (input == null || target == null)
-            return false;
-        input = input.trim().toLowerCase();
-        target = target.trim().toLowerCase();
-        return input.contains(target) || target.contains(input);
-    }
-
-    public static int getStationIndex(String name) {
-        int idx = station(name);
-        return (idx != -1) ? idx : -1;
-    }
-
-    // Assign line colors based on index range for 30 stations
-    // Assign line colors based on index range for 30 stations
-    public static void giveColorToStation() {
-        // Purple Line: index 0 to 12
-        for (int i = 0; i <= 12; i++) {
-            color[i] = "Purple";
-        }
-
-        // Aqua Line: index 13 to 29
-        for (int i = 13; i < 30; i++) {
-            color[i] = "Aqua";
-        }
-
-        // FIXED: Civil Court (22) is junction - belongs to BOTH lines
-        color[22] = "Junction"; // Special color for junction station
-    }
-
-    public static void push(int data) {
-        if (stack.size() >= 100) {
-            System.out.println("Stack Overflow");
-            return;
-        }
-        stack.push(data);
-    }
-
-    private static int getArrivalMinute(int src, boolean forward) {
-        // Applies only to stations 0–29
-        if (src < 0 || src >= 30)
-            return 0;
-
-        if (forward) {
-            if (src == 0 || src == 13) // Start of Purple (0) and Aqua (13)
-                return 0;
-            if ((src >= 1 && src <= 4) || (src >= 14 && src <= 18))
-                return 5;
-            if ((src >= 5 && src <= 8) || (src >= 19 && src <= 22))
-                return 10;
-            if ((src >= 9 && src <= 11) || (src >= 23 && src <= 25))
-                return 15;
-            if (src == 12 || src == 26 || src == 27)
-                return 20;
-            if (src == 28 || src == 29)
-                return 25;
-        } else {
-            if (src == 12 || src == 29) // End of Purple (12) and Aqua (29)
-                return 30;
-            if ((src >= 1 && src <= 4) || (src >= 14 && src <= 18))
-                return 25;
-            if ((src >= 5 && src <= 8) || (src >= 19 && src <= 22))
-                return 20;
-            if ((src >= 9 && src <= 11) || (src >= 23 && src <= 25))
-                return 15;
-            if (src == 0 || src == 13)
-                return 10;
-        }
-
-        return 0; // fallback
-    }
-
     // ===== ENHANCED UI METHODS =====
 
     // Create Interactive Metro Map with BETTER VISIBILITY
@@ -388,10 +354,25 @@ public class Main extends Application {
         stationCircles = new HashMap<>();
         stationLabels = new HashMap<>();
         connectionLines = new ArrayList<>();
-        routeLines = new ArrayList<>(); // Initialize route lines
-        stepLabels = new ArrayList<>(); // Add this line
         // Draw metro lines and stations
-        drawMetroNetwork();
+        if ("canvas".equals(MAP_MODE) || network.size() != SCHEMATIC_STATIONS) {
+            mapCanvas = new MetroMapCanvas(network, 1400, 800);
+            mapCanvas.setOnStationClicked(station -> selectStation(network.stationName(station),
+                    mapCanvas.stationX(station), mapCanvas.stationY(station)));
+            baseLayer.getChildren().add(mapCanvas);
+            // The canvas pans and zooms itself and draws only what is in view, so it takes the size of the
+            // viewport instead of scrolling a full-size map
+            mapPane.setMinSize(0, 0);
+            mapCanvas.prefWidthProperty().bind(mapPane.widthProperty());
+            mapCanvas.prefHeightProperty().bind(mapPane.heightProperty());
+        } else {
+            drawMetroNetwork();
+        }
+
+        // Route shapes never take clicks meant for the stations underneath
+        overlayLayer.setMouseTransparent(true);
+        messageLayer.setMouseTransparent(true);
+        mapPane.getChildren().addAll(baseLayer, stationLayer, overlayLayer, messageLayer);
 
         // Create scroll pane for map with better styling
         mapScrollPane = new ScrollPane(mapPane);
@@ -408,13 +389,12 @@ public class Main extends Application {
     // Draw Metro Network with IMPROVED VISIBILITY
     private void drawMetroNetwork() {
         // Clear existing elements
-        mapPane.getChildren().clear();
+        baseLayer.getChildren().clear();
+        stationLayer.getChildren().clear();
+        overlayPool.releaseAll();
         stationCircles.clear();
         stationLabels.clear();
         connectionLines.clear();
-        if (stepLabels != null) {
-            stepLabels.clear(); // FIXED: Clear step labels when redrawing map
-        }
 
         // Create background grid for better visual appeal
         createBackgroundGrid();
@@ -430,7 +410,7 @@ public class Main extends Application {
             track.setOpacity(0.6); // INCREASED OPACITY
             track.setStroke(javafx.scene.paint.Color.web("#FFFFFF"));
             track.setStrokeWidth(1);
-            mapPane.getChildren().add(track);
+            baseLayer.getChildren().add(track);
         }
 
         // Draw Purple Line stations (0-12) with ENHANCED VISIBILITY
@@ -452,7 +432,7 @@ public class Main extends Application {
                 track.setOpacity(0.7);
                 track.setStroke(javafx.scene.paint.Color.web("#FFFFFF"));
                 track.setStrokeWidth(2);
-                mapPane.getChildren().add(track);
+                baseLayer.getChildren().add(track);
             }
         }
 
@@ -482,7 +462,7 @@ public class Main extends Application {
             verticalLine.setStroke(javafx.scene.paint.Color.web("#333333"));
             verticalLine.setStrokeWidth(0.8); // INCREASED WIDTH
             verticalLine.setOpacity(0.3); // INCREASED OPACITY
-            mapPane.getChildren().add(verticalLine);
+            baseLayer.getChildren().add(verticalLine);
         }
 
         for (int i = 0; i < 500; i += 50) {
@@ -490,41 +470,94 @@ public class Main extends Application {
             horizontalLine.setStroke(javafx.scene.paint.Color.web("#333333"));
             horizontalLine.setStrokeWidth(0.8); // INCREASED WIDTH
             horizontalLine.setOpacity(0.3); // INCREASED OPACITY
-            mapPane.getChildren().add(horizontalLine);
+            baseLayer.getChildren().add(horizontalLine);
         }
     }
 
     // Create ENHANCED interchange connection
-    // Create ENHANCED interchange connection - Civil Court as junction
+    // Junction markers on every station the line data makes one, and a dashed walk along each transfer edge
     private void createEnhancedInterchangeConnection() {
-        Circle civilCourt = stationCircles.get(22); // Station 22 - Civil Court
+        MetroLines lines = network.lines();
+        MetroGraph graph = network.graph();
+        for (int u = 0; u < network.size(); u++) {
+            for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+                int v = graph.target(e);
+                Circle from = stationCircles.get(u);
+                Circle to = stationCircles.get(v);
+                if (u < v && lines.isTransfer(e) && from != null && to != null) {
+                    Line walk = new Line(from.getCenterX(), from.getCenterY(), to.getCenterX(), to.getCenterY());
+                    walk.setStroke(javafx.scene.paint.Color.ORANGE);
+                    walk.setStrokeWidth(3);
+                    walk.getStrokeDashArray().addAll(8d, 6d);
+                    walk.setOpacity(0.8);
+                    baseLayer.getChildren().add(walk);
+                }
+            }
+        }
+
+        for (int stationIndex = 0; stationIndex < network.size(); stationIndex++) {
+            Circle junction = stationCircles.get(stationIndex);
+            if (junction == null || !isJunction(stationIndex))
+                continue;
 
-        if (civilCourt != null) {
             // Create special junction visual indicator
-            Circle junctionRing = new Circle(civilCourt.getCenterX(), civilCourt.getCenterY(), 35);
+            Circle junctionRing = new Circle(junction.getCenterX(), junction.getCenterY(), 35);
             junctionRing.setFill(null);
             junctionRing.setStroke(javafx.scene.paint.Color.ORANGE);
             junctionRing.setStrokeWidth(6);
             junctionRing.getStrokeDashArray().addAll(15d, 10d);
             junctionRing.setOpacity(0.8);
-            mapPane.getChildren().add(junctionRing);
+            stationLayer.getChildren().add(junctionRing);
 
             // Add junction icon
             Label junctionIcon = new Label("🔄");
-            junctionIcon.setLayoutX(civilCourt.getCenterX() - 15);
-            junctionIcon.setLayoutY(civilCourt.getCenterY() - 60);
+            junctionIcon.setLayoutX(junction.getCenterX() - 15);
+            junctionIcon.setLayoutY(junction.getCenterY() - 60);
             junctionIcon.setStyle(
                     "-fx-font-size: 24; -fx-background-color: rgba(255,165,0,0.9); -fx-background-radius: 20; -fx-padding: 8; -fx-border-color: white; -fx-border-width: 3; -fx-border-radius: 20;");
-            mapPane.getChildren().add(junctionIcon);
+            stationLayer.getChildren().add(junctionIcon);
 
-            // Add "JUNCTION" label
-            Label junctionLabel = new Label("JUNCTION STATION");
-            junctionLabel.setLayoutX(civilCourt.getCenterX() - 60);
-            junctionLabel.setLayoutY(civilCourt.getCenterY() + 45);
+            // Add "JUNCTION" label; a station reached only by a transfer walk is an interchange
+            Label junctionLabel = new Label(platformCount(stationIndex) > 1 ? "JUNCTION STATION" : "INTERCHANGE");
+            junctionLabel.setLayoutX(junction.getCenterX() - 60);
+            junctionLabel.setLayoutY(junction.getCenterY() + 45);
             junctionLabel.setStyle(
                     "-fx-text-fill: orange; -fx-font-weight: bold; -fx-font-size: 12; -fx-background-color: rgba(0,0,0,0.8); -fx-padding: 5; -fx-background-radius: 5;");
-            mapPane.getChildren().add(junctionLabel);
+            stationLayer.getChildren().add(junctionLabel);
+        }
+    }
+
+    // Several lines stop at the station, or a transfer walk leads to another one
+    private boolean isJunction(int stationIndex) {
+        if (platformCount(stationIndex) > 1)
+            return true;
+        MetroGraph graph = network.graph();
+        for (int e = graph.firstEdge(stationIndex); e < graph.endEdge(stationIndex); e++) {
+            if (network.lines().isTransfer(e))
+                return true;
         }
+        return false;
+    }
+
+    private int platformCount(int stationIndex) {
+        return network.lines().endPlatform(stationIndex) - network.lines().firstPlatform(stationIndex);
+    }
+
+    // "Junction Station (Purple ↔ Aqua)" where lines meet, otherwise the line and where its walks lead
+    private String junctionDescription(int stationIndex) {
+        MetroLines lines = network.lines();
+        if (platformCount(stationIndex) > 1)
+            return "Junction Station (" + lines.describe(stationIndex).replace("/", " ↔ ") + ")";
+        StringBuilder text = new StringBuilder(lines.describe(stationIndex)).append(" Line");
+        MetroGraph graph = network.graph();
+        for (int e = graph.firstEdge(stationIndex); e < graph.endEdge(stationIndex); e++) {
+            if (lines.isTransfer(e)) {
+                int v = graph.target(e);
+                text.append("\n🚶 Walk to ").append(network.stationName(v)).append(" (")
+                        .append(lines.describe(v)).append(" Line)");
+            }
+        }
+        return text.toString();
     }
 
     // Add map title and information with BETTER VISIBILITY
@@ -536,7 +569,7 @@ public class Main extends Application {
         mainTitle.setFont(Font.font("Segoe UI", FontWeight.BOLD, 20));
         mainTitle.setStyle(
                 "-fx-text-fill: white; -fx-background-color: rgba(0,0,0,0.8); -fx-padding: 10; -fx-background-radius: 8; -fx-border-color: #FFD700; -fx-border-width: 2; -fx-border-radius: 8;");
-        mapPane.getChildren().add(mainTitle);
+        stationLayer.getChildren().add(mainTitle);
 
         
     }
@@ -547,9 +580,9 @@ public class Main extends Application {
     private void createEnhancedStationNode(int stationIndex, double x, double y, String color, String lineName) {
         String stationColor = color;
         String stationLineName = lineName;
-        if (stationIndex == 22) {
+        if (isJunction(stationIndex)) {
             stationColor = "#FF8C00"; // Orange color for junction
-            lineName = "Junction Station (Purple ↔ Aqua)";
+            lineName = junctionDescription(stationIndex);
         }
         // Station outer glow ring (ENHANCED)
         Circle outerGlow = new Circle(x, y, 20);
@@ -583,7 +616,7 @@ public class Main extends Application {
         numberLabel.setStyle("-fx-text-fill: black;");
 
         // Station name label (ENHANCED visibility)
-        String stationName = getStationName(stationIndex);
+        String stationName = network.stationName(stationIndex);
         Label stationLabel = new Label(stationName);
         stationLabel.setLayoutX(x - 50);
         stationLabel.setLayoutY(y + 25);
@@ -691,27 +724,31 @@ public class Main extends Application {
             pulse.setAutoReverse(true);
             pulse.play();
 
-            // Set station in combo boxes with smart logic
-            if (sourceComboBox.getValue() == null) {
-                sourceComboBox.setValue(stationName);
-                showEnhancedTemporaryMessage("✅ Source: " + stationName, x, y - 90, "#00FF00");
-            } else if (destinationComboBox.getValue() == null) {
-                destinationComboBox.setValue(stationName);
-                showEnhancedTemporaryMessage("✅ Destination: " + stationName, x, y - 90, "#00FF00");
-                // Auto-trigger route finding after both stations are selected
-                Timeline autoFind = new Timeline(new KeyFrame(Duration.millis(1000), ev -> findRouteWithAnimation()));
-                autoFind.play();
-            } else {
-                sourceComboBox.setValue(stationName);
-                destinationComboBox.setValue(null);
-                showEnhancedTemporaryMessage("🔄 Source reset: " + stationName, x, y - 90, "#FFA500");
-            }
+            selectStation(stationName, x, y);
         });
 
         stationCircles.put(stationIndex, station);
         stationLabels.put(stationIndex, stationLabel);
 
-        mapPane.getChildren().addAll(outerGlow, outerRing, station, innerDot, numberLabel, stationLabel, detailLabel);
+        stationLayer.getChildren().addAll(outerGlow, outerRing, station, innerDot, numberLabel, stationLabel, detailLabel);
+    }
+
+    // Set station in combo boxes with smart logic
+    private void selectStation(String stationName, double x, double y) {
+        if (sourceComboBox.getValue() == null) {
+            sourceComboBox.setValue(stationName);
+            showEnhancedTemporaryMessage("✅ Source: " + stationName, x, y - 90, "#00FF00");
+        } else if (destinationComboBox.getValue() == null) {
+            destinationComboBox.setValue(stationName);
+            showEnhancedTemporaryMessage("✅ Destination: " + stationName, x, y - 90, "#00FF00");
+            // Auto-trigger route finding after both stations are selected
+            Timeline autoFind = new Timeline(new KeyFrame(Duration.millis(1000), ev -> findRouteWithAnimation()));
+            autoFind.play();
+        } else {
+            sourceComboBox.setValue(stationName);
+            destinationComboBox.setValue(null);
+            showEnhancedTemporaryMessage("🔄 Source reset: " + stationName, x, y - 90, "#FFA500");
+        }
     }
 
     // Show ENHANCED temporary message on station click
@@ -727,7 +764,7 @@ public class Main extends Application {
         // Entry animation
         tempMessage.setScaleX(0);
         tempMessage.setScaleY(0);
-        mapPane.getChildren().add(tempMessage);
+        messageLayer.getChildren().add(tempMessage);
 
         ScaleTransition scaleIn = new ScaleTransition(Duration.millis(200), tempMessage);
         scaleIn.setToX(1.0);
@@ -739,7 +776,7 @@ public class Main extends Application {
             FadeTransition fadeOut = new FadeTransition(Duration.millis(500), tempMessage);
             fadeOut.setFromValue(1.0);
             fadeOut.setToValue(0.0);
-            fadeOut.setOnFinished(ev -> mapPane.getChildren().remove(tempMessage));
+            fadeOut.setOnFinished(ev -> messageLayer.getChildren().remove(tempMessage));
             fadeOut.play();
         }));
         exit.play();
@@ -846,7 +883,7 @@ public class Main extends Application {
                 controlsTitle,
                 controlsList);
 
-        mapPane.getChildren().add(legend);
+        stationLayer.getChildren().add(legend);
     }
 
     // ENHANCED Route highlighting on Map with MAXIMUM VISIBILITY
@@ -854,105 +891,58 @@ public class Main extends Application {
         // Reset all stations to default first
         resetMapHighlighting();
 
-        // Initialize route lines list if needed
-        if (routeLines == null) {
-            routeLines = new ArrayList<>();
+        // The canvas repaints just the rectangles the old and new route cover, once per frame while animating
+        if (mapCanvas != null) {
+            mapCanvas.showRoute(route);
+            routeAnimator.onFrame(seconds -> mapCanvas.animateRoute(seconds, STEP_SECONDS));
+            showCompletionMessage(route.size());
+            return;
         }
 
-        // Highlight route stations with ENHANCED animations
+        // Every overlay node is taken up front, hidden, so the reveal steps only show and animate them
+        overlayPool.beginRoute();
         for (int i = 0; i < route.size(); i++) {
-            int stationIndex = route.get(i);
-            Circle station = stationCircles.get(stationIndex);
-
-            if (station != null) {
-                final int currentStep = i;
-
-                // Create delayed animation for each station
-                Timeline stationAnimation = new Timeline();
-                KeyFrame keyFrame = new KeyFrame(Duration.millis(currentStep * 300), e -> {
-                    // ENHANCED highlighting
-                    station.setStroke(javafx.scene.paint.Color.YELLOW);
-                    station.setStrokeWidth(5);
-
-                    // Add glowing effect
-                    Circle glow = new Circle(station.getCenterX(), station.getCenterY(), 20);
-                    glow.setFill(null);
-                    glow.setStroke(javafx.scene.paint.Color.YELLOW);
-                    glow.setStrokeWidth(3);
-                    glow.setOpacity(0.3);
-                    mapPane.getChildren().add(glow);
-
-                    // Pulsing animation
-                    ScaleTransition pulse = new ScaleTransition(Duration.millis(500), station);
-                    pulse.setFromX(1.0);
-                    pulse.setFromY(1.0);
-                    pulse.setToX(1.5);
-                    pulse.setToY(1.5);
-                    pulse.setCycleCount(2);
-                    pulse.setAutoReverse(true);
-                    pulse.play();
-
-                    // Glow pulse
-                    ScaleTransition glowPulse = new ScaleTransition(Duration.millis(500), glow);
-                    glowPulse.setFromX(1.0);
-                    glowPulse.setFromY(1.0);
-                    glowPulse.setToX(1.3);
-                    glowPulse.setToY(1.3);
-                    glowPulse.setCycleCount(Timeline.INDEFINITE);
-                    glowPulse.setAutoReverse(true);
-                    glowPulse.play();
-
-                    // Show step number
-                    // Show step number
-                    Label stepLabel = new Label("" + (currentStep + 1));
-                    stepLabel.setLayoutX(station.getCenterX() - 8);
-                    stepLabel.setLayoutY(station.getCenterY() - 35);
-                    stepLabel.setFont(Font.font("Arial", FontWeight.BOLD, 14));
-                    stepLabel.setStyle(
-                            "-fx-text-fill: black; -fx-background-color: yellow; -fx-background-radius: 15; -fx-padding: 5; -fx-border-color: black; -fx-border-width: 2; -fx-border-radius: 15;");
-                    mapPane.getChildren().add(stepLabel);
-                    stepLabels.add(stepLabel); // FIXED: Track the step label for removal later
-
-                    // Connect to previous station with animated line
-                    if (currentStep > 0) {
-                        int prevIndex = route.get(currentStep - 1);
-                        Circle prevStation = stationCircles.get(prevIndex);
-                        if (prevStation != null) {
-                            Line routeLine = new Line(
-                                    prevStation.getCenterX(),
-                                    prevStation.getCenterY(),
-                                    station.getCenterX(),
-                                    station.getCenterY());
-                            routeLine.setStroke(javafx.scene.paint.Color.YELLOW);
-                            routeLine.setStrokeWidth(6);
-                            routeLine.setOpacity(0.8);
-                            routeLine.getStrokeDashArray().addAll(10d, 5d);
-
-                            // Animate the line drawing
-                            routeLine.setStrokeLineCap(StrokeLineCap.ROUND);
-                            mapPane.getChildren().add(routeLine);
-                            routeLines.add(routeLine);
-
-                            // Moving dash animation
-                            Timeline dashAnimation = new Timeline(
-                                    new KeyFrame(Duration.ZERO, new KeyValue(routeLine.strokeDashOffsetProperty(), 0)),
-                                    new KeyFrame(Duration.seconds(2),
-                                            new KeyValue(routeLine.strokeDashOffsetProperty(), 30)));
-                            dashAnimation.setCycleCount(Timeline.INDEFINITE);
-                            dashAnimation.play();
-                        }
-                    }
-                });
-                stationAnimation.getKeyFrames().add(keyFrame);
-                stationAnimation.play();
-            }
+            Circle station = stationCircles.get(route.get(i));
+            if (station == null)
+                continue;
+            Circle glow = overlayPool.glow(station.getCenterX(), station.getCenterY(), 20);
+            Label stepLabel = overlayPool.step(i + 1, station.getCenterX() - 8, station.getCenterY() - 35);
+            Circle prevStation = i > 0 ? stationCircles.get(route.get(i - 1)) : null;
+            Line routeLine = prevStation == null ? null
+                    : overlayPool.line(prevStation.getCenterX(), prevStation.getCenterY(),
+                            station.getCenterX(), station.getCenterY());
+
+            // Delayed reveal for each station
+            routeAnimator.schedule(i * STEP_SECONDS, () -> {
+                // ENHANCED highlighting
+                station.setStroke(javafx.scene.paint.Color.YELLOW);
+                station.setStrokeWidth(5);
+                highlightedStations.add(station);
+
+                // One pulse of the station, and a glow that keeps pulsing until the route is cleared
+                glow.setVisible(true);
+                routeAnimator.pulse(station, 1.5, 1.0, 1);
+                routeAnimator.pulse(glow, 1.3, 1.0, RouteAnimator.INDEFINITE);
+
+                // Show step number
+                stepLabel.setVisible(true);
+
+                // Connect to previous station with moving dashes
+                if (routeLine != null) {
+                    routeLine.setVisible(true);
+                    routeAnimator.dash(routeLine, 30, 2.0);
+                }
+            });
         }
+        overlayPool.endRoute(route.size());
 
-        // Add completion message
-        Timeline completionMessage = new Timeline(new KeyFrame(Duration.millis(route.size() * 300 + 1000), e -> {
-            showEnhancedTemporaryMessage("🎉 Route highlighted! Journey ready!", 400, 100, "#00FF00");
-        }));
-        completionMessage.play();
+        showCompletionMessage(route.size());
+    }
+
+    // Add completion message; dropped with the rest of the route when it is cleared first
+    private void showCompletionMessage(int stations) {
+        routeAnimator.schedule(stations * STEP_SECONDS + 1.0,
+                () -> showEnhancedTemporaryMessage("🎉 Route highlighted! Journey ready!", 400, 100, "#00FF00"));
     }
 
     // Create Progress Section with ENHANCED styling
@@ -1000,116 +990,73 @@ public class Main extends Application {
         statusLabel.setVisible(true);
         statusLabel.setText("🔍 Calculating optimal route...");
 
+        // Latest click wins: a route still being worked out for an older click is abandoned
+        if (currentRouteTask != null)
+            currentRouteTask.cancel(true);
+
         // Create background task for route calculation with ENHANCED feedback
-        Task<String> routeTask = new Task<String>() {
+        Task<RouteResult> routeTask = new Task<RouteResult>() {
             @Override
-            protected String call() throws Exception {
-                updateMessage("🔍 Finding optimal route...");
-                Thread.sleep(800); // Simulate processing time
+            protected RouteResult call() throws Exception {
+                updateMessage("🔍 Resolving stations...");
+                stepDelay();
 
-                int sourceNumber = getStationIndex(sourceName);
-                int destinationNumber = getStationIndex(destinationName);
+                int sourceNumber = network.stationIndex(sourceName);
+                int destinationNumber = network.stationIndex(destinationName);
 
-                if (sourceNumber < 0 || destinationNumber < 0 || sourceNumber >= 30 || destinationNumber >= 30) {
-                    throw new Exception("One or more stations not found");
-                }
-
-                updateMessage("🧮 Calculating shortest path using Dijkstra's algorithm...");
-                Thread.sleep(600);
-
-                String sourceColor = color[sourceNumber];
-                dijkstra(sourceNumber, destinationNumber);
-                float weight = dist[destinationNumber];
-
-                StringBuilder result = new StringBuilder();
-                result.append("🚇 PUNE METRO ROUTE DETAILS\n");
-                result.append("═".repeat(50)).append("\n\n");
-                result.append("📍 FROM: ").append(sourceName).append(" (Station #").append(sourceNumber).append(")\n");
-                result.append("📍 TO: ").append(destinationName).append(" (Station #").append(destinationNumber)
-                        .append(")\n");
-                result.append("🎨 Starting Line: ").append(sourceColor).append(" Line\n\n");
-
-                updateMessage("📋 Generating detailed route information...");
-                Thread.sleep(400);
-
-                findPath(sourceNumber, destinationNumber, sourceColor, result);
-                result.append(String.format("\n📏 Total Distance: %.2f Km\n", weight));
-
-                // Enhanced path calculation for time & interchange
-                List<Integer> route = getPathAsList(sourceNumber, destinationNumber);
-                int numberOfHops = route.size() - 1;
-                int estimatedTime = numberOfHops * 2;
-                int interchanges = 0;
-
-                updateMessage("🔄 Checking for line interchanges...");
-                Thread.sleep(300);
-
-                for (int i = 1; i < route.size() - 1; i++) {
-                    int prev = route.get(i - 1);
-                    int curr = route.get(i);
-                    int next = route.get(i + 1);
-
-                    if (curr == 22) { // Only Civil Court
-                        String prevColor = color[prev];
-                        String nextColor = color[next];
-                        if (!prevColor.equals(nextColor)) {
-                            interchanges++;
-                            estimatedTime += 5;
-                        }
-                    }
-                }
+                if (sourceNumber < 0)
+                    throw new Exception(unknownStationMessage(sourceName));
+                if (destinationNumber < 0)
+                    throw new Exception(unknownStationMessage(destinationName));
 
-                result.append("🚉 Total Stations: ").append(route.size()).append("\n");
-                result.append("🔄 Interchanges: ").append(interchanges).append("\n");
-
-                if (estimatedTime >= 60) {
-                    int hours = estimatedTime / 60;
-                    int minutes = estimatedTime % 60;
-                    result.append(String.format("🕒 Estimated Journey Time: %d hour%s %d minute%s\n",
-                            hours, (hours != 1 ? "s" : ""),
-                            minutes, (minutes != 1 ? "s" : "")));
-                } else {
-                    result.append("🕒 Estimated Journey Time: ").append(estimatedTime).append(" minute")
-                            .append(estimatedTime != 1 ? "s" : "").append("\n");
-                }
+                updateMessage("🧮 Looking up shortest path...");
+                stepDelay();
 
-                if (interchanges > 0) {
-                    result.append("⚠️ Note: Includes ").append(interchanges).append(" interchange");
-                    result.append(interchanges > 1 ? "s" : "");
-                    result.append(" at Civil Court");
-                    result.append("\n");
+                LocalTime now = LocalTime.now();
+                RoutePlan plan = routeCache.plan(sourceNumber, destinationNumber, now);
+                if (!plan.isFound()) {
+                    throw new Exception("No route between the selected stations");
                 }
-                result.append("\n").append("═".repeat(50)).append("\n");
-                result.append("💡 TIP: Watch the map for animated route highlighting!\n");
-
-                updateMessage("🎨 Highlighting route on interactive map...");
-
-                // Store route for map highlighting
-                javafx.application.Platform.runLater(() -> highlightRouteOnMap(route));
-
-                return result.toString();
+                if (isCancelled())
+                    return null;
+
+                updateMessage("📋 Writing directions and timings...");
+                stepDelay();
+
+                String result = routeCache.render(sourceNumber, destinationNumber, sourceName, destinationName, now);
+                List<RoutePlan> alternatives = planner.alternatives(sourceNumber, destinationNumber, now, ALTERNATIVES);
+                if (alternatives.size() > 1)
+                    result += "\n" + planner.renderAlternatives(alternatives);
+                List<Journey> tradeOffs = planner.tradeOffs(sourceNumber, destinationNumber, now);
+                if (tradeOffs.size() > 1)
+                    result += "\n" + planner.renderTradeOffs(tradeOffs);
+                return new RouteResult(result, plan.route().asList());
             }
         };
+        currentRouteTask = routeTask;
 
         // Bind status label to task message with ENHANCED styling
         statusLabel.textProperty().bind(routeTask.messageProperty());
 
         routeTask.setOnSucceeded(e -> {
-            resultArea.setText(routeTask.getValue());
+            if (routeTask != currentRouteTask)
+                return;
+            RouteResult result = routeTask.getValue();
+            resultArea.setText(result.text);
             progressIndicator.setVisible(false);
 
             // FIXED: Unbind before setting text
             statusLabel.textProperty().unbind();
+            highlightRouteOnMap(result.stations);
             statusLabel.setText("✅ Route calculation completed!");
 
             // Hide status after delay
-            Timeline hideStatus = new Timeline(new KeyFrame(Duration.seconds(3), ev -> {
-                statusLabel.setVisible(false);
-            }));
-            hideStatus.play();
+            hideStatusLater(routeTask);
         });
 
         routeTask.setOnFailed(e -> {
+            if (routeTask != currentRouteTask)
+                return;
             showAlert("❌ Error: " + routeTask.getException().getMessage());
             progressIndicator.setVisible(false);
 
@@ -1117,16 +1064,36 @@ public class Main extends Application {
             statusLabel.textProperty().unbind();
             statusLabel.setText("❌ Route calculation failed!");
 
-            Timeline hideStatus = new Timeline(new KeyFrame(Duration.seconds(3), ev -> {
-                statusLabel.setVisible(false);
-            }));
-            hideStatus.play();
+            hideStatusLater(routeTask);
         });
 
-        // Run task in background thread
-        Thread taskThread = new Thread(routeTask);
-        taskThread.setDaemon(true);
-        taskThread.start();
+        routeExecutor.execute(routeTask);
+    }
+
+    // Hides the status line after a few seconds unless a newer route has started meanwhile
+    private void hideStatusLater(Task<RouteResult> routeTask) {
+        Timeline hideStatus = new Timeline(new KeyFrame(Duration.seconds(3), ev -> {
+            if (routeTask == currentRouteTask)
+                statusLabel.setVisible(false);
+        }));
+        hideStatus.play();
+    }
+
+    // Optional pause between progress steps for demos (-Dmetro.ui.stepDelay=<ms>); off by default
+    private static void stepDelay() throws InterruptedException {
+        if (STEP_DELAY_MS > 0)
+            Thread.sleep(STEP_DELAY_MS);
+    }
+
+    // Rendered directions plus the stations to highlight
+    private static final class RouteResult {
+        final String text;
+        final List<Integer> stations;
+
+        RouteResult(String text, List<Integer> stations) {
+            this.text = text;
+            this.stations = stations;
+        }
     }
 
     // ENHANCED ComboBox Styling
@@ -1162,6 +1129,8 @@ public class Main extends Application {
 
     // Update Map Theme with ENHANCED visibility
     private void updateMapTheme(boolean isLight) {
+        if (mapCanvas != null)
+            mapCanvas.setLightTheme(isLight);
         if (mapPane != null) {
             if (isLight) {
                 mapPane.setStyle(
@@ -1192,19 +1161,16 @@ public class Main extends Application {
         }
     }
 
-    // Helper method to get path as list
-    private List<Integer> getPathAsList(int source, int dest) {
-        List<Integer> path = new ArrayList<>();
-        int current = dest;
-
-        while (current != -1) {
-            path.add(0, current); // prepend to path
-            if (current == source)
-                break;
-            current = predecessor[current];
+    // "Did you mean" text for a station name that did not match exactly
+    private String unknownStationMessage(String typed) {
+        List<StationSuggester.Suggestion> suggestions = network.suggest(typed, 3);
+        if (suggestions.isEmpty())
+            return "Station '" + typed.trim() + "' not found";
+        StringBuilder message = new StringBuilder("Station '").append(typed.trim()).append("' not found. Did you mean:");
+        for (StationSuggester.Suggestion suggestion : suggestions) {
+            message.append("\n  • ").append(suggestion.name());
         }
-
-        return path;
+        return message.toString();
     }
 
     // Enhanced alert dialog
@@ -1220,454 +1186,4 @@ public class Main extends Application {
 
         alert.showAndWait();
     }
-
-    // ENHANCED findPath method with better formatting
-    static void findPath(int sourceNumber, int destinationNumber, String sourceColor, StringBuilder result) {
-        int count = 0;
-        while (destinationNumber != sourceNumber) {
-            reversePath[count] = destinationNumber;
-            int u = predecessor[destinationNumber];
-            destinationNumber = u;
-            count++;
-        }
-
-        reversePath[count++] = sourceNumber;
-
-        for (int j = 0, i = count - 1; j < count && i >= 0; j++, i--) {
-            correctPath[j] = reversePath[i];
-        }
-
-        if (count > 1) {
-            int currentSource = correctPath[0];
-            int nextToCurrentSource = correctPath[1];
-
-            // Display ENHANCED time information
-            LocalTime time = LocalTime.now();
-            int hour = time.getHour();
-            int minute = time.getMinute();
-
-            result.append("🕐 CURRENT TIME: ").append(String.format("%02d:%02d", hour, minute)).append("\n");
-
-            if (hour >= 6 && hour <= 23) { // Extended metro hours
-                int arrivalMinute = getArrivalMinute(sourceNumber,
-                        currentSource - nextToCurrentSource == -1 ||
-                                currentSource - nextToCurrentSource == 13);
-
-                if (minute <= arrivalMinute) {
-                    result.append(String.format("🚇 Next Metro Arrival: %02d:%02d (Today)%n", hour, arrivalMinute));
-                } else {
-                    result.append(String.format("🚇 Next Metro Arrival: %02d:%02d (Next train)%n", (hour + 1) % 24,
-                            arrivalMinute));
-                }
-            } else {
-                result.append("⚠️ Metro Service: Currently UNAVAILABLE (Operates 6:00 AM - 11:00 PM)\n");
-            }
-
-            // ENHANCED direction information
-            result.append("🧭 BOARDING DIRECTION: ");
-            if (currentSource - nextToCurrentSource == -1 || currentSource - nextToCurrentSource == 13) {
-                result.append(getEnhancedDirectionMessage(sourceNumber, currentSource, nextToCurrentSource, true));
-            } else if (currentSource - nextToCurrentSource == 1 || currentSource - nextToCurrentSource == -13) {
-                result.append(getEnhancedDirectionMessage(sourceNumber, currentSource, nextToCurrentSource, false));
-            }
-        }
-
-        result.append("\n🗺️ DETAILED JOURNEY PATH:\n");
-        result.append("─".repeat(40)).append("\n");
-
-        StringBuilder pathVisual = new StringBuilder();
-        for (int i = 0; i < count; i++) {
-            // Check for interchange points with ENHANCED messaging
-            // Check for interchange points with ENHANCED messaging
-            if (correctPath[i] == 22) { // Only Civil Court
-                String interchangeInfo = solveConflict(i, count);
-                if (!interchangeInfo.isEmpty()) {
-                    result.append(interchangeInfo);
-                }
-            }
-            // Add step number and station name
-            pathVisual.append(String.format("(%d) %s", i + 1, getStationName(correctPath[i])));
-            if (i < count - 1) {
-                pathVisual.append("\n    ↓ (").append(color[correctPath[i]]).append(" Line)\n");
-            }
-        }
-
-        result.append(pathVisual.toString()).append("\n");
-    }
-
-    // Helper method for enhanced direction message
-    private static String getEnhancedDirectionMessage(int sourceNumber, int currentSource, int nextSource,
-            boolean forward) {
-        if (sourceNumber <= 12) {
-            return forward ? "Towards Swargate (End of Purple Line)\n" : "Towards PCMC (Start of Purple Line)\n";
-        } else {
-            return forward ? "Towards Ramwadi (End of Aqua Line)\n" : "Towards Vanaz (Start of Aqua Line)\n";
-        }
-    }
-
-    // Enhanced conflict resolution for interchanges
-    static String solveConflict(int index, int count) {
-        if (index > 0 && index < count - 1) {
-            int prev = correctPath[index - 1];
-            int current = correctPath[index];
-            int next = correctPath[index + 1];
-
-            String prevColor = color[prev];
-            String currentColor = color[current];
-            String nextColor = color[next];
-
-            if (current == 22 && !prevColor.equals(nextColor)) { // Only Civil Court
-                String stationName = getStationName(current);
-                return String.format("\n🔄 INTERCHANGE at %s:\n" +
-                        "   From: %s Line → To: %s Line\n" +
-                        "   Walking time: ~3 minutes\n" +
-                        "   Follow signs for %s Line platform\n\n",
-                        stationName, prevColor, nextColor, nextColor);
-            }
-        }
-        return "";
-    }
-
-    // Returns the station name for a given index
-    public static String getStationName(int stationIndex) {
-        switch (stationIndex) {
-            case 0:
-                return "PCMC";
-            case 1:
-                return "Sant Tukaram Nagar";
-            case 2:
-                return "Bhosari/Nashik Phata";
-            case 3:
-                return "Kasarwadi";
-            case 4:
-                return "Phugewadi";
-            case 5:
-                return "Dapodi";
-            case 6:
-                return "Bopodi";
-            case 7:
-                return "Khadaki";
-            case 8:
-                return "Range Hill";
-            case 9:
-                return "Shivaji Nagar";
-            case 10:
-                return "Budhwar Peth";
-            case 11:
-                return "Mandai";
-            case 12:
-                return "Swargate";
-            case 13:
-                return "Chandani Chowk";
-            case 14:
-                return "Vanaz";
-            case 15:
-                return "Anand Nagar";
-            case 16:
-                return "Ideal colony";
-            case 17:
-                return "Nal Stop";
-            case 18:
-                return "Garware College";
-            case 19:
-                return "Deccan Gymkhana";
-            case 20:
-                return "Chhatrapati Sambhaji Udyan";
-            case 21:
-                return "PMC";
-            case 22:
-                return "Civil Court";
-            case 23:
-                return "Mangalwar Peth";
-            case 24:
-                return "Pune Railway Station";
-            case 25:
-                return "Ruby Hall Clinic";
-            case 26:
-                return "Bund Garden";
-            case 27:
-                return "Yerawada";
-            case 28:
-                return "Kalayani Nagar";
-            case 29:
-                return "Ramwadi";
-            default:
-                return "Unknown Station";
-        }
-    }
-
-    // ===== CORE ALGORITHM METHODS =====
-
-    // Dijkstra's algorithm implementation
-    public static void dijkstra(int sourceNumber, int destinationNumber) {
-        boolean[] visited = new boolean[30]; // Only stations 0 to 29
-        for (int i = 0; i < 30; i++) {
-            predecessor[i] = -1; // Initialize to -1 for proper path reconstruction
-            dist[i] = Float.MAX_VALUE;
-            visited[i] = false;
-        }
-
-        dist[sourceNumber] = 0;
-
-        for (int j = 0; j < 30; j++) {
-            int minNode = minDistanceNode(dist, visited);
-            if (minNode == -1)
-                break;
-
-            visited[minNode] = true;
-
-            for (int k = 0; k < 30; k++) {
-                if (!visited[k] && adj[minNode][k] != 0 && dist[minNode] != Float.MAX_VALUE
-                        && dist[minNode] + adj[minNode][k] < dist[k]) {
-                    predecessor[k] = minNode;
-                    dist[k] = dist[minNode] + adj[minNode][k];
-                }
-            }
-        }
-    }
-
-    public static int minDistanceNode(float[] dist, boolean[] visited) {
-        float min = Float.MAX_VALUE;
-        int minNode = -1;
-
-        for (int i = 0; i < 30; i++) {
-            if (!visited[i] && dist[i] < min) {
-                min = dist[i];
-                minNode = i;
-            }
-        }
-        return minNode;
-    }
-
-    public static int station(String name) {
-        name = name.trim().toLowerCase();
-
-        if (name.equals("pcmc"))
-            return 0;
-        if (name.equals("sant tukaram nagar"))
-            return 1;
-        if (name.equals("bhosari") || name.equals("nashik phata") || name.equals("bhosari/nashik phata"))
-            return 2;
-        if (name.equals("kasarwadi"))
-            return 3;
-        if (name.equals("phugewadi"))
-            return 4;
-        if (name.equals("dapodi"))
-            return 5;
-        if (name.equals("bopodi"))
-            return 6;
-        if (name.equals("khadaki"))
-            return 7;
-        if (name.equals("range hill"))
-            return 8;
-        if (name.equals("shivaji nagar") || name.equals("shivajinagar"))
-            return 9;
-        if (name.equals("budhwar peth"))
-            return 10;
-        if (name.equals("mandai"))
-            return 11;
-        if (name.equals("swargate"))
-            return 12;
-
-        if (name.equals("chandani chowk"))
-            return 13;
-        if (name.equals("vanaz"))
-            return 14;
-        if (name.equals("anand nagar"))
-            return 15;
-        if (name.equals("ideal colony"))
-            return 16;
-        if (name.equals("nal stop"))
-            return 17;
-        if (name.equals("garware college"))
-            return 18;
-        if (name.equals("deccan gymkhana"))
-            return 19;
-        if (name.equals("chhatrapati sambhaji udyan"))
-            return 20;
-        if (name.equals("pmc"))
-            return 21;
-        if (name.equals("civil court"))
-            return 22;
-        if (name.equals("mangalwar peth"))
-            return 23;
-        if (name.equals("pune railway station"))
-            return 24;
-        if (name.equals("ruby hall clinic"))
-            return 25;
-        if (name.equals("bund garden"))
-            return 26;
-        if (name.equals("yerawada"))
-            return 27;
-        if (name.equals("kalayani nagar"))
-            return 28;
-        if (name.equals("ramwadi"))
-            return 29;
-
-        return -1;
-    }
-
-    public static void stationNotFound(String name) {
-        System.out.println("Did you mean:-");
-
-        if (checkStation(name, "PCMC")) {
-            System.out.println("PCMC (search key)->0");
-            push(0);
-        }
-        if (checkStation(name, "Sant Tukaram Nagar")) {
-            System.out.println("Sant Tukaram Nagar (search key)->1");
-            push(1);
-        }
-        if (checkStation(name, "Bhosari") || checkStation(name, "Nashik Phata")) {
-            System.out.println("Bhosari/Nashik Phata (search key)->2");
-            push(2);
-        }
-        if (checkStation(name, "Kasarwadi")) {
-            System.out.println("Kasarwadi (search key)->3");
-            push(3);
-        }
-        if (checkStation(name, "Phugewadi")) {
-            System.out.println("Phugewadi (search key)->4");
-            push(4);
-        }
-        if (checkStation(name, "Dapodi")) {
-            System.out.println("Dapodi (search key)->5");
-            push(5);
-        }
-        if (checkStation(name, "Bopodi")) {
-            System.out.println("Bopodi (search key)->6");
-            push(6);
-        }
-        if (checkStation(name, "Khadaki")) {
-            System.out.println("Khadaki (search key)->7");
-            push(7);
-        }
-        if (checkStation(name, "Range Hill")) {
-            System.out.println("Range Hill (search key)->8");
-            push(8);
-        }
-        if (checkStation(name, "Shivaji Nagar")) {
-            System.out.println("Shivaji Nagar (search key)->9");
-            push(9);
-        }
-        if (checkStation(name, "Budhwar Peth")) {
-            System.out.println("Budhwar Peth (search key)->10");
-            push(10);
-        }
-        if (checkStation(name, "Mandai")) {
-            System.out.println("Mandai (search key)->11");
-            push(11);
-        }
-        if (checkStation(name, "Swargate")) {
-            System.out.println("Swargate (search key)->12");
-            push(12);
-        }
-
-        // Aqua Line
-        if (checkStation(name, "Chandani Chowk")) {
-            System.out.println("Chandani Chowk (search key)->13");
-            push(13);
-        }
-        if (checkStation(name, "Vanaz")) {
-            System.out.println("Vanaz (search key)->14");
-            push(14);
-        }
-        if (checkStation(name, "Anand Nagar")) {
-            System.out.println("Anand Nagar (search key)->15");
-            push(15);
-        }
-        if (checkStation(name, "Ideal Colony")) {
-            System.out.println("Ideal Colony (search key)->16");
-            push(16);
-        }
-        if (checkStation(name, "Nal Stop")) {
-            System.out.println("Nal Stop (search key)->17");
-            push(17);
-        }
-        if (checkStation(name, "Garware College")) {
-            System.out.println("Garware College (search key)->18");
-            push(18);
-        }
-        if (checkStation(name, "Deccan Gymkhana")) {
-            System.out.println("Deccan Gymkhana (search key)->19");
-            push(19);
-        }
-        if (checkStation(name, "Chhatrapati Sambhaji Udyan")) {
-            System.out.println("Chhatrapati Sambhaji Udyan (search key)->20");
-            push(20);
-        }
-        if (checkStation(name, "PMC")) {
-            System.out.println("PMC (search key)->21");
-            push(21);
-        }
-        if (checkStation(name, "Civil Court")) {
-            System.out.println("Civil Court (search key)->22");
-            push(22);
-        }
-        if (checkStation(name, "Mangalwar Peth")) {
-            System.out.println("Mangalwar Peth (search key)->23");
-            push(23);
-        }
-        if (checkStation(name, "Pune Railway Station")) {
-            System.out.println("Pune Railway Station (search key)->24");
-            push(24);
-        }
-        if (checkStation(name, "Ruby Hall Clinic")) {
-            System.out.println("Ruby Hall Clinic (search key)->25");
-            push(25);
-        }
-        if (checkStation(name, "Bund Garden")) {
-            System.out.println("Bund Garden (search key)->26");
-            push(26);
-        }
-        if (checkStation(name, "Yerawada")) {
-            System.out.println("Yerawada (search key)->27");
-            push(27);
-        }
-        if (checkStation(name, "Kalayani Nagar")) {
-            System.out.println("Kalayani Nagar (search key)->28");
-            push(28);
-        }
-        if (checkStation(name, "Ramwadi")) {
-            System.out.println("Ramwadi (search key)->29");
-            push(29);
-        }
-    }
-
-    static void createGraph() {
-        // Purple Line (PCMC to Swargate): 0 -> 1 -> 2 -> ... -> 9 -> 10 -> 11 -> 12
-        adj[0][1] = adj[1][0] = 2.1f; // PCMC <-> Sant Tukaram Nagar
-        adj[1][2] = adj[2][1] = 0.7f; // Sant Tukaram Nagar <-> Bhosari
-        adj[2][3] = adj[3][2] = 1.5f; // Bhosari <-> Kasarwadi
-        adj[3][4] = adj[4][3] = 1.1f; // Kasarwadi <-> Phugewadi
-        adj[4][5] = adj[5][4] = 2.4f; // Phugewadi <-> Dapodi
-        adj[5][6] = adj[6][5] = 1.0f; // Dapodi <-> Bopodi
-        adj[6][7] = adj[7][6] = 1.4f; // Bopodi <-> Khadaki
-        adj[7][8] = adj[8][7] = 5.3f; // Khadaki <-> Range Hill
-        adj[8][9] = adj[9][8] = 2.9f; // Range Hill <-> ShivajiNagar
-        adj[9][10] = adj[10][9] = 1.1f; // ShivajiNagar <-> Budhwar Peth
-        adj[10][11] = adj[11][10] = 0.65f; // Budhwar Peth <-> Mandai
-        adj[11][12] = adj[12][11] = 1.7f; // Mandai <-> Swargate
-
-        // Aqua Line (Chandani Chowk to Ramwadi): 13 -> 14 -> ... -> 22 -> ... -> 29
-        adj[13][14] = adj[14][13] = 1.2f; // Chandani Chowk <-> Vanaz
-        adj[14][15] = adj[15][14] = 0.95f; // Vanaz <-> Anand Nagar
-        adj[15][16] = adj[16][15] = 1.2f; // Anand Nagar <-> Ideal colony
-        adj[16][17] = adj[17][16] = 1.0f; // Ideal colony <-> Nal Stop
-        adj[17][18] = adj[18][17] = 1.2f; // Nal Stop <-> Garware College
-        adj[18][19] = adj[19][18] = 0.9f; // Garware College <-> Deccan Gymkhana
-        adj[19][20] = adj[20][19] = 1.0f; // Deccan Gymkhana <-> Chhatrapati Sambhaji Udyan
-        adj[20][21] = adj[21][20] = 1.15f; // Chhatrapati Sambhaji Udyan <-> PMC
-        adj[21][22] = adj[22][21] = 1.8f; // PMC <-> Civil Court
-        adj[22][23] = adj[23][22] = 1.7f; // Civil Court <-> Mangalwar Peth
-        adj[23][24] = adj[24][23] = 1.5f; // Mangalwar Peth <-> Pune Railway Station
-        adj[24][25] = adj[25][24] = 1.8f; // Pune Railway Station <-> Ruby Hall Clinic
-        adj[25][26] = adj[26][25] = 1.0f; // Ruby Hall Clinic <-> Bund Garden
-        adj[26][27] = adj[27][26] = 0.8f; // Bund Garden <-> Yerawada
-        adj[27][28] = adj[28][27] = 0.8f; // Yerawada <-> Kalayani Nagar
-        adj[28][29] = adj[29][28] = 0.8f; // Kalayani Nagar <-> Ramwadi
-
-        // Interchange connection: Shivaji Nagar (Purple) <-> Civil Court (Aqua)
-        adj[9][22] = adj[22][9] = 0.5f; // ShivajiNagar <-> Civil Court (interchange)
-    }
 }
@@ -0,0 +1,173 @@
+// Compressed-sparse-row (CSR) graph of the metro network.
+// The arrays sit in buffers: heap-backed when built in code, or mapped straight from a network snapshot.
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+public final class MetroGraph {
+    // Edges of node u live in [offsets[u], offsets[u + 1])
+    private final IntBuffer offsets;
+    private final IntBuffer targets;
+    private final FloatBuffer weights;
+    private final int size;
+
+    private MetroGraph(IntBuffer offsets, IntBuffer targets, FloatBuffer weights) {
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.size = offsets.limit() - 1;
+    }
+
+    // Wraps existing CSR buffers without copying; the caller vouches for their consistency
+    static MetroGraph wrap(IntBuffer offsets, IntBuffer targets, FloatBuffer weights) {
+        if (offsets.limit() < 1 || targets.limit() != weights.limit()
+                || offsets.get(offsets.limit() - 1) != targets.limit())
+            throw new IllegalArgumentException("Inconsistent CSR buffers");
+        return new MetroGraph(offsets, targets, weights);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int edgeCount() {
+        return targets.limit();
+    }
+
+    public int firstEdge(int node) {
+        return offsets.get(node);
+    }
+
+    public int endEdge(int node) {
+        return offsets.get(node + 1);
+    }
+
+    public int target(int edge) {
+        return targets.get(edge);
+    }
+
+    public float weight(int edge) {
+        return weights.get(edge);
+    }
+
+    public int degree(int node) {
+        return offsets.get(node + 1) - offsets.get(node);
+    }
+
+    // Weight of the edge u -> v, or 0 when the stations are not adjacent (same contract as the old adj matrix).
+    // build() allows one edge per ordered pair, so this is the weight every search relaxes between them.
+    public float weight(int from, int to) {
+        int e = edge(from, to);
+        return e < 0 ? 0 : weights.get(e);
+    }
+
+    // The edge u -> v, or -1 when the stations are not adjacent
+    public int edge(int from, int to) {
+        for (int e = offsets.get(from), end = offsets.get(from + 1); e < end; e++) {
+            if (targets.get(e) == to)
+                return e;
+        }
+        return -1;
+    }
+
+    // Read-only views of the CSR arrays, for writing snapshots
+    IntBuffer offsets() {
+        return offsets.asReadOnlyBuffer();
+    }
+
+    IntBuffer targets() {
+        return targets.asReadOnlyBuffer();
+    }
+
+    FloatBuffer weights() {
+        return weights.asReadOnlyBuffer();
+    }
+
+    // Content hash of the CSR arrays, used to detect stale precomputed tables on disk
+    public long fingerprint() {
+        long h = 1125899906842597L;
+        for (int i = 0; i < offsets.limit(); i++) {
+            h = 31 * h + offsets.get(i);
+        }
+        for (int i = 0; i < targets.limit(); i++) {
+            h = 31 * h + targets.get(i);
+        }
+        for (int i = 0; i < weights.limit(); i++) {
+            h = 31 * h + Float.floatToIntBits(weights.get(i));
+        }
+        return h;
+    }
+
+    public static Builder builder(int nodeCount) {
+        return new Builder(nodeCount);
+    }
+
+    // Collects edges as a flat edge list and packs them into CSR arrays on build()
+    public static final class Builder {
+        private final int nodeCount;
+        private int[] from = new int[64];
+        private int[] to = new int[64];
+        private float[] km = new float[64];
+        private int edges;
+
+        private Builder(int nodeCount) {
+            if (nodeCount < 0)
+                throw new IllegalArgumentException("Negative node count: " + nodeCount);
+            this.nodeCount = nodeCount;
+        }
+
+        public Builder addEdge(int u, int v, float weight) {
+            if (u < 0 || u >= nodeCount || v < 0 || v >= nodeCount)
+                throw new IllegalArgumentException("Edge " + u + " -> " + v + " outside 0.." + (nodeCount - 1));
+            if (!(weight > 0))
+                throw new IllegalArgumentException("Edge " + u + " -> " + v + " needs a positive weight");
+            if (edges == from.length) {
+                from = Arrays.copyOf(from, edges * 2);
+                to = Arrays.copyOf(to, edges * 2);
+                km = Arrays.copyOf(km, edges * 2);
+            }
+            from[edges] = u;
+            to[edges] = v;
+            km[edges] = weight;
+            edges++;
+            return this;
+        }
+
+        // Metro tracks run both ways, so most callers want this one
+        public Builder connect(int u, int v, float weight) {
+            return addEdge(u, v, weight).addEdge(v, u, weight);
+        }
+
+        public MetroGraph build() {
+            int[] offsets = new int[nodeCount + 1];
+            for (int i = 0; i < edges; i++) {
+                offsets[from[i] + 1]++;
+            }
+            for (int i = 0; i < nodeCount; i++) {
+                offsets[i + 1] += offsets[i];
+            }
+
+            int[] cursor = Arrays.copyOf(offsets, nodeCount);
+            int[] targets = new int[edges];
+            float[] weights = new float[edges];
+            for (int i = 0; i < edges; i++) {
+                int slot = cursor[from[i]]++;
+                targets[slot] = to[i];
+                weights[slot] = km[i];
+            }
+
+            // Routes are station sequences and per-edge data (lines, transfers) is keyed by station pair, so a
+            // second edge u -> v would leave the length of a route ambiguous
+            int[] seenFrom = new int[nodeCount];
+            Arrays.fill(seenFrom, -1);
+            for (int u = 0; u < nodeCount; u++) {
+                for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                    if (seenFrom[targets[e]] == u)
+                        throw new IllegalArgumentException("Parallel edge " + u + " -> " + targets[e]);
+                    seenFrom[targets[e]] = u;
+                }
+            }
+            return new MetroGraph(IntBuffer.wrap(offsets), IntBuffer.wrap(targets), FloatBuffer.wrap(weights));
+        }
+    }
+}
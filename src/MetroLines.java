@@ -0,0 +1,630 @@
+// Line-aware view of the network: integer line ids, the lines that ride each track edge, and transfer edges
+// between lines with their time penalties. A (station, line) pair is a platform; the platforms of one station
+// are contiguous, so platform ids come from a CSR over stations. Interchanges and directions are worked out
+// by comparing line ids, never names, so any number of lines and junctions works without code changes.
+// The arrays sit in buffers, heap-backed when built here or mapped from a network snapshot.
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class MetroLines {
+    // Hop along a transfer edge, or no train ridden yet
+    public static final int WALK = -1;
+    // -Dmetro.lines.change=<seconds> penalty for changing lines within one station
+    static final int LINE_CHANGE_SECONDS = Integer.getInteger("metro.lines.change", 120);
+
+    private final MetroGraph graph;
+    private final String[] names;
+    // Platforms of station s live in [stationLineOffsets[s], stationLineOffsets[s + 1]), lines ascending
+    private final IntBuffer stationLineOffsets;
+    private final IntBuffer stationLineIds;
+    // Lines riding edge e live in [edgeLineOffsets[e], edgeLineOffsets[e + 1]), lines ascending
+    private final IntBuffer edgeLineOffsets;
+    private final IntBuffer edgeLineIds;
+    // Walking penalty of each edge; 0 when the edge can only be ridden
+    private final IntBuffer transferSeconds;
+    // Station of each platform, the inverse of stationLineOffsets
+    private final IntBuffer platformStation;
+
+    private final ThreadLocal<SearchContext> contexts;
+
+    private MetroLines(MetroGraph graph, String[] names, IntBuffer stationLineOffsets, IntBuffer stationLineIds,
+            IntBuffer edgeLineOffsets, IntBuffer edgeLineIds, IntBuffer transferSeconds, IntBuffer platformStation) {
+        this.graph = graph;
+        this.names = names;
+        this.stationLineOffsets = stationLineOffsets;
+        this.stationLineIds = stationLineIds;
+        this.edgeLineOffsets = edgeLineOffsets;
+        this.edgeLineIds = edgeLineIds;
+        this.transferSeconds = transferSeconds;
+        this.platformStation = platformStation;
+        int nodes = stationLineIds.limit() + graph.size();
+        this.contexts = ThreadLocal.withInitial(() -> new SearchContext(nodes, graph.size()));
+    }
+
+    // Wraps existing buffers without copying. Only the table sizes are checked, so opening stays independent of
+    // the edge count; the ids themselves were checked by validate() when the snapshot was written.
+    static MetroLines wrap(MetroGraph graph, String[] names, IntBuffer stationLineOffsets, IntBuffer stationLineIds,
+            IntBuffer edgeLineOffsets, IntBuffer edgeLineIds, IntBuffer transferSeconds, IntBuffer platformStation) {
+        int n = graph.size();
+        int edges = graph.edgeCount();
+        if (stationLineOffsets.limit() != n + 1 || edgeLineOffsets.limit() != edges + 1
+                || transferSeconds.limit() != edges || platformStation.limit() != stationLineIds.limit()
+                || stationLineOffsets.get(n) != stationLineIds.limit()
+                || edgeLineOffsets.get(edges) != edgeLineIds.limit())
+            throw new IllegalArgumentException("Line tables do not match a graph of " + n + " nodes");
+        return new MetroLines(graph, names, stationLineOffsets, stationLineIds, edgeLineOffsets, edgeLineIds,
+                transferSeconds, platformStation);
+    }
+
+    // Checks every line id, platform and transfer time against the graph, so a snapshot never stores a table
+    // that could index out of range
+    void validate() {
+        int n = graph.size();
+        checkCsr(stationLineOffsets, stationLineIds, names.length);
+        checkCsr(edgeLineOffsets, edgeLineIds, names.length);
+        for (int s = 0; s < n; s++) {
+            for (int p = stationLineOffsets.get(s), end = stationLineOffsets.get(s + 1); p < end; p++) {
+                if (platformStation.get(p) != s)
+                    throw new IllegalArgumentException("Platform " + p + " not at station " + s);
+            }
+        }
+        for (int u = 0; u < n; u++) {
+            for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+                for (int i = edgeLineOffsets.get(e); i < edgeLineOffsets.get(e + 1); i++) {
+                    int line = edgeLineIds.get(i);
+                    if (platform(u, line) < 0 || platform(graph.target(e), line) < 0)
+                        throw new IllegalArgumentException("Edge " + e + " rides line " + line + " past its stations");
+                }
+                if (transferSeconds.get(e) < 0)
+                    throw new IllegalArgumentException("Negative transfer time on edge " + e);
+            }
+        }
+    }
+
+    private static void checkCsr(IntBuffer offsets, IntBuffer ids, int lineCount) {
+        for (int i = 0; i + 1 < offsets.limit(); i++) {
+            int start = offsets.get(i);
+            int end = offsets.get(i + 1);
+            if (start < 0 || end < start || end > ids.limit())
+                throw new IllegalArgumentException("Inconsistent line offsets at " + i);
+            for (int j = start; j < end; j++) {
+                int line = ids.get(j);
+                if (line < 0 || line >= lineCount || (j > start && line <= ids.get(j - 1)))
+                    throw new IllegalArgumentException("Bad line id " + line + " at " + i);
+            }
+        }
+    }
+
+    public int lineCount() {
+        return names.length;
+    }
+
+    public String name(int line) {
+        return line == WALK ? "Walk" : names[line];
+    }
+
+    // ===== PLATFORMS =====
+
+    public int platformCount() {
+        return stationLineIds.limit();
+    }
+
+    public int firstPlatform(int station) {
+        return stationLineOffsets.get(station);
+    }
+
+    public int endPlatform(int station) {
+        return stationLineOffsets.get(station + 1);
+    }
+
+    public int platformLine(int platform) {
+        return stationLineIds.get(platform);
+    }
+
+    // Platform of line at station, or -1 when the line does not stop there
+    public int platform(int station, int line) {
+        int low = stationLineOffsets.get(station);
+        int high = stationLineOffsets.get(station + 1) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int at = stationLineIds.get(mid);
+            if (at < line)
+                low = mid + 1;
+            else if (at > line)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+    public boolean serves(int station, int line) {
+        return platform(station, line) >= 0;
+    }
+
+    // Line names at a station joined with '/', "None" for a station no train stops at
+    public String describe(int station) {
+        int first = firstPlatform(station);
+        int end = endPlatform(station);
+        if (first == end)
+            return "None";
+        StringBuilder sb = new StringBuilder(names[platformLine(first)]);
+        for (int p = first + 1; p < end; p++) {
+            sb.append('/').append(names[platformLine(p)]);
+        }
+        return sb.toString();
+    }
+
+    // ===== EDGES =====
+
+    public int edgeLineCount(int edge) {
+        return edgeLineOffsets.get(edge + 1) - edgeLineOffsets.get(edge);
+    }
+
+    public int edgeLine(int edge, int index) {
+        return edgeLineIds.get(edgeLineOffsets.get(edge) + index);
+    }
+
+    public boolean rides(int edge, int line) {
+        for (int i = edgeLineOffsets.get(edge), end = edgeLineOffsets.get(edge + 1); i < end; i++) {
+            if (edgeLineIds.get(i) == line)
+                return true;
+        }
+        return false;
+    }
+
+    public boolean isTransfer(int edge) {
+        return transferSeconds.get(edge) > 0;
+    }
+
+    public int transferSeconds(int edge) {
+        return transferSeconds.get(edge);
+    }
+
+    // ===== ROUTES =====
+
+    // Line of every hop of a station sequence (WALK for transfer hops), chosen to need the fewest interchanges
+    public int[] hopLines(int[] stations) {
+        int hops = Math.max(0, stations.length - 1);
+        int[] edges = new int[hops];
+        int options = 0;
+        for (int i = 0; i < hops; i++) {
+            int e = graph.edge(stations[i], stations[i + 1]);
+            if (e < 0)
+                throw new IllegalArgumentException("Stations " + stations[i] + " and " + stations[i + 1] + " are not adjacent");
+            edges[i] = e;
+            options += edgeLineCount(e);
+        }
+        // One option per (ride hop, line): its hop, its line, the fewest interchanges reaching it and the
+        // option on the previous ride hop it continued from; walks keep whatever line was ridden last
+        int[] hop = new int[options];
+        int[] line = new int[options];
+        int[] changes = new int[options];
+        int[] from = new int[options];
+        int previousStart = 0;
+        int previousEnd = 0;
+        int at = 0;
+        for (int i = 0; i < hops; i++) {
+            int start = at;
+            for (int k = 0, count = edgeLineCount(edges[i]); k < count; k++, at++) {
+                hop[at] = i;
+                line[at] = edgeLine(edges[i], k);
+                from[at] = -1;
+                for (int q = previousStart; q < previousEnd; q++) {
+                    int cost = changes[q] + (line[q] == line[at] ? 0 : 1);
+                    if (from[at] < 0 || cost < changes[at]) {
+                        changes[at] = cost;
+                        from[at] = q;
+                    }
+                }
+            }
+            if (at > start) {
+                previousStart = start;
+                previousEnd = at;
+            }
+        }
+        int[] result = new int[hops];
+        Arrays.fill(result, WALK);
+        if (previousEnd == 0)
+            return result;
+        int best = previousStart;
+        for (int q = previousStart + 1; q < previousEnd; q++) {
+            if (changes[q] < changes[best])
+                best = q;
+        }
+        for (int q = best; q >= 0; q = from[q]) {
+            result[hop[q]] = line[q];
+        }
+        return result;
+    }
+
+    // Changes from one train to a different line; walks between trains do not count on their own
+    public static int interchanges(int[] hopLines) {
+        int count = 0;
+        int lastRide = WALK;
+        for (int line : hopLines) {
+            if (line == WALK)
+                continue;
+            if (lastRide != WALK && line != lastRide)
+                count++;
+            lastRide = line;
+        }
+        return count;
+    }
+
+    // Last station reached riding line from -> to onwards, stopping where the line ends or branches;
+    // -1 on a loop line, which has no end
+    public int terminus(int line, int from, int to) {
+        int previous = from;
+        int at = to;
+        for (int steps = 0; steps < graph.size(); steps++) {
+            int next = -1;
+            for (int e = graph.firstEdge(at), end = graph.endEdge(at); e < end; e++) {
+                int v = graph.target(e);
+                if (v == previous || v == next || !rides(e, line))
+                    continue;
+                if (next >= 0)
+                    return at;
+                next = v;
+            }
+            if (next < 0)
+                return at;
+            previous = at;
+            at = next;
+        }
+        return -1;
+    }
+
+    // ===== SEARCH =====
+
+    // Cheapest route over (station, line) platforms: track km, plus every transfer's time penalty and every
+    // change of line within a station, both counted as the distance a train covers in that time
+    public Route route(int source, int destination) {
+        return search(source, destination).route();
+    }
+
+    // As route(), with the line of each hop and the interchanges read off the platforms the search settled
+    public LineRoute search(int source, int destination) {
+        checkStation(source);
+        checkStation(destination);
+        SearchContext ctx = contexts.get();
+        int platforms = platformCount();
+        int found = run(ctx, source, destination, null);
+        if (found < 0)
+            return new LineRoute(Route.notFound(source, destination), new int[0], 0);
+        int length = 0;
+        for (int node = found; node >= 0; node = ctx.predecessor[node]) {
+            length++;
+        }
+        int[] stations = new int[length];
+        // Hop i arrives at stations[i + 1]: on a platform when a train was ridden, on the street after a walk
+        int[] hopLines = new int[length - 1];
+        for (int node = found, i = length - 1; node >= 0; node = ctx.predecessor[node], i--) {
+            stations[i] = node < platforms ? platformStation.get(node) : node - platforms;
+            if (i > 0)
+                hopLines[i - 1] = node < platforms ? platformLine(node) : WALK;
+        }
+        return new LineRoute(new Route(source, destination, stations, ctx.km[found]), hopLines,
+                ctx.changes[found]);
+    }
+
+    // Settles every station reachable from source, cheapest first, with the km, hops and interchanges of the
+    // route search() returns to it. Same search and tie order as search(), so the two always agree.
+    public void routeTree(int source, RouteVisitor visitor) {
+        checkStation(source);
+        run(contexts.get(), source, -1, visitor);
+    }
+
+    public interface RouteVisitor {
+        void settled(int station, float km, int hops, int interchanges);
+    }
+
+    // Platform search from source; stops at destination's first settled node and returns it, or -1 once
+    // every reachable node is settled
+    private int run(SearchContext ctx, int source, int destination, RouteVisitor visitor) {
+        ctx.reset();
+        int platforms = platformCount();
+        // Nodes: platforms first, then one "street" node per station for arrivals on foot and the origin
+        int start = platforms + source;
+        ctx.reach(start, 0, 0, -1, 0, WALK);
+        IndexedMinHeap queue = ctx.queue;
+        queue.insertOrDecrease(start, 0);
+        float changeKm = penaltyKm(LINE_CHANGE_SECONDS);
+
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            int u = node < platforms ? platformStation.get(node) : node - platforms;
+            if (ctx.stationStamp[u] != ctx.generation) {
+                // The first node settled at a station ends the route search() would return to it
+                ctx.stationStamp[u] = ctx.generation;
+                if (visitor != null)
+                    visitor.settled(u, ctx.km[node], ctx.hops[node], ctx.changes[node]);
+                if (u == destination)
+                    return node;
+            }
+            int onLine = node < platforms ? platformLine(node) : WALK;
+            int lastRide = ctx.lastRide[node];
+            float cost = ctx.cost[node];
+            float km = ctx.km[node];
+            int changes = ctx.changes[node];
+            for (int e = graph.firstEdge(u), end = graph.endEdge(u); e < end; e++) {
+                int v = graph.target(e);
+                float w = graph.weight(e);
+                for (int i = edgeLineOffsets.get(e), last = edgeLineOffsets.get(e + 1); i < last; i++) {
+                    int line = edgeLineIds.get(i);
+                    int next = platform(v, line);
+                    float candidate = cost + w + (onLine != WALK && line != onLine ? changeKm : 0);
+                    if (candidate < ctx.costOf(next)) {
+                        ctx.reach(next, candidate, km + w, node,
+                                changes + (lastRide != WALK && line != lastRide ? 1 : 0), line);
+                        queue.insertOrDecrease(next, candidate);
+                    }
+                }
+                int seconds = transferSeconds.get(e);
+                if (seconds > 0) {
+                    int next = platforms + v;
+                    float candidate = cost + w + penaltyKm(seconds);
+                    if (candidate < ctx.costOf(next)) {
+                        ctx.reach(next, candidate, km + w, node, changes, lastRide);
+                        queue.insertOrDecrease(next, candidate);
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    private void checkStation(int station) {
+        if (station < 0 || station >= graph.size())
+            throw new IllegalArgumentException("Unknown station index: " + station);
+    }
+
+    // A route with the line ridden on each hop and the interchanges the search charged for
+    public static final class LineRoute {
+        private final Route route;
+        private final int[] hopLines;
+        private final int interchanges;
+
+        LineRoute(Route route, int[] hopLines, int interchanges) {
+            this.route = route;
+            this.hopLines = hopLines;
+            this.interchanges = interchanges;
+        }
+
+        public Route route() {
+            return route;
+        }
+
+        // Line ridden on each hop, WALK for a transfer walk
+        public int[] hopLines() {
+            return hopLines.clone();
+        }
+
+        public int interchanges() {
+            return interchanges;
+        }
+    }
+
+    static float penaltyKm(int seconds) {
+        return seconds * MetroNetwork.AVERAGE_SPEED_KMH / 3600f;
+    }
+
+    // Per-thread search state, stamped per query
+    private static final class SearchContext {
+        final float[] cost;
+        final float[] km;
+        final int[] predecessor;
+        final int[] changes;
+        final int[] lastRide;
+        final int[] hops;
+        final int[] stamp;
+        // Stations that already have a settled node, stamped with the same generation
+        final int[] stationStamp;
+        final IndexedMinHeap queue;
+        int generation;
+
+        SearchContext(int nodes, int stations) {
+            cost = new float[nodes];
+            km = new float[nodes];
+            predecessor = new int[nodes];
+            changes = new int[nodes];
+            lastRide = new int[nodes];
+            hops = new int[nodes];
+            stamp = new int[nodes];
+            stationStamp = new int[stations];
+            queue = new IndexedMinHeap(Math.max(1, nodes));
+        }
+
+        void reset() {
+            queue.clear();
+            if (++generation == 0) {
+                Arrays.fill(stamp, 0);
+                Arrays.fill(stationStamp, 0);
+                generation = 1;
+            }
+        }
+
+        float costOf(int node) {
+            return stamp[node] == generation ? cost[node] : Float.MAX_VALUE;
+        }
+
+        void reach(int node, float nodeCost, float nodeKm, int from, int nodeChanges, int ride) {
+            stamp[node] = generation;
+            cost[node] = nodeCost;
+            km[node] = nodeKm;
+            predecessor[node] = from;
+            changes[node] = nodeChanges;
+            lastRide[node] = ride;
+            hops[node] = from < 0 ? 0 : hops[from] + 1;
+        }
+    }
+
+    // The graph the edge tables index into
+    MetroGraph graph() {
+        return graph;
+    }
+
+    // Read-only views for writing snapshots
+    String[] names() {
+        return names.clone();
+    }
+
+    IntBuffer stationLineOffsets() {
+        return stationLineOffsets.asReadOnlyBuffer();
+    }
+
+    IntBuffer stationLineIds() {
+        return stationLineIds.asReadOnlyBuffer();
+    }
+
+    IntBuffer edgeLineOffsets() {
+        return edgeLineOffsets.asReadOnlyBuffer();
+    }
+
+    IntBuffer edgeLineIds() {
+        return edgeLineIds.asReadOnlyBuffer();
+    }
+
+    IntBuffer transferSeconds() {
+        return transferSeconds.asReadOnlyBuffer();
+    }
+
+    IntBuffer platformStations() {
+        return platformStation.asReadOnlyBuffer();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    // Collects lines, the station pairs each line rides and the walking transfers, then resolves them onto
+    // the edges of a built graph. Stations serve every line that rides one of their edges, plus any named
+    // explicitly with serve().
+    public static final class Builder {
+        private final List<String> names = new ArrayList<>();
+        private final Map<Long, int[]> rides = new HashMap<>();
+        private final Map<Long, Integer> transfers = new HashMap<>();
+        private final Map<Integer, int[]> served = new HashMap<>();
+
+        private Builder() {
+        }
+
+        // A new line id; names need not be unique (GTFS routes often share a short name)
+        public int addLine(String name) {
+            names.add(name);
+            return names.size() - 1;
+        }
+
+        public Builder serve(int station, int line) {
+            checkLine(line);
+            add(served, station, line);
+            return this;
+        }
+
+        // Line runs trains from u to v
+        public Builder ride(int u, int v, int line) {
+            checkLine(line);
+            add(rides, key(u, v), line);
+            return this;
+        }
+
+        // Walking from u to v takes seconds; the first time given for a pair wins
+        public Builder transfer(int u, int v, int seconds) {
+            if (!(seconds > 0))
+                throw new IllegalArgumentException("Transfer " + u + " -> " + v + " needs a positive time");
+            transfers.putIfAbsent(key(u, v), seconds);
+            return this;
+        }
+
+        public MetroLines build(MetroGraph graph) {
+            int n = graph.size();
+            int edges = graph.edgeCount();
+            int[][] stationLines = new int[n][];
+            for (Map.Entry<Integer, int[]> entry : served.entrySet()) {
+                if (entry.getKey() < 0 || entry.getKey() >= n)
+                    throw new IllegalArgumentException("Station " + entry.getKey() + " outside 0.." + (n - 1));
+                stationLines[entry.getKey()] = entry.getValue();
+            }
+            int[] edgeLineOffsets = new int[edges + 1];
+            int[][] edgeLines = new int[edges][];
+            int[] seconds = new int[edges];
+            for (int u = 0; u < n; u++) {
+                for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+                    int v = graph.target(e);
+                    int[] lines = rides.getOrDefault(key(u, v), new int[0]);
+                    edgeLines[e] = lines;
+                    seconds[e] = transfers.getOrDefault(key(u, v), 0);
+                    if (lines.length == 0 && seconds[e] == 0)
+                        throw new IllegalArgumentException("Edge " + u + " -> " + v + " is neither ridden nor walked");
+                    if (lines.length > 0) {
+                        stationLines[u] = stationLines[u] == null ? lines : union(stationLines[u], lines);
+                        stationLines[v] = stationLines[v] == null ? lines : union(stationLines[v], lines);
+                    }
+                    edgeLineOffsets[e + 1] = lines.length;
+                }
+            }
+            for (int e = 0; e < edges; e++) {
+                edgeLineOffsets[e + 1] += edgeLineOffsets[e];
+            }
+            int[] edgeLineIds = new int[edgeLineOffsets[edges]];
+            for (int e = 0; e < edges; e++) {
+                System.arraycopy(edgeLines[e], 0, edgeLineIds, edgeLineOffsets[e], edgeLines[e].length);
+            }
+            int[] stationLineOffsets = new int[n + 1];
+            for (int s = 0; s < n; s++) {
+                stationLineOffsets[s + 1] = stationLineOffsets[s] + (stationLines[s] == null ? 0 : stationLines[s].length);
+            }
+            int[] stationLineIds = new int[stationLineOffsets[n]];
+            for (int s = 0; s < n; s++) {
+                if (stationLines[s] != null)
+                    System.arraycopy(stationLines[s], 0, stationLineIds, stationLineOffsets[s], stationLines[s].length);
+            }
+            int[] platformStation = new int[stationLineIds.length];
+            for (int s = 0; s < n; s++) {
+                Arrays.fill(platformStation, stationLineOffsets[s], stationLineOffsets[s + 1], s);
+            }
+            return new MetroLines(graph, names.toArray(new String[0]), IntBuffer.wrap(stationLineOffsets),
+                    IntBuffer.wrap(stationLineIds), IntBuffer.wrap(edgeLineOffsets), IntBuffer.wrap(edgeLineIds),
+                    IntBuffer.wrap(seconds), IntBuffer.wrap(platformStation));
+        }
+
+        private void checkLine(int line) {
+            if (line < 0 || line >= names.size())
+                throw new IllegalArgumentException("Unknown line id " + line);
+        }
+
+        private static long key(int u, int v) {
+            return ((long) u << 32) | (v & 0xFFFFFFFFL);
+        }
+
+        // Feeds repeat the same (pair, line) for every trip, so look before allocating
+        private static <K> void add(Map<K, int[]> lines, K key, int line) {
+            int[] known = lines.get(key);
+            if (known == null)
+                lines.put(key, new int[] { line });
+            else if (Arrays.binarySearch(known, line) < 0)
+                lines.put(key, union(known, new int[] { line }));
+        }
+
+        // Sorted union of two ascending id arrays
+        private static int[] union(int[] a, int[] b) {
+            int[] out = new int[a.length + b.length];
+            int i = 0;
+            int j = 0;
+            int k = 0;
+            while (i < a.length || j < b.length) {
+                int next = j == b.length || (i < a.length && a[i] <= b[j]) ? a[i] : b[j];
+                if (i < a.length && a[i] == next)
+                    i++;
+                if (j < b.length && b[j] == next)
+                    j++;
+                out[k++] = next;
+            }
+            return Arrays.copyOf(out, k);
+        }
+    }
+}
@@ -0,0 +1,801 @@
+// Map of the whole network drawn on one Canvas: tracks, stations and labels in a single pass instead of a
+// scene-graph node per shape, so CSS and layout passes stay flat however many stops the feed has.
+// Stations sit at their coordinates projected onto a map plane; the canvas is the size of the viewport and
+// shows that plane through a pan and zoom. Two spatial grids, one over station positions and one over track
+// segments, answer hover and click hit-tests and tell a repaint which shapes touch the dirty rectangle, so
+// only what is in view is drawn. Symbols keep their size on screen; when zooming out brings stations close
+// together, names, rings and walks are dropped and tracks are drawn as one thin path per line colour.
+// Showing or clearing a route repaints only the rectangles the route overlay covers.
+import javafx.animation.AnimationTimer;
+import javafx.geometry.Rectangle2D;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.StrokeLineCap;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextAlignment;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+public final class MetroMapCanvas extends Region {
+    private static final double MARGIN = 60;
+    private static final double GRID_STEP = 50;
+    private static final double STATION_RADIUS = 12;
+    private static final double RING_RADIUS = 16;
+    private static final double GLOW_RADIUS = 20;
+    private static final double JUNCTION_RADIUS = 35;
+    private static final double HIT_RADIUS = 16;
+    private static final double TRACK_WIDTH = 10;
+    private static final double ROUTE_WIDTH = 6;
+    private static final double LABEL_HEIGHT = 18;
+    private static final double DOT_RADIUS = 3;
+    private static final double THIN_TRACK_WIDTH = 2;
+
+    // Level of detail, from the median track length on screen: names and step badges need room for a label,
+    // rings and interchange walks for a station symbol; below that tracks are simplified
+    private static final double LABEL_SPACING = 28;
+    private static final double DETAIL_SPACING = 14;
+
+    // Zoom limits relative to the view that fits the whole map, and zoom per scroll-wheel unit
+    private static final double MIN_ZOOM = 0.5;
+    private static final double MAX_ZOOM = 64;
+    private static final double ZOOM_PER_SCROLL = 0.002;
+
+    // Once every station has lit up and finished its pulse, only the glow rings and dashes still move, so the
+    // overlay is repainted at this rate instead of every frame
+    private static final double SETTLED_FRAME_SECONDS = 1 / 15.0;
+
+    // Line ids index this palette; the first two match the Purple and Aqua lines of the built-in network
+    private static final Color[] LINE_COLORS = { Color.web("#8E4EC6"), Color.web("#00CED1"), Color.web("#E74C3C"),
+            Color.web("#2ECC71"), Color.web("#F1C40F"), Color.web("#3498DB"), Color.web("#E67E22"),
+            Color.web("#1ABC9C") };
+    private static final Color JUNCTION_COLOR = Color.web("#FF8C00");
+    private static final Color ROUTE_COLOR = Color.YELLOW;
+
+    private static final Font LABEL_FONT = Font.font("Arial", FontWeight.BOLD, 10);
+    private static final Font DETAIL_FONT = Font.font("Arial", FontWeight.BOLD, 13);
+    private static final Font STEP_FONT = Font.font("Arial", FontWeight.BOLD, 14);
+
+    private final MetroNetwork network;
+    private final MetroGraph graph;
+    private final MetroLines lines;
+    private final Canvas canvas;
+    private final GraphicsContext gc;
+
+    // Per station: map position, label width, and whether it is an interchange
+    private final float[] x;
+    private final float[] y;
+    private final float[] labelWidth;
+    private final boolean[] junction;
+    private final SpatialGrid stationIndex;
+    private final double stationReach; // pixels a station's drawing reaches from its centre
+
+    // Per drawn segment: graph edge and its source station; two-way track is drawn once
+    private final int[] segmentEdge;
+    private final int[] segmentFrom;
+    private final SpatialGrid segmentIndex;
+    private final double spacing; // median segment length on the map plane
+    private final int[] visibleSegments; // scratch for the simplified tracks
+    private int visibleCount;
+
+    // View: screen = map * zoom + pan. The map plane is the projection fitted to the size given to the
+    // constructor; the view fits it to the canvas until the user pans or zooms, and follows resizes till then.
+    private final double mapWidth;
+    private final double mapHeight;
+    private double zoom = 1;
+    private double panX;
+    private double panY;
+    private boolean fitted = true;
+    private double dragX;
+    private double dragY;
+    // Drags and scrolls arrive faster than frames; they move the view and this paints it once per pulse
+    private final AnimationTimer viewPaint = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            stop();
+            repaintAll();
+        }
+    };
+
+    private boolean light;
+    private int hovered = -1;
+    private IntConsumer onStationClicked = station -> {
+    };
+
+    // Route overlay: the stations in order, each station's step, and the screen rectangles the overlay covers
+    private int[] route = new int[0];
+    private final int[] routeStep;
+    private final List<Rectangle2D> overlayBounds = new ArrayList<>();
+
+    // Route animation state, set each frame by animateRoute(); a route shown without animation is drawn whole
+    private int revealed;
+    private double animationSeconds = -1;
+    private double stepSeconds;
+    private double paintedSeconds;
+
+    public MetroMapCanvas(MetroNetwork network, double width, double height) {
+        this.network = network;
+        this.graph = network.graph();
+        this.lines = network.lines();
+        int n = network.size();
+        x = new float[n];
+        y = new float[n];
+        project(width, height);
+
+        labelWidth = new float[n];
+        junction = new boolean[n];
+        Text measure = new Text();
+        measure.setFont(LABEL_FONT);
+        float[] stationBounds = new float[4 * n];
+        double widestLabel = 0;
+        for (int s = 0; s < n; s++) {
+            measure.setText(network.stationName(s));
+            labelWidth[s] = (float) measure.getLayoutBounds().getWidth() + 8;
+            widestLabel = Math.max(widestLabel, labelWidth[s]);
+            junction[s] = platforms(s) > 1;
+            for (int e = graph.firstEdge(s); e < graph.endEdge(s) && !junction[s]; e++) {
+                junction[s] = lines.isTransfer(e);
+            }
+            // Symbols do not scale with the map, so stations are indexed as points and queries widen by the reach
+            stationBounds[4 * s] = stationBounds[4 * s + 2] = x[s];
+            stationBounds[4 * s + 1] = stationBounds[4 * s + 3] = y[s];
+        }
+        stationReach = Math.max(Math.max(JUNCTION_RADIUS + 3, widestLabel / 2 + 1), GLOW_RADIUS + 6 + LABEL_HEIGHT);
+        // About four stations per cell, so a zoomed-in view visits few of them
+        double cellSize = Math.max(4, 2 * Math.sqrt(width * height / Math.max(1, n)));
+        stationIndex = SpatialGrid.build(stationBounds, cellSize);
+
+        int[] edges = new int[graph.edgeCount()];
+        int[] from = new int[graph.edgeCount()];
+        int segments = 0;
+        for (int u = 0; u < n; u++) {
+            for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+                int v = graph.target(e);
+                if (u < v || graph.edge(v, u) < 0) {
+                    edges[segments] = e;
+                    from[segments++] = u;
+                }
+            }
+        }
+        segmentEdge = Arrays.copyOf(edges, segments);
+        segmentFrom = Arrays.copyOf(from, segments);
+        float[] segmentBounds = new float[4 * segments];
+        double[] lengths = new double[segments];
+        for (int i = 0; i < segments; i++) {
+            int u = segmentFrom[i];
+            int v = graph.target(segmentEdge[i]);
+            segmentBounds[4 * i] = Math.min(x[u], x[v]);
+            segmentBounds[4 * i + 1] = Math.min(y[u], y[v]);
+            segmentBounds[4 * i + 2] = Math.max(x[u], x[v]);
+            segmentBounds[4 * i + 3] = Math.max(y[u], y[v]);
+            lengths[i] = Math.hypot(x[u] - x[v], y[u] - y[v]);
+        }
+        segmentIndex = SpatialGrid.build(segmentBounds, cellSize);
+        visibleSegments = new int[segments];
+        Arrays.sort(lengths);
+        spacing = segments == 0 ? width : Math.max(lengths[segments / 2], 1e-3);
+
+        routeStep = new int[n];
+        Arrays.fill(routeStep, -1);
+
+        mapWidth = width;
+        mapHeight = height;
+        canvas = new Canvas(width, height);
+        gc = canvas.getGraphicsContext2D();
+        getChildren().add(canvas);
+        setPrefSize(width, height);
+
+        setOnMouseMoved(e -> hover(stationAt(e.getX(), e.getY())));
+        setOnMouseExited(e -> hover(-1));
+        setOnMousePressed(e -> {
+            dragX = e.getX();
+            dragY = e.getY();
+        });
+        setOnMouseDragged(e -> {
+            pan(e.getX() - dragX, e.getY() - dragY);
+            dragX = e.getX();
+            dragY = e.getY();
+        });
+        setOnScroll(e -> {
+            zoomAt(e.getX(), e.getY(), Math.exp(e.getDeltaY() * ZOOM_PER_SCROLL));
+            e.consume();
+        });
+        setOnZoom(e -> {
+            zoomAt(e.getX(), e.getY(), e.getZoomFactor());
+            e.consume();
+        });
+        setOnMouseClicked(e -> {
+            // The end of a drag is not a click
+            if (!e.isStillSincePress())
+                return;
+            int station = stationAt(e.getX(), e.getY());
+            if (station >= 0)
+                onStationClicked.accept(station);
+            else if (e.getClickCount() == 2)
+                fitView();
+        });
+        repaintAll();
+    }
+
+    // The canvas always matches the region, so it never holds pixels outside the viewport
+    @Override
+    protected void layoutChildren() {
+        double width = Math.max(1, Math.floor(getWidth()));
+        double height = Math.max(1, Math.floor(getHeight()));
+        if (width == canvas.getWidth() && height == canvas.getHeight())
+            return;
+        canvas.setWidth(width);
+        canvas.setHeight(height);
+        if (fitted) {
+            fitView();
+        } else {
+            viewChanged();
+        }
+    }
+
+    // Equirectangular projection fitted to the canvas; stations without coordinates sit between their located
+    // neighbours, or in the middle when none of them is located
+    private void project(double width, double height) {
+        int n = x.length;
+        double cos = Math.cos(Math.toRadians(meanLatitude()));
+        double minX = Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+        boolean[] located = new boolean[n];
+        for (int s = 0; s < n; s++) {
+            located[s] = !Float.isNaN(network.latitude(s)) && !Float.isNaN(network.longitude(s));
+            if (!located[s])
+                continue;
+            x[s] = (float) (network.longitude(s) * cos);
+            y[s] = -network.latitude(s);
+            minX = Math.min(minX, x[s]);
+            minY = Math.min(minY, y[s]);
+            maxX = Math.max(maxX, x[s]);
+            maxY = Math.max(maxY, y[s]);
+        }
+        if (minX > maxX) {
+            minX = maxX = minY = maxY = 0;
+        }
+        double spanX = Math.max(maxX - minX, 1e-9);
+        double spanY = Math.max(maxY - minY, 1e-9);
+        double scale = Math.min((width - 2 * MARGIN) / spanX, (height - 2 * MARGIN) / spanY);
+        double offsetX = (width - spanX * scale) / 2;
+        double offsetY = (height - spanY * scale) / 2;
+        for (int s = 0; s < n; s++) {
+            if (located[s]) {
+                x[s] = (float) (offsetX + (x[s] - minX) * scale);
+                y[s] = (float) (offsetY + (y[s] - minY) * scale);
+            }
+        }
+
+        boolean placed = true;
+        while (placed) {
+            placed = false;
+            for (int s = 0; s < n; s++) {
+                if (located[s])
+                    continue;
+                double sumX = 0;
+                double sumY = 0;
+                int count = 0;
+                for (int e = graph.firstEdge(s); e < graph.endEdge(s); e++) {
+                    int v = graph.target(e);
+                    if (located[v]) {
+                        sumX += x[v];
+                        sumY += y[v];
+                        count++;
+                    }
+                }
+                if (count > 0) {
+                    x[s] = (float) (sumX / count);
+                    y[s] = (float) (sumY / count);
+                    located[s] = placed = true;
+                }
+            }
+        }
+        for (int s = 0; s < n; s++) {
+            if (!located[s]) {
+                x[s] = (float) (width / 2);
+                y[s] = (float) (height / 2);
+            }
+        }
+    }
+
+    private double meanLatitude() {
+        double sum = 0;
+        int count = 0;
+        for (int s = 0; s < network.size(); s++) {
+            if (!Float.isNaN(network.latitude(s))) {
+                sum += network.latitude(s);
+                count++;
+            }
+        }
+        return count == 0 ? 0 : sum / count;
+    }
+
+    // ===== API =====
+
+    public void setOnStationClicked(IntConsumer handler) {
+        onStationClicked = handler;
+    }
+
+    // Where the station is on screen
+    public double stationX(int station) {
+        return sx(station);
+    }
+
+    public double stationY(int station) {
+        return sy(station);
+    }
+
+    // Station under the screen point, or -1
+    public int stationAt(double px, double py) {
+        return stationIndex.nearest((px - panX) / zoom, (py - panY) / zoom, HIT_RADIUS / zoom, x, y);
+    }
+
+    public void setLightTheme(boolean light) {
+        if (this.light == light)
+            return;
+        this.light = light;
+        repaintAll();
+    }
+
+    // Moves the map by (dx, dy) pixels
+    public void pan(double dx, double dy) {
+        panX += dx;
+        panY += dy;
+        fitted = false;
+        viewChanged();
+    }
+
+    // Scales the map by factor around the screen point (px, py), within the zoom limits
+    public void zoomAt(double px, double py, double factor) {
+        double fit = fitZoom();
+        double target = Math.max(fit * MIN_ZOOM, Math.min(fit * MAX_ZOOM, zoom * factor));
+        if (target == zoom)
+            return;
+        panX = px - (px - panX) * target / zoom;
+        panY = py - (py - panY) * target / zoom;
+        zoom = target;
+        fitted = false;
+        viewChanged();
+    }
+
+    // Back to the whole map, centred
+    public void fitView() {
+        zoom = fitZoom();
+        panX = (canvas.getWidth() - mapWidth * zoom) / 2;
+        panY = (canvas.getHeight() - mapHeight * zoom) / 2;
+        fitted = true;
+        viewChanged();
+    }
+
+    public double zoom() {
+        return zoom;
+    }
+
+    // Replaces the highlighted route, repainting what the old and the new overlay cover
+    public void showRoute(List<Integer> stations) {
+        List<Rectangle2D> dirty = new ArrayList<>(overlayBounds);
+        for (int s : route) {
+            routeStep[s] = -1;
+        }
+        route = new int[stations.size()];
+        revealed = route.length;
+        animationSeconds = -1;
+        for (int i = 0; i < route.length; i++) {
+            route[i] = stations.get(i);
+            routeStep[route[i]] = i;
+        }
+        updateOverlayBounds();
+        dirty.addAll(overlayBounds);
+        repaint(dirty);
+    }
+
+    public void clearRoute() {
+        showRoute(List.of());
+    }
+
+    // One animation frame at seconds since the route was shown: stations light up one per stepSeconds, each
+    // pulses once as it appears, glow rings keep pulsing and the dashes move. Only the overlay is repainted,
+    // every frame during the reveal and at SETTLED_FRAME_SECONDS after it.
+    public void animateRoute(double seconds, double stepSeconds) {
+        boolean settled = animationSeconds >= 0 && seconds >= route.length * stepSeconds + 1;
+        if (settled && seconds - paintedSeconds < SETTLED_FRAME_SECONDS)
+            return;
+        this.animationSeconds = seconds;
+        this.stepSeconds = stepSeconds;
+        paintedSeconds = seconds;
+        revealed = Math.min(route.length, (int) (seconds / stepSeconds) + 1);
+        repaint(overlayBounds);
+    }
+
+    // ===== VIEW =====
+
+    private double fitZoom() {
+        return Math.min(canvas.getWidth() / mapWidth, canvas.getHeight() / mapHeight);
+    }
+
+    private double sx(int s) {
+        return x[s] * zoom + panX;
+    }
+
+    private double sy(int s) {
+        return y[s] * zoom + panY;
+    }
+
+    // Median track length on screen, which picks the level of detail
+    private boolean showLabels() {
+        return spacing * zoom >= LABEL_SPACING;
+    }
+
+    private boolean showDetail() {
+        return spacing * zoom >= DETAIL_SPACING;
+    }
+
+    private void viewChanged() {
+        updateOverlayBounds();
+        viewPaint.start();
+    }
+
+    private void updateOverlayBounds() {
+        overlayBounds.clear();
+        for (int i = 0; i < route.length; i++) {
+            overlayBounds.add(stepBounds(route[i]));
+            if (i > 0)
+                overlayBounds.add(segmentBounds(route[i - 1], route[i], ROUTE_WIDTH));
+        }
+    }
+
+    // ===== PAINTING =====
+
+    private void repaintAll() {
+        repaint(new Rectangle2D(0, 0, canvas.getWidth(), canvas.getHeight()));
+    }
+
+    // Clips each rectangle to the canvas, drops the empty ones and merges overlapping ones, so no pixel is
+    // painted twice and nothing off screen is painted at all
+    private void repaint(List<Rectangle2D> dirty) {
+        double width = canvas.getWidth();
+        double height = canvas.getHeight();
+        List<Rectangle2D> areas = new ArrayList<>(dirty.size());
+        for (Rectangle2D rect : dirty) {
+            double x0 = Math.max(0, rect.getMinX());
+            double y0 = Math.max(0, rect.getMinY());
+            double x1 = Math.min(width, rect.getMaxX());
+            double y1 = Math.min(height, rect.getMaxY());
+            if (x1 <= x0 || y1 <= y0)
+                continue;
+            // Absorb every area the new one overlaps; the union may overlap others, so look again until none does
+            for (int i = 0; i < areas.size(); i++) {
+                Rectangle2D area = areas.get(i);
+                if (area.getMinX() < x1 && x0 < area.getMaxX() && area.getMinY() < y1 && y0 < area.getMaxY()) {
+                    x0 = Math.min(x0, area.getMinX());
+                    y0 = Math.min(y0, area.getMinY());
+                    x1 = Math.max(x1, area.getMaxX());
+                    y1 = Math.max(y1, area.getMaxY());
+                    areas.set(i, areas.get(areas.size() - 1));
+                    areas.remove(areas.size() - 1);
+                    i = -1;
+                }
+            }
+            areas.add(new Rectangle2D(x0, y0, x1 - x0, y1 - y0));
+        }
+        for (Rectangle2D area : areas) {
+            repaint(area);
+        }
+    }
+
+    // Clears the screen rectangle and redraws everything that touches it, clipped to it: the base map from the
+    // spatial grids, then the route overlay and the hover detail
+    private void repaint(Rectangle2D area) {
+        double x0 = Math.floor(area.getMinX());
+        double y0 = Math.floor(area.getMinY());
+        double x1 = Math.ceil(area.getMaxX());
+        double y1 = Math.ceil(area.getMaxY());
+        gc.save();
+        gc.beginPath();
+        gc.rect(x0, y0, x1 - x0, y1 - y0);
+        gc.closePath();
+        gc.clip();
+
+        gc.setFill(light ? Color.web("#f8f8f8") : Color.web("#1a1a1a"));
+        gc.fillRect(x0, y0, x1 - x0, y1 - y0);
+        drawGrid(x0, y0, x1, y1);
+        double trackReach = TRACK_WIDTH / zoom;
+        double stationPad = stationReach / zoom;
+        double mx0 = (x0 - panX) / zoom;
+        double my0 = (y0 - panY) / zoom;
+        double mx1 = (x1 - panX) / zoom;
+        double my1 = (y1 - panY) / zoom;
+        if (showDetail()) {
+            segmentIndex.query(mx0 - trackReach, my0 - trackReach, mx1 + trackReach, my1 + trackReach,
+                    this::drawSegment);
+        } else {
+            visibleCount = 0;
+            segmentIndex.query(mx0 - trackReach, my0 - trackReach, mx1 + trackReach, my1 + trackReach,
+                    segment -> visibleSegments[visibleCount++] = segment);
+            drawThinTracks();
+        }
+        stationIndex.query(mx0 - stationPad, my0 - stationPad, mx1 + stationPad, my1 + stationPad,
+                this::drawStation);
+        drawRoute(x0, y0, x1, y1);
+        if (hovered >= 0 && detailBounds(hovered).intersects(x0, y0, x1 - x0, y1 - y0))
+            drawDetail(hovered);
+        gc.restore();
+    }
+
+    // Grid fixed to the map, halving or doubling its step to stay about GRID_STEP apart on screen
+    private void drawGrid(double x0, double y0, double x1, double y1) {
+        double step = GRID_STEP * zoom;
+        while (step < GRID_STEP / 1.5) {
+            step *= 2;
+        }
+        while (step > GRID_STEP * 1.5) {
+            step /= 2;
+        }
+        gc.setStroke(Color.web("#333333", 0.3));
+        gc.setLineWidth(0.8);
+        gc.setLineDashes();
+        for (double gx = panX + Math.ceil((x0 - panX) / step) * step; gx <= x1; gx += step) {
+            gc.strokeLine(gx, y0, gx, y1);
+        }
+        for (double gy = panY + Math.ceil((y0 - panY) / step) * step; gy <= y1; gy += step) {
+            gc.strokeLine(x0, gy, x1, gy);
+        }
+    }
+
+    private void drawSegment(int segment) {
+        int e = segmentEdge[segment];
+        int u = segmentFrom[segment];
+        int v = graph.target(e);
+        gc.setLineCap(StrokeLineCap.BUTT);
+        if (lines.edgeLineCount(e) > 0) {
+            gc.setStroke(lineColor(lines.edgeLine(e, 0)).deriveColor(0, 1, 1, 0.7));
+            gc.setLineWidth(TRACK_WIDTH);
+            gc.setLineDashes();
+        } else {
+            // Interchange walk
+            gc.setStroke(JUNCTION_COLOR.deriveColor(0, 1, 1, 0.8));
+            gc.setLineWidth(3);
+            gc.setLineDashes(8, 6);
+        }
+        gc.strokeLine(sx(u), sy(u), sx(v), sy(v));
+    }
+
+    // Zoomed out: one path per line colour through the visible segments, without walks, leaving out segments
+    // shorter than a pixel and joining segments that continue where the last one ended
+    private void drawThinTracks() {
+        gc.setLineCap(StrokeLineCap.ROUND);
+        gc.setLineWidth(THIN_TRACK_WIDTH);
+        gc.setLineDashes();
+        for (int color = 0; color < LINE_COLORS.length; color++) {
+            gc.setStroke(LINE_COLORS[color].deriveColor(0, 1, 1, 0.7));
+            gc.beginPath();
+            double penX = Double.NaN;
+            double penY = Double.NaN;
+            for (int i = 0; i < visibleCount; i++) {
+                int e = segmentEdge[visibleSegments[i]];
+                if (lines.edgeLineCount(e) == 0 || lines.edgeLine(e, 0) % LINE_COLORS.length != color)
+                    continue;
+                int u = segmentFrom[visibleSegments[i]];
+                int v = graph.target(e);
+                double ax = sx(u);
+                double ay = sy(u);
+                double bx = sx(v);
+                double by = sy(v);
+                if (Math.abs(ax - bx) < 1 && Math.abs(ay - by) < 1)
+                    continue;
+                if (ax != penX || ay != penY)
+                    gc.moveTo(ax, ay);
+                gc.lineTo(bx, by);
+                penX = bx;
+                penY = by;
+            }
+            gc.stroke();
+        }
+    }
+
+    private void drawStation(int s) {
+        Color color = stationColor(s);
+        double cx = sx(s);
+        double cy = sy(s);
+        double scale = s == hovered ? 1.8 : routePulse(s);
+        boolean onRoute = routeStep[s] >= 0 && routeStep[s] < revealed;
+        gc.setLineDashes();
+        if (!showDetail()) {
+            double r = DOT_RADIUS * scale;
+            gc.setFill(onRoute ? ROUTE_COLOR : color);
+            gc.fillOval(cx - r, cy - r, 2 * r, 2 * r);
+            return;
+        }
+        if (junction[s]) {
+            gc.setStroke(JUNCTION_COLOR.deriveColor(0, 1, 1, 0.8));
+            gc.setLineWidth(6);
+            gc.setLineDashes(15, 10);
+            strokeCircle(cx, cy, JUNCTION_RADIUS);
+            gc.setLineDashes();
+        }
+        gc.setLineWidth(3);
+        gc.setStroke(color.deriveColor(0, 1, 1, 0.4));
+        strokeCircle(cx, cy, GLOW_RADIUS);
+        gc.setStroke(color.deriveColor(0, 1, 1, 0.7));
+        strokeCircle(cx, cy, RING_RADIUS);
+
+        double r = STATION_RADIUS * scale;
+        gc.setFill(color);
+        gc.fillOval(cx - r, cy - r, 2 * r, 2 * r);
+        gc.setStroke(onRoute ? ROUTE_COLOR : Color.WHITE);
+        gc.setLineWidth(onRoute ? 5 : 3);
+        strokeCircle(cx, cy, r);
+        gc.setFill(Color.WHITE);
+        gc.fillOval(cx - 5, cy - 5, 10, 10);
+        if (!showLabels())
+            return;
+
+        // Name below the station
+        double lx = cx - labelWidth[s] / 2;
+        double ly = cy + GLOW_RADIUS + 5;
+        gc.setFill(light ? Color.rgb(255, 255, 255, 0.95) : Color.rgb(0, 0, 0, 0.8));
+        gc.fillRoundRect(lx, ly, labelWidth[s], LABEL_HEIGHT, 8, 8);
+        gc.setStroke(light ? Color.BLACK : color);
+        gc.setLineWidth(1);
+        gc.strokeRoundRect(lx, ly, labelWidth[s], LABEL_HEIGHT, 8, 8);
+        gc.setFill(light ? Color.BLACK : Color.WHITE);
+        gc.setFont(LABEL_FONT);
+        gc.setTextAlign(TextAlignment.CENTER);
+        gc.setTextBaseline(VPos.CENTER);
+        gc.fillText(network.stationName(s), cx, ly + LABEL_HEIGHT / 2);
+    }
+
+    private void drawRoute(double x0, double y0, double x1, double y1) {
+        if (route.length == 0)
+            return;
+        gc.setStroke(ROUTE_COLOR.deriveColor(0, 1, 1, 0.8));
+        gc.setLineWidth(ROUTE_WIDTH);
+        gc.setLineCap(StrokeLineCap.ROUND);
+        gc.setLineDashes(10, 5);
+        gc.setLineDashOffset(animationSeconds < 0 ? 0 : 30 * fraction(animationSeconds / 2.0));
+        for (int i = 1; i < revealed; i++) {
+            int u = route[i - 1];
+            int v = route[i];
+            if (segmentBounds(u, v, ROUTE_WIDTH).intersects(x0, y0, x1 - x0, y1 - y0))
+                gc.strokeLine(sx(u), sy(u), sx(v), sy(v));
+        }
+        gc.setLineDashes();
+        gc.setLineDashOffset(0);
+        if (!showDetail())
+            return;
+        boolean badges = showLabels();
+        gc.setFont(STEP_FONT);
+        gc.setTextAlign(TextAlignment.CENTER);
+        gc.setTextBaseline(VPos.CENTER);
+        for (int i = 0; i < revealed; i++) {
+            int s = route[i];
+            if (!stepBounds(s).intersects(x0, y0, x1 - x0, y1 - y0))
+                continue;
+            gc.setStroke(ROUTE_COLOR.deriveColor(0, 1, 1, 0.3));
+            gc.setLineWidth(3);
+            double glow = animationSeconds < 0 ? 1 : 1 + 0.3 * swing(animationSeconds - i * stepSeconds);
+            strokeCircle(sx(s), sy(s), GLOW_RADIUS * glow);
+            if (!badges)
+                continue;
+            // Step number in a badge above the station
+            double bx = sx(s) - 14;
+            double by = sy(s) - 45;
+            gc.setFill(ROUTE_COLOR);
+            gc.fillRoundRect(bx, by, 28, 24, 24, 24);
+            gc.setStroke(Color.BLACK);
+            gc.setLineWidth(2);
+            gc.strokeRoundRect(bx, by, 28, 24, 24, 24);
+            gc.setFill(Color.BLACK);
+            gc.fillText(String.valueOf(i + 1), sx(s), by + 12);
+        }
+    }
+
+    private void drawDetail(int s) {
+        Rectangle2D box = detailBounds(s);
+        Color color = stationColor(s);
+        gc.setFill(Color.rgb(0, 0, 0, 0.95));
+        gc.fillRoundRect(box.getMinX(), box.getMinY(), box.getWidth(), box.getHeight(), 24, 24);
+        gc.setStroke(color);
+        gc.setLineWidth(3);
+        gc.strokeRoundRect(box.getMinX(), box.getMinY(), box.getWidth(), box.getHeight(), 24, 24);
+        gc.setFill(Color.WHITE);
+        gc.setFont(DETAIL_FONT);
+        gc.setTextAlign(TextAlignment.LEFT);
+        gc.setTextBaseline(VPos.TOP);
+        gc.fillText(String.format("🚉 %s\n🚇 %s\n📍 Station #%d\n🎯 Click to select", network.stationName(s),
+                lineName(s), s), box.getMinX() + 12, box.getMinY() + 12);
+    }
+
+    // A station pulses to 1.5x once, during the first second after it lights up
+    private double routePulse(int s) {
+        if (animationSeconds < 0 || routeStep[s] < 0 || routeStep[s] >= revealed)
+            return 1;
+        double age = animationSeconds - routeStep[s] * stepSeconds;
+        return age >= 1 ? 1 : 1 + 0.5 * swing(age);
+    }
+
+    // 0 -> 1 -> 0 once a second, eased at both ends
+    private static double swing(double seconds) {
+        return (1 - Math.cos(2 * Math.PI * Math.max(0, seconds))) / 2;
+    }
+
+    private static double fraction(double value) {
+        return value - Math.floor(value);
+    }
+
+    private void strokeCircle(double cx, double cy, double r) {
+        gc.strokeOval(cx - r, cy - r, 2 * r, 2 * r);
+    }
+
+    // ===== HOVER =====
+
+    private void hover(int station) {
+        if (station == hovered)
+            return;
+        List<Rectangle2D> dirty = new ArrayList<>(4);
+        if (hovered >= 0) {
+            dirty.add(detailBounds(hovered));
+            dirty.add(circleBounds(hovered, STATION_RADIUS * 1.8 + 3));
+        }
+        hovered = station;
+        if (station >= 0) {
+            dirty.add(detailBounds(station));
+            dirty.add(circleBounds(station, STATION_RADIUS * 1.8 + 3));
+        }
+        repaint(dirty);
+    }
+
+    // ===== GEOMETRY =====
+
+    // Screen rectangles
+
+    private Rectangle2D circleBounds(int s, double radius) {
+        return new Rectangle2D(sx(s) - radius, sy(s) - radius, 2 * radius, 2 * radius);
+    }
+
+    // Glow ring at its largest pulse, and the step badge
+    private Rectangle2D stepBounds(int s) {
+        double radius = GLOW_RADIUS * 1.3 + 3;
+        return new Rectangle2D(sx(s) - radius, sy(s) - 47, 2 * radius, 47 + radius);
+    }
+
+    private Rectangle2D segmentBounds(int u, int v, double width) {
+        return new Rectangle2D(Math.min(sx(u), sx(v)) - width, Math.min(sy(u), sy(v)) - width,
+                Math.abs(sx(u) - sx(v)) + 2 * width, Math.abs(sy(u) - sy(v)) + 2 * width);
+    }
+
+    private Rectangle2D detailBounds(int s) {
+        return new Rectangle2D(sx(s) - 100, sy(s) - 120, 230, 92);
+    }
+
+    // ===== COLOURS =====
+
+    private static Color lineColor(int line) {
+        return LINE_COLORS[line % LINE_COLORS.length];
+    }
+
+    private Color stationColor(int s) {
+        if (junction[s])
+            return JUNCTION_COLOR;
+        return platforms(s) > 0 ? lineColor(lines.platformLine(lines.firstPlatform(s))) : Color.GRAY;
+    }
+
+    private int platforms(int s) {
+        return lines.endPlatform(s) - lines.firstPlatform(s);
+    }
+
+    private String lineName(int s) {
+        if (platforms(s) > 1)
+            return "Junction Station (" + lines.describe(s).replace("/", " ↔ ") + ")";
+        return lines.describe(s) + " Line";
+    }
+}
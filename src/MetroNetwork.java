@@ -0,0 +1,509 @@
+// Station data, track graph and route lookup for the metro network.
+// Nothing in here touches JavaFX, so the desktop UI and the headless RouteServer share it.
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.FloatBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class MetroNetwork {
+    // Station names, lines and aliases; edit this file to add stations or search aliases
+    static final String STATIONS_RESOURCE = "/stations.csv";
+
+    // -Dmetro.dijkstra.reference=true switches back to the original O(V^2) scan for benchmarking
+    static final boolean referenceDijkstra = Boolean.getBoolean("metro.dijkstra.reference");
+    // -Dmetro.search=astar|bidirectional|ch|lines picks the point-to-point search; plain Dijkstra by default.
+    // lines searches (station, line) platforms and charges transfer penalties, the others track km only.
+    // RoutePlanner always plans over the platforms; this only picks what dijkstra() runs.
+    static final String searchMode = System.getProperty("metro.search", "dijkstra");
+    // -Dmetro.ch=<file> memory-maps the contraction hierarchy from disk, building and writing it first if missing
+    static final String hierarchyFile = System.getProperty("metro.ch");
+    // -Dmetro.gtfs=<feed directory> loads the network from a GTFS feed instead of the built-in data
+    static final String gtfsFeed = System.getProperty("metro.gtfs");
+    // -Dmetro.routes.table=<file> memory-maps the all-pairs table from disk instead of keeping it on the heap
+    static final String routeTableFile = System.getProperty("metro.routes.table");
+    // -Dmetro.snapshot=<file> opens a binary network snapshot, writing it from the configured source first if missing
+    static final String snapshotFile = System.getProperty("metro.snapshot");
+
+    private final StationDirectory stations;
+    private final MetroLines lines;
+    private final MetroGraph graph;
+    // Immutable; all per-query state lives inside the engine's search contexts
+    private final RoutingEngine engine;
+    private final Timetable timetable;
+    // Degrees per station; NaN where the source has no location
+    private final FloatBuffer latitudes;
+    private final FloatBuffer longitudes;
+    private volatile StationSuggester suggester;
+    private volatile NextHopTable routeTable;
+    private volatile Raptor raptor;
+    private volatile ContractionHierarchy hierarchy;
+
+    MetroNetwork(StationDirectory stations, MetroLines lines, MetroGraph graph, Timetable timetable,
+            FloatBuffer latitudes, FloatBuffer longitudes) {
+        int n = graph.size();
+        if (stations.size() != n || lines.graph() != graph || timetable.stopCount() != n || latitudes.limit() != n
+                || longitudes.limit() != n)
+            throw new IllegalArgumentException("Station tables do not match a graph of " + n + " nodes");
+        this.stations = stations;
+        this.lines = lines;
+        this.graph = graph;
+        this.engine = new RoutingEngine(graph, latitudes, longitudes);
+        this.timetable = timetable;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+    }
+
+    // The snapshot named by -Dmetro.snapshot if set, else the GTFS feed named by -Dmetro.gtfs,
+    // else the built-in network
+    public static MetroNetwork load() throws IOException {
+        if (snapshotFile == null)
+            return loadSource();
+        Path snapshot = Paths.get(snapshotFile);
+        if (!Files.exists(snapshot)) {
+            NetworkSnapshot.write(loadSource(), snapshot, false);
+            System.out.println("Wrote network snapshot " + snapshot);
+        }
+        return NetworkSnapshot.open(snapshot);
+    }
+
+    // The GTFS feed named by -Dmetro.gtfs, or the built-in network
+    static MetroNetwork loadSource() throws IOException {
+        if (gtfsFeed == null)
+            return pune();
+        GtfsImporter importer = new GtfsImporter(Paths.get(gtfsFeed));
+        MetroNetwork network = importer.load();
+        System.out.println(importer.report());
+        return network;
+    }
+
+    // The built-in Pune network: Purple Line (0-12) and Aqua Line (13-29)
+    public static MetroNetwork pune() {
+        StationDirectory.Builder stations = StationDirectory.builder();
+        List<String[]> stationLines = new ArrayList<>();
+        List<float[]> coordinates = new ArrayList<>();
+        loadStations(stations, stationLines, coordinates);
+        StationDirectory directory = stations.build();
+        MetroGraph graph = createGraph(directory.size());
+        MetroLines lines = createLines(graph, stationLines);
+        FloatBuffer latitudes = unknownCoordinates(graph.size());
+        FloatBuffer longitudes = unknownCoordinates(graph.size());
+        for (int i = 0; i < coordinates.size(); i++) {
+            if (coordinates.get(i) != null) {
+                latitudes.put(i, coordinates.get(i)[0]);
+                longitudes.put(i, coordinates.get(i)[1]);
+            }
+        }
+        return new MetroNetwork(directory, lines, graph, createTimetable(graph, lines), latitudes, longitudes);
+    }
+
+    static FloatBuffer unknownCoordinates(int n) {
+        float[] values = new float[n];
+        Arrays.fill(values, Float.NaN);
+        return FloatBuffer.wrap(values);
+    }
+
+    // Reads id,name,lines,lat,lon,aliases rows; '#' starts a comment line
+    private static void loadStations(StationDirectory.Builder stations, List<String[]> lines, List<float[]> coordinates) {
+        InputStream in = MetroNetwork.class.getResourceAsStream(STATIONS_RESOURCE);
+        if (in == null)
+            throw new IllegalStateException("Station table " + STATIONS_RESOURCE + " is missing from the classpath");
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String row;
+            boolean header = true;
+            while ((row = reader.readLine()) != null) {
+                if (row.isBlank() || row.startsWith("#"))
+                    continue;
+                if (header) {
+                    header = false;
+                    continue;
+                }
+                String[] cols = row.split(",", -1);
+                if (cols.length < 5)
+                    throw new IllegalStateException("Bad station row: " + row);
+                int id = Integer.parseInt(cols[0].trim());
+                stations.addStation(id, cols[1]);
+                while (lines.size() <= id) {
+                    lines.add(null);
+                    coordinates.add(null);
+                }
+                lines.set(id, cols[2].trim().split("\\s*\\|\\s*"));
+                if (!cols[3].isBlank() && !cols[4].isBlank())
+                    coordinates.set(id, new float[] { Float.parseFloat(cols[3].trim()), Float.parseFloat(cols[4].trim()) });
+                if (cols.length > 5 && !cols[5].isBlank()) {
+                    for (String alias : cols[5].split("\\|")) {
+                        stations.addAlias(id, alias);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public int size() {
+        return stations.size();
+    }
+
+    public StationDirectory stations() {
+        return stations;
+    }
+
+    public String stationName(int stationIndex) {
+        return stations.name(stationIndex);
+    }
+
+    public List<String> stationNames() {
+        return new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                return stations.name(index);
+            }
+
+            @Override
+            public int size() {
+                return stations.size();
+            }
+        };
+    }
+
+    // Exact name or alias, ignoring case and extra spaces; returns -1 for unknown names
+    public int stationIndex(String name) {
+        return stations.lookup(name);
+    }
+
+    // Closest station names for a misspelt or partial query, best first
+    public List<StationSuggester.Suggestion> suggest(String query, int limit) {
+        return suggester().suggest(query, limit);
+    }
+
+    // Built on first use so opening a snapshot does not pay for the trigram index
+    public StationSuggester suggester() {
+        StationSuggester s = suggester;
+        if (s == null) {
+            synchronized (this) {
+                s = suggester;
+                if (s == null) {
+                    s = new StationSuggester(stations);
+                    suggester = s;
+                }
+            }
+        }
+        return s;
+    }
+
+    public float latitude(int stationIndex) {
+        return latitudes.get(stationIndex);
+    }
+
+    public float longitude(int stationIndex) {
+        return longitudes.get(stationIndex);
+    }
+
+    // Read-only views for writing snapshots
+    FloatBuffer latitudes() {
+        return latitudes.asReadOnlyBuffer();
+    }
+
+    FloatBuffer longitudes() {
+        return longitudes.asReadOnlyBuffer();
+    }
+
+    public MetroLines lines() {
+        return lines;
+    }
+
+    public MetroGraph graph() {
+        return graph;
+    }
+
+    public RoutingEngine engine() {
+        return engine;
+    }
+
+    public Timetable timetable() {
+        return timetable;
+    }
+
+    // Route patterns for round-based queries, grouped from the timetable on first use
+    public Raptor raptor() {
+        Raptor r = raptor;
+        if (r == null) {
+            synchronized (this) {
+                r = raptor;
+                if (r == null) {
+                    r = new Raptor(timetable);
+                    raptor = r;
+                }
+            }
+        }
+        return r;
+    }
+
+    // Dijkstra's algorithm implementation
+    public Route dijkstra(int sourceNumber, int destinationNumber) {
+        if (referenceDijkstra)
+            return engine.routeReference(sourceNumber, destinationNumber);
+        switch (searchMode) {
+            case "astar":
+                return engine.routeAStar(sourceNumber, destinationNumber);
+            case "bidirectional":
+                return engine.routeBidirectional(sourceNumber, destinationNumber);
+            case "ch":
+                return contractionHierarchy().route(sourceNumber, destinationNumber);
+            case "lines":
+                return lines.route(sourceNumber, destinationNumber);
+            case "dijkstra":
+                return engine.route(sourceNumber, destinationNumber);
+            default:
+                throw new IllegalStateException("Unknown -Dmetro.search mode: " + searchMode);
+        }
+    }
+
+    // Preprocessed lazily on first use; -Dmetro.ch keeps it on disk between runs
+    public ContractionHierarchy contractionHierarchy() {
+        ContractionHierarchy h = hierarchy;
+        if (h == null) {
+            synchronized (this) {
+                h = hierarchy;
+                if (h == null) {
+                    h = buildHierarchy();
+                    hierarchy = h;
+                }
+            }
+        }
+        return h;
+    }
+
+    private ContractionHierarchy buildHierarchy() {
+        if (hierarchyFile != null) {
+            try {
+                return ContractionHierarchy.mapOrBuild(graph, Paths.get(hierarchyFile));
+            } catch (IOException e) {
+                System.err.println("Could not map contraction hierarchy " + hierarchyFile + ", building in memory: " + e);
+            }
+        }
+        return ContractionHierarchy.build(graph);
+    }
+
+    // Up to k loopless routes, shortest first, for comparing alternatives
+    public List<Route> alternatives(int sourceNumber, int destinationNumber, int k) {
+        return engine.kShortestRoutes(sourceNumber, destinationNumber, k);
+    }
+
+    // Answers from the precomputed all-pairs table by walking next hops, no search needed; networks too large
+    // for the table fall back to a search
+    public Route lookupRoute(int sourceNumber, int destinationNumber) {
+        if (size() > NextHopTable.MAX_NODES)
+            return dijkstra(sourceNumber, destinationNumber);
+        return routeTable().route(sourceNumber, destinationNumber);
+    }
+
+    // Built lazily on first use with one parallel single-source run per station
+    public NextHopTable routeTable() {
+        NextHopTable table = routeTable;
+        if (table == null) {
+            synchronized (this) {
+                table = routeTable;
+                if (table == null) {
+                    table = buildRouteTable();
+                    routeTable = table;
+                }
+            }
+        }
+        return table;
+    }
+
+    // Hands over a table loaded elsewhere, such as the copy a network snapshot carries
+    synchronized void useRouteTable(NextHopTable table) {
+        if (table.size() != size())
+            throw new IllegalArgumentException("Route table for " + table.size() + " stations, network has " + size());
+        routeTable = table;
+    }
+
+    private NextHopTable buildRouteTable() {
+        if (routeTableFile != null) {
+            try {
+                return NextHopTable.mapOrCompute(engine, Paths.get(routeTableFile));
+            } catch (IOException e) {
+                System.err.println("Could not map route table " + routeTableFile + ", computing in memory: " + e);
+            }
+        }
+        return NextHopTable.compute(engine);
+    }
+
+    // ===== BUILT-IN PUNE NETWORK DATA =====
+
+    // Service pattern used to generate the daily timetable
+    static final int FIRST_TRAIN = 6 * 3600;
+    static final int LAST_TRAIN = 23 * 3600;
+    static final int PEAK_HEADWAY = 6 * 60; // 08:00-11:00 and 17:00-21:00
+    static final int OFF_PEAK_HEADWAY = 10 * 60;
+    static final float AVERAGE_SPEED_KMH = 33f;
+    static final int DWELL_SECONDS = 30;
+    static final int INTERCHANGE_WALK_SECONDS = 5 * 60;
+
+    static MetroGraph createGraph(int stationCount) {
+        MetroGraph.Builder b = MetroGraph.builder(stationCount);
+
+        // Purple Line (PCMC to Swargate): 0 -> 1 -> 2 -> ... -> 9 -> 10 -> 11 -> 12
+        b.connect(0, 1, 2.1f); // PCMC <-> Sant Tukaram Nagar
+        b.connect(1, 2, 0.7f); // Sant Tukaram Nagar <-> Bhosari
+        b.connect(2, 3, 1.5f); // Bhosari <-> Kasarwadi
+        b.connect(3, 4, 1.1f); // Kasarwadi <-> Phugewadi
+        b.connect(4, 5, 2.4f); // Phugewadi <-> Dapodi
+        b.connect(5, 6, 1.0f); // Dapodi <-> Bopodi
+        b.connect(6, 7, 1.4f); // Bopodi <-> Khadaki
+        b.connect(7, 8, 5.3f); // Khadaki <-> Range Hill
+        b.connect(8, 9, 2.9f); // Range Hill <-> ShivajiNagar
+        b.connect(9, 10, 1.1f); // ShivajiNagar <-> Budhwar Peth
+        b.connect(10, 11, 0.65f); // Budhwar Peth <-> Mandai
+        b.connect(11, 12, 1.7f); // Mandai <-> Swargate
+
+        // Aqua Line (Chandani Chowk to Ramwadi): 13 -> 14 -> ... -> 22 -> ... -> 29
+        b.connect(13, 14, 1.2f); // Chandani Chowk <-> Vanaz
+        b.connect(14, 15, 0.95f); // Vanaz <-> Anand Nagar
+        b.connect(15, 16, 1.2f); // Anand Nagar <-> Ideal colony
+        b.connect(16, 17, 1.0f); // Ideal colony <-> Nal Stop
+        b.connect(17, 18, 1.2f); // Nal Stop <-> Garware College
+        b.connect(18, 19, 0.9f); // Garware College <-> Deccan Gymkhana
+        b.connect(19, 20, 1.0f); // Deccan Gymkhana <-> Chhatrapati Sambhaji Udyan
+        b.connect(20, 21, 1.15f); // Chhatrapati Sambhaji Udyan <-> PMC
+        b.connect(21, 22, 1.8f); // PMC <-> Civil Court
+        b.connect(22, 23, 1.7f); // Civil Court <-> Mangalwar Peth
+        b.connect(23, 24, 1.5f); // Mangalwar Peth <-> Pune Railway Station
+        b.connect(24, 25, 1.8f); // Pune Railway Station <-> Ruby Hall Clinic
+        b.connect(25, 26, 1.0f); // Ruby Hall Clinic <-> Bund Garden
+        b.connect(26, 27, 0.8f); // Bund Garden <-> Yerawada
+        b.connect(27, 28, 0.8f); // Yerawada <-> Kalayani Nagar
+        b.connect(28, 29, 0.8f); // Kalayani Nagar <-> Ramwadi
+
+        // Interchange connection: Shivaji Nagar (Purple) <-> Civil Court (Aqua)
+        b.connect(9, 22, 0.5f); // ShivajiNagar <-> Civil Court (interchange)
+
+        return b.build();
+    }
+
+    // Track between two stations that share a line is ridden on every line they share; any other track is
+    // an interchange walk
+    static MetroLines createLines(MetroGraph graph, List<String[]> stationLines) {
+        MetroLines.Builder lines = MetroLines.builder();
+        Map<String, Integer> ids = new HashMap<>();
+        int[][] served = new int[graph.size()][];
+        for (int s = 0; s < graph.size(); s++) {
+            String[] names = s < stationLines.size() && stationLines.get(s) != null ? stationLines.get(s) : new String[0];
+            served[s] = new int[names.length];
+            for (int i = 0; i < names.length; i++) {
+                served[s][i] = ids.computeIfAbsent(names[i], lines::addLine);
+                lines.serve(s, served[s][i]);
+            }
+        }
+        for (int u = 0; u < graph.size(); u++) {
+            for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+                int v = graph.target(e);
+                boolean ridden = false;
+                for (int line : served[u]) {
+                    for (int other : served[v]) {
+                        if (line == other) {
+                            lines.ride(u, v, line);
+                            ridden = true;
+                        }
+                    }
+                }
+                if (!ridden)
+                    lines.transfer(u, v, INTERCHANGE_WALK_SECONDS);
+            }
+        }
+        return lines.build(graph);
+    }
+
+    // A full day of trips in both directions on every line. Each line is walked from its ends (stations with
+    // one neighbour on the line, lowest id first) up to the other end or a branch, and every such run gets
+    // its own trips; transfer edges become footpaths.
+    static Timetable createTimetable(MetroGraph graph, MetroLines lines) {
+        int n = graph.size();
+        Timetable.Builder timetable = Timetable.builder(n);
+        boolean[] visited = new boolean[n];
+        int[] run = new int[n];
+        for (int line = 0; line < lines.lineCount(); line++) {
+            Arrays.fill(visited, false);
+            for (int s = 0; s < n; s++) {
+                if (visited[s] || lineDegree(graph, lines, s, line) != 1)
+                    continue;
+                int length = 0;
+                int previous = -1;
+                for (int at = s; at >= 0;) {
+                    run[length++] = at;
+                    visited[at] = true;
+                    int next = -1;
+                    int onward = 0;
+                    for (int e = graph.firstEdge(at); e < graph.endEdge(at); e++) {
+                        int v = graph.target(e);
+                        if (v != previous && lines.rides(e, line)) {
+                            next = v;
+                            onward++;
+                        }
+                    }
+                    previous = at;
+                    at = onward == 1 && !visited[next] ? next : -1;
+                }
+                addLineTrips(timetable, graph, Arrays.copyOf(run, length));
+            }
+        }
+
+        for (int u = 0; u < n; u++) {
+            for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+                int v = graph.target(e);
+                if (u < v && lines.isTransfer(e))
+                    timetable.addFootpath(u, v, lines.transferSeconds(e));
+            }
+        }
+        return timetable.build();
+    }
+
+    private static int lineDegree(MetroGraph graph, MetroLines lines, int station, int line) {
+        int degree = 0;
+        for (int e = graph.firstEdge(station); e < graph.endEdge(station); e++) {
+            if (lines.rides(e, line))
+                degree++;
+        }
+        return degree;
+    }
+
+    private static void addLineTrips(Timetable.Builder timetable, MetroGraph graph, int[] stations) {
+        if (stations.length < 2)
+            return;
+        for (int direction = 1; direction >= -1; direction -= 2) {
+            int from = direction > 0 ? 0 : stations.length - 1;
+            int to = direction > 0 ? stations.length - 1 : 0;
+            for (int departure = FIRST_TRAIN; departure <= LAST_TRAIN; departure += headway(departure)) {
+                int trip = timetable.newTrip();
+                int time = departure;
+                for (int i = from; i != to; i += direction) {
+                    int u = stations[i];
+                    int v = stations[i + direction];
+                    int run = Math.round(graph.weight(u, v) / AVERAGE_SPEED_KMH * 3600);
+                    timetable.addConnection(trip, u, v, time, time + run);
+                    time += run + DWELL_SECONDS;
+                }
+            }
+        }
+    }
+
+    private static int headway(int second) {
+        int hour = second / 3600;
+        boolean peak = (hour >= 8 && hour < 11) || (hour >= 17 && hour < 21);
+        return peak ? PEAK_HEADWAY : OFF_PEAK_HEADWAY;
+    }
+}
@@ -0,0 +1,384 @@
+// Versioned binary image of a whole MetroNetwork: station table, names and aliases, line ids, coordinates,
+// the CSR graph, the timetable and optionally the all-pairs route table.
+// Written once; opening maps the file read-only and wraps the graph, timetable and route table buffers in
+// place, so only the station and line strings are decoded and startup does not grow with edges or trips.
+//
+// Layout, little-endian: a fixed header (magic, version, counts, graph fingerprint), a section table of
+// (offset, length) pairs, then the sections themselves, each aligned to 8 bytes.
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+public final class NetworkSnapshot {
+    private static final int MAGIC = 0x504D4E53; // "PMNS"
+    private static final int VERSION = 3; // 2: per-station and per-edge line tables, transfer times; 3: platform stations
+
+    // Header fields
+    private static final int STATIONS = 8;
+    private static final int ENTRIES = 12;
+    private static final int LINES = 16;
+    private static final int EDGES = 20;
+    private static final int TRIPS = 24;
+    private static final int CONNECTIONS = 28;
+    private static final int FOOTPATHS = 32;
+    private static final int PLATFORMS = 36;
+    private static final int EDGE_LINES = 40;
+    private static final int FINGERPRINT = 44;
+    private static final int SECTION_COUNT = 52;
+    private static final int SECTION_TABLE = 56;
+
+    // Sections, in file order
+    private static final int STATION_NAME_OFFSETS = 0;
+    private static final int STATION_NAME_CHARS = 1;
+    private static final int ENTRY_KEY_OFFSETS = 2;
+    private static final int ENTRY_KEY_CHARS = 3;
+    private static final int ENTRY_STATIONS = 4;
+    private static final int LINE_NAME_OFFSETS = 5;
+    private static final int LINE_NAME_CHARS = 6;
+    private static final int STATION_LINE_OFFSETS = 7;
+    private static final int STATION_LINE_IDS = 8;
+    private static final int PLATFORM_STATIONS = 9;
+    private static final int EDGE_LINE_OFFSETS = 10;
+    private static final int EDGE_LINE_IDS = 11;
+    private static final int TRANSFER_SECONDS = 12;
+    private static final int LATITUDES = 13;
+    private static final int LONGITUDES = 14;
+    private static final int GRAPH_OFFSETS = 15;
+    private static final int GRAPH_TARGETS = 16;
+    private static final int GRAPH_WEIGHTS = 17;
+    private static final int TIMETABLE = 18; // connection records and footpath CSR, in Timetable.wrap() order
+    private static final int ROUTE_TABLE = TIMETABLE + 4; // empty when the snapshot was written without one
+    private static final int SECTIONS = ROUTE_TABLE + 1;
+
+    private static final int HEADER_BYTES = SECTION_TABLE + 16 * SECTIONS;
+
+    private NetworkSnapshot() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2 || (args.length == 2 && !args[1].equals("--routes"))) {
+            System.err.println("Usage: java -cp bin [-Dmetro.gtfs=<feed>] NetworkSnapshot <file> [--routes]");
+            System.exit(2);
+        }
+        long start = System.nanoTime();
+        MetroNetwork network = MetroNetwork.loadSource();
+        Path path = Paths.get(args[0]);
+        write(network, path, args.length == 2);
+        System.out.printf("Wrote %s (%d bytes) in %d ms%n", path, Files.size(path), (System.nanoTime() - start) / 1_000_000);
+
+        start = System.nanoTime();
+        MetroNetwork opened = open(path);
+        System.out.printf("Opened %d stations, %d edges, %d connections in %.2f ms%n", opened.size(),
+                opened.graph().edgeCount(), opened.timetable().connectionCount(), (System.nanoTime() - start) / 1e6);
+    }
+
+    // ===== WRITING =====
+
+    // Writes through a temporary file that replaces path once complete; withRoutes also stores the
+    // all-pairs next-hop table, computing it if the network has none yet
+    public static void write(MetroNetwork network, Path path, boolean withRoutes) throws IOException {
+        StationDirectory directory = network.stations();
+        int n = network.size();
+        MetroGraph graph = network.graph();
+        Timetable timetable = network.timetable();
+        NextHopTable routes = withRoutes ? network.routeTable() : null;
+
+        StringTable names = new StringTable(n);
+        for (int i = 0; i < n; i++) {
+            names.add(directory.name(i));
+        }
+        int entries = directory.entryCount();
+        StringTable keys = new StringTable(entries);
+        int[] entryStations = new int[entries];
+        for (int e = 0; e < entries; e++) {
+            keys.add(directory.entryKey(e));
+            entryStations[e] = directory.entryStation(e);
+        }
+        MetroLines metroLines = network.lines();
+        // Checked here rather than on every open, which only compares table sizes
+        metroLines.validate();
+        StringTable lines = new StringTable(metroLines.lineCount());
+        for (String line : metroLines.names()) {
+            lines.add(line);
+        }
+        IntBuffer[] trips = timetable.buffers();
+
+        long[] lengths = new long[SECTIONS];
+        lengths[STATION_NAME_OFFSETS] = 4L * (n + 1);
+        lengths[STATION_NAME_CHARS] = 2L * names.charCount();
+        lengths[ENTRY_KEY_OFFSETS] = 4L * (entries + 1);
+        lengths[ENTRY_KEY_CHARS] = 2L * keys.charCount();
+        lengths[ENTRY_STATIONS] = 4L * entries;
+        lengths[LINE_NAME_OFFSETS] = 4L * (lines.size() + 1);
+        lengths[LINE_NAME_CHARS] = 2L * lines.charCount();
+        lengths[STATION_LINE_OFFSETS] = 4L * (n + 1);
+        lengths[STATION_LINE_IDS] = 4L * metroLines.platformCount();
+        lengths[PLATFORM_STATIONS] = 4L * metroLines.platformCount();
+        lengths[EDGE_LINE_OFFSETS] = 4L * (graph.edgeCount() + 1);
+        lengths[EDGE_LINE_IDS] = 4L * metroLines.edgeLineIds().limit();
+        lengths[TRANSFER_SECONDS] = 4L * graph.edgeCount();
+        lengths[LATITUDES] = 4L * n;
+        lengths[LONGITUDES] = 4L * n;
+        lengths[GRAPH_OFFSETS] = 4L * (n + 1);
+        lengths[GRAPH_TARGETS] = 4L * graph.edgeCount();
+        lengths[GRAPH_WEIGHTS] = 4L * graph.edgeCount();
+        for (int i = 0; i < trips.length; i++) {
+            lengths[TIMETABLE + i] = 4L * trips[i].limit();
+        }
+        lengths[ROUTE_TABLE] = routes == null ? 0 : routes.byteSize();
+
+        long[] offsets = new long[SECTIONS];
+        long size = HEADER_BYTES;
+        for (int s = 0; s < SECTIONS; s++) {
+            offsets[s] = size;
+            size = align8(size + lengths[s]);
+        }
+        if (size > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Snapshot of " + size + " bytes does not fit one 2 GB mapping"
+                    + (routes != null ? "; write it without the route table" : ""));
+
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            names.writeTo(ints(buffer, offsets, lengths, STATION_NAME_OFFSETS), chars(buffer, offsets, lengths, STATION_NAME_CHARS));
+            keys.writeTo(ints(buffer, offsets, lengths, ENTRY_KEY_OFFSETS), chars(buffer, offsets, lengths, ENTRY_KEY_CHARS));
+            ints(buffer, offsets, lengths, ENTRY_STATIONS).put(entryStations);
+            lines.writeTo(ints(buffer, offsets, lengths, LINE_NAME_OFFSETS), chars(buffer, offsets, lengths, LINE_NAME_CHARS));
+            ints(buffer, offsets, lengths, STATION_LINE_OFFSETS).put(metroLines.stationLineOffsets());
+            ints(buffer, offsets, lengths, STATION_LINE_IDS).put(metroLines.stationLineIds());
+            ints(buffer, offsets, lengths, PLATFORM_STATIONS).put(metroLines.platformStations());
+            ints(buffer, offsets, lengths, EDGE_LINE_OFFSETS).put(metroLines.edgeLineOffsets());
+            ints(buffer, offsets, lengths, EDGE_LINE_IDS).put(metroLines.edgeLineIds());
+            ints(buffer, offsets, lengths, TRANSFER_SECONDS).put(metroLines.transferSeconds());
+            floats(buffer, offsets, lengths, LATITUDES).put(network.latitudes());
+            floats(buffer, offsets, lengths, LONGITUDES).put(network.longitudes());
+            ints(buffer, offsets, lengths, GRAPH_OFFSETS).put(graph.offsets());
+            ints(buffer, offsets, lengths, GRAPH_TARGETS).put(graph.targets());
+            floats(buffer, offsets, lengths, GRAPH_WEIGHTS).put(graph.weights());
+            for (int i = 0; i < trips.length; i++) {
+                ints(buffer, offsets, lengths, TIMETABLE + i).put(trips[i]);
+            }
+            if (routes != null)
+                routes.writeTo(buffer.position((int) offsets[ROUTE_TABLE]));
+
+            buffer.putInt(STATIONS, n)
+                    .putInt(ENTRIES, entries)
+                    .putInt(LINES, lines.size())
+                    .putInt(EDGES, graph.edgeCount())
+                    .putInt(TRIPS, timetable.tripCount())
+                    .putInt(CONNECTIONS, timetable.connectionCount())
+                    .putInt(FOOTPATHS, trips[trips.length - 1].limit())
+                    .putInt(PLATFORMS, metroLines.platformCount())
+                    .putInt(EDGE_LINES, metroLines.edgeLineIds().limit())
+                    .putLong(FINGERPRINT, graph.fingerprint())
+                    .putInt(SECTION_COUNT, SECTIONS);
+            for (int s = 0; s < SECTIONS; s++) {
+                buffer.putLong(SECTION_TABLE + 16 * s, offsets[s]).putLong(SECTION_TABLE + 16 * s + 8, lengths[s]);
+            }
+            // Magic last, so a half-written file is never mistaken for a snapshot
+            buffer.putInt(0, MAGIC).putInt(4, VERSION);
+            buffer.force();
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // ===== OPENING =====
+
+    public static MetroNetwork open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+                throw new IOException("Snapshot larger than 2 GB: " + path);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (size < SECTION_TABLE || buffer.getInt(0) != MAGIC)
+                throw new IOException("Not a network snapshot: " + path);
+            if (buffer.getInt(4) != VERSION)
+                throw new IOException("Unsupported network snapshot version " + buffer.getInt(4) + " in " + path);
+            if (buffer.getInt(SECTION_COUNT) != SECTIONS || size < HEADER_BYTES)
+                throw new IOException("Corrupt section table in " + path);
+            return read(buffer, path);
+        }
+    }
+
+    private static MetroNetwork read(ByteBuffer buffer, Path path) throws IOException {
+        int n = buffer.getInt(STATIONS);
+        int entries = buffer.getInt(ENTRIES);
+        int lines = buffer.getInt(LINES);
+        int edges = buffer.getInt(EDGES);
+        int connections = buffer.getInt(CONNECTIONS);
+        int footpaths = buffer.getInt(FOOTPATHS);
+        int platforms = buffer.getInt(PLATFORMS);
+        int edgeLines = buffer.getInt(EDGE_LINES);
+
+        // Expected element counts per section (chars and the route table are checked as they are read)
+        long[] counts = new long[SECTIONS];
+        counts[STATION_NAME_OFFSETS] = n + 1;
+        counts[ENTRY_KEY_OFFSETS] = entries + 1;
+        counts[ENTRY_STATIONS] = entries;
+        counts[LINE_NAME_OFFSETS] = lines + 1;
+        counts[STATION_LINE_OFFSETS] = n + 1;
+        counts[STATION_LINE_IDS] = platforms;
+        counts[PLATFORM_STATIONS] = platforms;
+        counts[EDGE_LINE_OFFSETS] = (long) edges + 1;
+        counts[EDGE_LINE_IDS] = edgeLines;
+        counts[TRANSFER_SECONDS] = edges;
+        counts[LATITUDES] = n;
+        counts[LONGITUDES] = n;
+        counts[GRAPH_OFFSETS] = n + 1;
+        counts[GRAPH_TARGETS] = edges;
+        counts[GRAPH_WEIGHTS] = edges;
+        counts[TIMETABLE] = (long) Timetable.STRIDE * connections;
+        counts[TIMETABLE + 1] = n + 1;
+        counts[TIMETABLE + 2] = footpaths;
+        counts[TIMETABLE + 3] = footpaths;
+
+        long[] offsets = new long[SECTIONS];
+        long[] lengths = new long[SECTIONS];
+        for (int s = 0; s < SECTIONS; s++) {
+            offsets[s] = buffer.getLong(SECTION_TABLE + 16 * s);
+            lengths[s] = buffer.getLong(SECTION_TABLE + 16 * s + 8);
+            boolean sized = s == STATION_NAME_CHARS || s == ENTRY_KEY_CHARS || s == LINE_NAME_CHARS
+                    || s == ROUTE_TABLE || lengths[s] == 4 * counts[s];
+            if (offsets[s] < HEADER_BYTES || lengths[s] < 0 || offsets[s] + lengths[s] > buffer.limit() || !sized)
+                throw new IOException("Section " + s + " out of bounds in " + path);
+        }
+
+        // Strings are the only part decoded onto the heap, and there is one per station, alias and line
+        String[] names = strings(ints(buffer, offsets, lengths, STATION_NAME_OFFSETS),
+                chars(buffer, offsets, lengths, STATION_NAME_CHARS), path);
+        String[] keys = strings(ints(buffer, offsets, lengths, ENTRY_KEY_OFFSETS),
+                chars(buffer, offsets, lengths, ENTRY_KEY_CHARS), path);
+        String[] lineNames = strings(ints(buffer, offsets, lengths, LINE_NAME_OFFSETS),
+                chars(buffer, offsets, lengths, LINE_NAME_CHARS), path);
+
+        StationDirectory.Builder directory = StationDirectory.builder();
+        IntBuffer entryStations = ints(buffer, offsets, lengths, ENTRY_STATIONS);
+        boolean[] added = new boolean[n];
+        for (int e = 0; e < entries; e++) {
+            // Replays the original additions so aliases keep their order
+            int station = entryStations.get(e);
+            if (station < 0 || station >= n)
+                throw new IOException("Alias for unknown station " + station + " in " + path);
+            if (!added[station] && keys[e].equals(StationDirectory.normalize(names[station]))) {
+                directory.addStation(station, names[station]);
+                added[station] = true;
+            } else {
+                directory.addAlias(station, keys[e]);
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            if (!added[i])
+                directory.addStation(i, names[i]);
+        }
+
+        MetroGraph graph;
+        MetroLines metroLines;
+        Timetable timetable;
+        try {
+            graph = MetroGraph.wrap(ints(buffer, offsets, lengths, GRAPH_OFFSETS),
+                    ints(buffer, offsets, lengths, GRAPH_TARGETS), floats(buffer, offsets, lengths, GRAPH_WEIGHTS));
+            metroLines = MetroLines.wrap(graph, lineNames, ints(buffer, offsets, lengths, STATION_LINE_OFFSETS),
+                    ints(buffer, offsets, lengths, STATION_LINE_IDS), ints(buffer, offsets, lengths, EDGE_LINE_OFFSETS),
+                    ints(buffer, offsets, lengths, EDGE_LINE_IDS), ints(buffer, offsets, lengths, TRANSFER_SECONDS),
+                    ints(buffer, offsets, lengths, PLATFORM_STATIONS));
+            timetable = Timetable.wrap(n, buffer.getInt(TRIPS), ints(buffer, offsets, lengths, TIMETABLE),
+                    ints(buffer, offsets, lengths, TIMETABLE + 1), ints(buffer, offsets, lengths, TIMETABLE + 2),
+                    ints(buffer, offsets, lengths, TIMETABLE + 3));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupt network snapshot " + path + ": " + e.getMessage(), e);
+        }
+
+        MetroNetwork network = new MetroNetwork(directory.build(), metroLines, graph, timetable,
+                floats(buffer, offsets, lengths, LATITUDES), floats(buffer, offsets, lengths, LONGITUDES));
+        if (lengths[ROUTE_TABLE] > 0) {
+            NextHopTable routes = NextHopTable.read(slice(buffer, offsets, lengths, ROUTE_TABLE), path.toString());
+            if (routes.size() != n || routes.fingerprint() != buffer.getLong(FINGERPRINT))
+                throw new IOException("Route table does not belong to the graph in " + path);
+            network.useRouteTable(routes);
+        }
+        return network;
+    }
+
+    private static String[] strings(IntBuffer offsets, CharBuffer chars, Path path) throws IOException {
+        String[] out = new String[offsets.limit() - 1];
+        for (int i = 0; i < out.length; i++) {
+            int start = offsets.get(i);
+            int end = offsets.get(i + 1);
+            if (start < 0 || end < start || end > chars.limit())
+                throw new IOException("Corrupt string table in " + path);
+            out[i] = chars.subSequence(start, end).toString();
+        }
+        return out;
+    }
+
+    // ===== SECTIONS =====
+
+    private static ByteBuffer slice(ByteBuffer buffer, long[] offsets, long[] lengths, int section) {
+        return buffer.slice((int) offsets[section], (int) lengths[section]).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static IntBuffer ints(ByteBuffer buffer, long[] offsets, long[] lengths, int section) {
+        return slice(buffer, offsets, lengths, section).asIntBuffer();
+    }
+
+    private static FloatBuffer floats(ByteBuffer buffer, long[] offsets, long[] lengths, int section) {
+        return slice(buffer, offsets, lengths, section).asFloatBuffer();
+    }
+
+    private static CharBuffer chars(ByteBuffer buffer, long[] offsets, long[] lengths, int section) {
+        return slice(buffer, offsets, lengths, section).asCharBuffer();
+    }
+
+    private static long align8(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    // Strings packed back to back as UTF-16 with an offsets array, the same shape as the CSR arrays
+    private static final class StringTable {
+        private final List<String> strings;
+        private int chars;
+
+        StringTable(int expected) {
+            strings = new ArrayList<>(expected);
+        }
+
+        void add(String s) {
+            strings.add(s);
+            chars += s.length();
+        }
+
+        int size() {
+            return strings.size();
+        }
+
+        int charCount() {
+            return chars;
+        }
+
+        void writeTo(IntBuffer offsets, CharBuffer out) {
+            int at = 0;
+            offsets.put(0);
+            for (String s : strings) {
+                out.put(s);
+                at += s.length();
+                offsets.put(at);
+            }
+        }
+    }
+}
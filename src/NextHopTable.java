@@ -0,0 +1,186 @@
+// All-pairs next-hop and distance matrices, answered by walking next hops in O(path length).
+// The table either lives on the heap or is memory-mapped from a file for larger networks.
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.IntStream;
+
+public final class NextHopTable {
+    private static final int MAGIC = 0x504D4E48; // "PMNH"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 24; // magic, version, node count, graph fingerprint
+
+    // Next hops are stored as shorts and the whole table has to fit in one 2 GB mapping
+    public static final int MAX_NODES = 18_900;
+
+    private static final short NO_HOP = -1;
+
+    private final int n;
+    private final long fingerprint;
+    private final ShortBuffer next; // next[s * n + t]: first station after s on the way to t
+    private final FloatBuffer dist; // dist[s * n + t]: shortest distance in km
+
+    private NextHopTable(int n, long fingerprint, ShortBuffer next, FloatBuffer dist) {
+        this.n = n;
+        this.fingerprint = fingerprint;
+        this.next = next;
+        this.dist = dist;
+    }
+
+    // Builds the table on the heap with one single-source search per station, spread over all cores
+    public static NextHopTable compute(RoutingEngine engine) {
+        int n = checkSize(engine.size());
+        NextHopTable table = new NextHopTable(n, engine.graph().fingerprint(),
+                ShortBuffer.allocate(n * n), FloatBuffer.allocate(n * n));
+        table.fill(engine);
+        return table;
+    }
+
+    // Opens the table at path, rebuilding and writing it first if it is missing or was built for another graph
+    public static NextHopTable mapOrCompute(RoutingEngine engine, Path path) throws IOException {
+        if (Files.exists(path)) {
+            NextHopTable mapped = map(path);
+            if (mapped.n == engine.size() && mapped.fingerprint == engine.graph().fingerprint())
+                return mapped;
+        }
+
+        int n = checkSize(engine.size());
+        long size = byteSize(n);
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            NextHopTable table = fromBuffer(buffer, n, engine.graph().fingerprint());
+            table.fill(engine);
+            buffer.putInt(0, MAGIC)
+                    .putInt(4, VERSION)
+                    .putInt(8, n)
+                    .putLong(12, engine.graph().fingerprint());
+            buffer.force();
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+        return map(path);
+    }
+
+    // Maps a previously written table read-only; pages are loaded by the OS on demand
+    public static NextHopTable map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(buffer, path.toString());
+        }
+    }
+
+    // A table in file layout at the start of buffer, such as a section of a network snapshot; not copied
+    static NextHopTable read(ByteBuffer buffer, String source) throws IOException {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC)
+            throw new IOException("Not a next-hop table: " + source);
+        if (buffer.getInt(4) != VERSION)
+            throw new IOException("Unsupported next-hop table version " + buffer.getInt(4) + " in " + source);
+        int n = buffer.getInt(8);
+        long fingerprint = buffer.getLong(12);
+        if (n < 0 || n > MAX_NODES || buffer.limit() != byteSize(n))
+            throw new IOException("Truncated next-hop table: " + source);
+        return fromBuffer(buffer, n, fingerprint);
+    }
+
+    // Copies the table in file layout into buffer from its position, which must have byteSize() bytes left
+    void writeTo(ByteBuffer buffer) {
+        ByteBuffer out = buffer.slice(buffer.position(), (int) byteSize(n)).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, n).putLong(12, fingerprint);
+        fromBuffer(out, n, fingerprint).copyFrom(this);
+    }
+
+    long byteSize() {
+        return byteSize(n);
+    }
+
+    long fingerprint() {
+        return fingerprint;
+    }
+
+    private static long byteSize(int n) {
+        return HEADER_BYTES + align4(2L * n * n) + 4L * n * n;
+    }
+
+    private void copyFrom(NextHopTable other) {
+        next.put(0, other.next, 0, n * n);
+        dist.put(0, other.dist, 0, n * n);
+    }
+
+    private static NextHopTable fromBuffer(ByteBuffer buffer, int n, long fingerprint) {
+        int nextBytes = (int) (2L * n * n);
+        ShortBuffer next = buffer.slice(HEADER_BYTES, nextBytes).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+        int distOffset = (int) (HEADER_BYTES + align4(nextBytes));
+        FloatBuffer dist = buffer.slice(distOffset, 4 * n * n).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+        return new NextHopTable(n, fingerprint, next, dist);
+    }
+
+    private void fill(RoutingEngine engine) {
+        IntStream.range(0, n).parallel().forEach(source -> {
+            int row = source * n;
+            for (int t = 0; t < n; t++) {
+                next.put(row + t, NO_HOP);
+                dist.put(row + t, Float.MAX_VALUE);
+            }
+            // Settle order guarantees the predecessor's first hop is already known
+            engine.shortestPathTree(source, (node, predecessor, distance) -> {
+                dist.put(row + node, distance);
+                if (predecessor == source) {
+                    next.put(row + node, (short) node);
+                } else if (predecessor >= 0) {
+                    next.put(row + node, next.get(row + predecessor));
+                }
+            });
+        });
+    }
+
+    public int size() {
+        return n;
+    }
+
+    public float distance(int source, int destination) {
+        return dist.get(source * n + destination);
+    }
+
+    public int nextHop(int source, int destination) {
+        return next.get(source * n + destination);
+    }
+
+    public Route route(int source, int destination) {
+        float total = distance(source, destination);
+        if (total == Float.MAX_VALUE)
+            return Route.notFound(source, destination);
+
+        int count = 1;
+        for (int u = source; u != destination; u = nextHop(u, destination)) {
+            count++;
+        }
+        int[] stations = new int[count];
+        stations[0] = source;
+        for (int i = 1, u = source; u != destination; i++) {
+            u = nextHop(u, destination);
+            stations[i] = u;
+        }
+        return new Route(source, destination, stations, total);
+    }
+
+    private static int checkSize(int n) {
+        if (n > MAX_NODES)
+            throw new IllegalArgumentException("Next-hop table supports at most " + MAX_NODES + " stations, got " + n);
+        return n;
+    }
+
+    private static long align4(long bytes) {
+        return (bytes + 3) & ~3L;
+    }
+}
@@ -0,0 +1,276 @@
+// Batch origin-destination matrix: distance, travel time and interchanges for a CSV of OD pairs.
+// Pairs are streamed in chunks and grouped by origin, so one single-source platform search and one timetable
+// scan answer every destination asked for from that origin. Origins run in parallel on a ForkJoinPool and
+// each origin's rows are written as soon as they are done, so memory is bounded by the chunk size.
+//
+// Input needs origin and destination columns (station names, aliases or indices); an id column, if
+// present, is copied to the output. Output rows come grouped by origin, not in input order.
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+public final class OdMatrix {
+    // -Dmetro.batch.chunk=<pairs> bounds how many pairs are held at once; -Dmetro.batch.threads=<n> sizes the pool
+    static final int CHUNK_PAIRS = Integer.getInteger("metro.batch.chunk", 1 << 20);
+    static final int THREADS = Integer.getInteger("metro.batch.threads", Runtime.getRuntime().availableProcessors());
+    static final LocalTime DEFAULT_DEPARTURE = LocalTime.of(8, 0);
+
+    static final String HEADER = "row,id,origin,destination,distance_km,stations,interchanges,minutes\n";
+
+    private final MetroNetwork network;
+    private final int departure;
+    private final ThreadLocal<Scratch> scratch;
+
+    private final LongAdder pairs = new LongAdder();
+    private final LongAdder origins = new LongAdder();
+    private long skipped;
+
+    public OdMatrix(RoutePlanner planner, LocalTime departure) {
+        this.network = planner.network();
+        this.departure = departure.toSecondOfDay();
+        int n = network.size();
+        this.scratch = ThreadLocal.withInitial(() -> new Scratch(n));
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2 && !(args.length == 4 && args[2].equals("--depart"))) {
+            System.err.println("Usage: java -cp bin OdMatrix <pairs.csv> <out.csv> [--depart HH:mm]");
+            System.exit(2);
+        }
+        LocalTime departure = args.length == 4 ? LocalTime.parse(args[3]) : DEFAULT_DEPARTURE;
+        MetroNetwork network = MetroNetwork.load();
+        OdMatrix matrix = new OdMatrix(new RoutePlanner(network), departure);
+
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(THREADS);
+        try (Writer out = Files.newBufferedWriter(Paths.get(args[1]), StandardCharsets.UTF_8)) {
+            matrix.run(Paths.get(args[0]), out, pool);
+        } finally {
+            pool.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d pairs from %d origin runs in %.1f s (%.0f pairs/s), %d rows skipped%n", matrix.pairs(),
+                matrix.originRuns(), seconds, matrix.pairs() / seconds, matrix.skipped());
+    }
+
+    // Reads pairs chunk by chunk; each chunk is grouped by origin and solved on the pool before the next is read
+    public void run(Path input, Writer out, ForkJoinPool pool) throws IOException {
+        out.write(HEADER);
+        Chunk chunk = new Chunk(Math.max(1, CHUNK_PAIRS), network.size());
+        try (GtfsImporter.CsvFile csv = GtfsImporter.CsvFile.open(input)) {
+            int origin = csv.require("origin");
+            int destination = csv.require("destination");
+            int id = csv.column("id");
+            long row = 0;
+            while (csv.next()) {
+                row++;
+                int s = station(csv.get(origin));
+                int d = station(csv.get(destination));
+                if (s < 0 || d < 0) {
+                    skipped++;
+                    System.err.println(csv.error("unknown station " + (s < 0 ? csv.get(origin) : csv.get(destination)))
+                            .getMessage());
+                    continue;
+                }
+                chunk.add(row, id >= 0 ? csv.get(id) : "", s, d);
+                if (chunk.isFull()) {
+                    solve(chunk, out, pool);
+                    chunk.clear();
+                }
+            }
+        }
+        solve(chunk, out, pool);
+        out.flush();
+    }
+
+    private int station(String field) {
+        int station = network.stationIndex(field);
+        if (station >= 0)
+            return station;
+        try {
+            int index = Integer.parseInt(field.trim());
+            return index >= 0 && index < network.size() ? index : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void solve(Chunk chunk, Writer out, ForkJoinPool pool) throws IOException {
+        if (chunk.size == 0)
+            return;
+        chunk.groupByOrigin();
+        try {
+            pool.submit(() -> IntStream.range(0, network.size()).parallel()
+                    .filter(chunk::hasPairs)
+                    .forEach(origin -> writeOrigin(chunk, origin, out)))
+                    .get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while solving OD pairs", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException)
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            throw new IOException("OD matrix worker failed", e.getCause());
+        }
+    }
+
+    private void writeOrigin(Chunk chunk, int origin, Writer out) {
+        Scratch s = scratch.get();
+        s.search(origin);
+
+        StringBuilder rows = s.rows;
+        rows.setLength(0);
+        String originName = csv(network.stationName(origin));
+        for (int p = chunk.first(origin), end = chunk.end(origin); p < end; p++) {
+            int pair = chunk.order[p];
+            int d = chunk.destination[pair];
+            rows.append(chunk.row[pair]).append(',').append(csv(chunk.id[pair])).append(',').append(originName)
+                    .append(',').append(csv(network.stationName(d))).append(',');
+            if (s.dist[d] == Float.MAX_VALUE) {
+                rows.append(",,,\n");
+                continue;
+            }
+            int minutes = s.arrival[d] >= 0 ? RoutePlanner.travelMinutes(s.departure[d], s.arrival[d])
+                    : RoutePlanner.estimateMinutes(s.hops[d], s.interchanges[d]);
+            appendKm(rows, s.dist[d]).append(',').append(s.hops[d] + 1).append(',')
+                    .append(s.interchanges[d]).append(',').append(minutes).append('\n');
+        }
+        pairs.add(chunk.end(origin) - chunk.first(origin));
+        origins.increment();
+        try {
+            synchronized (out) {
+                out.append(rows);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Two decimals without String.format, which would dominate the run time for millions of rows
+    private static StringBuilder appendKm(StringBuilder sb, float km) {
+        long hundredths = Math.round(km * 100.0);
+        long fraction = hundredths % 100;
+        return sb.append(hundredths / 100).append('.').append(fraction < 10 ? "0" : "").append(fraction);
+    }
+
+    private static String csv(String field) {
+        if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0)
+            return field;
+        return '"' + field.replace("\"", "\"\"") + '"';
+    }
+
+    public long pairs() {
+        return pairs.sum();
+    }
+
+    public long originRuns() {
+        return origins.sum();
+    }
+
+    public long skipped() {
+        return skipped;
+    }
+
+    // Per-thread single-source results, sized to the network once
+    private final class Scratch {
+        final float[] dist;
+        final int[] hops;
+        final int[] interchanges;
+        final int[] arrival;
+        final int[] departure;
+        final StringBuilder rows = new StringBuilder();
+
+        Scratch(int n) {
+            dist = new float[n];
+            hops = new int[n];
+            interchanges = new int[n];
+            arrival = new int[n];
+            departure = new int[n];
+        }
+
+        // The platform search RoutePlanner plans with, run once over the whole network, so distances, hops
+        // and interchanges match the UI and /route for every destination
+        void search(int origin) {
+            Arrays.fill(dist, Float.MAX_VALUE);
+            network.lines().routeTree(origin, (station, km, hopCount, changes) -> {
+                dist[station] = km;
+                hops[station] = hopCount;
+                interchanges[station] = changes;
+            });
+            network.timetable().earliestArrivals(origin, OdMatrix.this.departure, arrival, departure);
+        }
+    }
+
+    // One chunk of pairs in input order, plus a counting-sort index of them by origin
+    private static final class Chunk {
+        final long[] row;
+        final String[] id;
+        final int[] origin;
+        final int[] destination;
+        final int[] order;
+        final int[] offsets;
+        int size;
+
+        Chunk(int capacity, int stations) {
+            row = new long[capacity];
+            id = new String[capacity];
+            origin = new int[capacity];
+            destination = new int[capacity];
+            order = new int[capacity];
+            offsets = new int[stations + 1];
+        }
+
+        void add(long inputRow, String pairId, int s, int d) {
+            row[size] = inputRow;
+            id[size] = pairId;
+            origin[size] = s;
+            destination[size] = d;
+            size++;
+        }
+
+        boolean isFull() {
+            return size == row.length;
+        }
+
+        void clear() {
+            Arrays.fill(id, 0, size, null);
+            size = 0;
+        }
+
+        void groupByOrigin() {
+            Arrays.fill(offsets, 0);
+            for (int i = 0; i < size; i++) {
+                offsets[origin[i] + 1]++;
+            }
+            for (int s = 0; s + 1 < offsets.length; s++) {
+                offsets[s + 1] += offsets[s];
+            }
+            int[] cursor = Arrays.copyOf(offsets, offsets.length - 1);
+            for (int i = 0; i < size; i++) {
+                order[cursor[origin[i]]++] = i;
+            }
+        }
+
+        boolean hasPairs(int s) {
+            return offsets[s + 1] > offsets[s];
+        }
+
+        int first(int s) {
+            return offsets[s];
+        }
+
+        int end(int s) {
+            return offsets[s + 1];
+        }
+    }
+}
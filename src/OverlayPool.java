@@ -0,0 +1,169 @@
+// Route lines, step labels and glow rings of the node map, kept between routes. Nodes stay in the overlay and
+// are only hidden when a route is cleared, then moved into place for the next one, so once the pool has grown
+// to the longest route shown a search allocates no nodes. Their look comes from style classes in map.css,
+// parsed once with the stylesheet instead of per node. FX thread only.
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.control.Label;
+import javafx.scene.shape.Circle;
+import javafx.scene.shape.Line;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Name;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+final class OverlayPool {
+    // -Dmetro.ui.pool=false creates fresh nodes for every route and drops them on clear, for comparison
+    static final boolean POOLED = !"false".equals(System.getProperty("metro.ui.pool"));
+
+    private final Slots<Line> lines;
+    private final Slots<Circle> glows;
+    private final Slots<Label> labels;
+    private final List<String> stepTexts = new ArrayList<>();
+    private long created;
+    private long reused;
+    private RouteOverlayEvent event;
+    private long createdAtBegin;
+    private long reusedAtBegin;
+
+    OverlayPool(Group layer) {
+        lines = new Slots<>(() -> styled(new Line(), "route-line"));
+        glows = new Slots<>(() -> styled(new Circle(), "route-glow"));
+        labels = new Slots<>(() -> styled(new Label(), "route-step"));
+        // One group per kind keeps step numbers above lines and rings whatever order they are taken in
+        layer.getChildren().addAll(lines.group, glows.group, labels.group);
+    }
+
+    // Route line from (x1, y1) to (x2, y2); hidden until the caller shows it
+    Line line(double x1, double y1, double x2, double y2) {
+        Line line = take(lines);
+        line.setStartX(x1);
+        line.setStartY(y1);
+        line.setEndX(x2);
+        line.setEndY(y2);
+        return line;
+    }
+
+    // Glow ring around (x, y); hidden until the caller shows it
+    Circle glow(double x, double y, double radius) {
+        Circle glow = take(glows);
+        glow.setCenterX(x);
+        glow.setCenterY(y);
+        glow.setRadius(radius);
+        return glow;
+    }
+
+    // Step number with its top-left corner at (x, y); hidden until the caller shows it
+    Label step(int step, double x, double y) {
+        Label label = take(labels);
+        label.setText(stepText(step));
+        label.setLayoutX(x);
+        label.setLayoutY(y);
+        return label;
+    }
+
+    // Hides every node handed out since the last release; they are reused, in order, by the next route
+    void releaseAll() {
+        lines.release();
+        glows.release();
+        labels.release();
+    }
+
+    // Nodes created and reused so far
+    long created() {
+        return created;
+    }
+
+    long reused() {
+        return reused;
+    }
+
+    // Brackets the nodes taken for one route with a metro.RouteOverlay JFR event
+    void beginRoute() {
+        event = new RouteOverlayEvent();
+        event.begin();
+        createdAtBegin = created;
+        reusedAtBegin = reused;
+    }
+
+    void endRoute(int stations) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.stations = stations;
+            event.created = (int) (created - createdAtBegin);
+            event.reused = (int) (reused - reusedAtBegin);
+            event.commit();
+        }
+        event = null;
+    }
+
+    private <T extends Node> T take(Slots<T> slots) {
+        T node;
+        if (slots.used < slots.nodes.size()) {
+            node = slots.nodes.get(slots.used);
+            reused++;
+        } else {
+            node = slots.factory.get();
+            slots.nodes.add(node);
+            slots.group.getChildren().add(node);
+            created++;
+        }
+        slots.used++;
+        node.setVisible(false);
+        return node;
+    }
+
+    // Labels of a route always read 1..n, so the strings are made once
+    private String stepText(int step) {
+        while (stepTexts.size() <= step) {
+            stepTexts.add(Integer.toString(stepTexts.size()));
+        }
+        return stepTexts.get(step);
+    }
+
+    private static <T extends Node> T styled(T node, String styleClass) {
+        node.getStyleClass().add(styleClass);
+        return node;
+    }
+
+    private static final class Slots<T extends Node> {
+        final Group group = new Group();
+        final List<T> nodes = new ArrayList<>();
+        final Supplier<T> factory;
+        int used; // nodes[0, used) belong to the route on screen
+
+        Slots(Supplier<T> factory) {
+            this.factory = factory;
+        }
+
+        void release() {
+            if (POOLED) {
+                for (int i = 0; i < used; i++) {
+                    nodes.get(i).setVisible(false);
+                }
+            } else {
+                group.getChildren().clear();
+                nodes.clear();
+            }
+            used = 0;
+        }
+    }
+
+    @Name("metro.RouteOverlay")
+    @jdk.jfr.Label("Route Overlay")
+    @Category("Pune Metro")
+    @Description("Overlay nodes taken for one highlighted route")
+    static final class RouteOverlayEvent extends Event {
+        @jdk.jfr.Label("Stations")
+        int stations;
+
+        @jdk.jfr.Label("Nodes Created")
+        int created;
+
+        @jdk.jfr.Label("Nodes Reused")
+        int reused;
+    }
+}
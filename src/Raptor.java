@@ -0,0 +1,503 @@
+// Round-based transit routing (RAPTOR) for trade-off answers: the Pareto set of journeys by arrival time and
+// number of changes. Round k settles the earliest arrival using at most k trains, so one query yields both the
+// fastest journey and the ones with fewer changes, where a graph search would need a run per change penalty.
+// Trips with the same stop sequence are grouped into routes; each route's stop times are stored trip-major in
+// one flat array, so scanning a route reads memory in order. Built from a Timetable; times are seconds of day.
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class Raptor {
+    // -Dmetro.raptor.rounds=<n> caps the trains per journey
+    static final int MAX_ROUNDS = Integer.getInteger("metro.raptor.rounds", 8);
+
+    private static final int UNREACHED = Integer.MAX_VALUE;
+    private static final int CARRIED = -1; // no ride improved the stop this round; look at the round before
+
+    private final int stops;
+
+    // Route r visits routeStops[routeStopOffsets[r] .. routeStopOffsets[r + 1]) in order
+    private final int[] routeStopOffsets;
+    private final int[] routeStops;
+    // Route r runs route trips routeTripOffsets[r] .. routeTripOffsets[r + 1], sorted by departure
+    private final int[] routeTripOffsets;
+    private final int[] tripIds; // timetable trip of each route trip
+    private final int[] tripRoute;
+    // Trip t of route r (t counted from 0 within the route) at position p: arrival at
+    // times[routeTimeOffsets[r] + (t * stopCount + p) * 2], departure right after it
+    private final int[] routeTimeOffsets;
+    private final int[] times;
+
+    // Stop s is served by stopRoutes[stopRouteOffsets[s] .. stopRouteOffsets[s + 1]), at stopPositions
+    private final int[] stopRouteOffsets;
+    private final int[] stopRoutes;
+    private final int[] stopPositions;
+
+    private final int[] footOffsets;
+    private final int[] footTargets;
+    private final int[] footSeconds;
+
+    private final ThreadLocal<RoundContext> contexts;
+
+    public Raptor(Timetable timetable) {
+        this.stops = timetable.stopCount();
+        List<Segment> segments = segments(timetable);
+
+        // Same stop sequence, same route; then split into overtaking-free lanes so trips stay sorted at every stop
+        Map<Sequence, List<Segment>> patterns = new HashMap<>();
+        for (Segment segment : segments) {
+            patterns.computeIfAbsent(new Sequence(segment.stops), key -> new ArrayList<>()).add(segment);
+        }
+        List<List<Segment>> routes = new ArrayList<>();
+        for (List<Segment> pattern : patterns.values()) {
+            pattern.sort((a, b) -> a.times[1] != b.times[1] ? Integer.compare(a.times[1], b.times[1])
+                    : Integer.compare(a.times[a.times.length - 2], b.times[b.times.length - 2]));
+            List<List<Segment>> lanes = new ArrayList<>();
+            for (Segment segment : pattern) {
+                List<Segment> lane = null;
+                for (int i = 0; i < lanes.size() && lane == null; i++) {
+                    List<Segment> candidate = lanes.get(i);
+                    if (notBefore(segment, candidate.get(candidate.size() - 1)))
+                        lane = candidate;
+                }
+                if (lane == null) {
+                    lane = new ArrayList<>();
+                    lanes.add(lane);
+                }
+                lane.add(segment);
+            }
+            routes.addAll(lanes);
+        }
+        // Deterministic layout regardless of hash order
+        routes.sort((a, b) -> Integer.compare(a.get(0).first, b.get(0).first));
+
+        int routeCount = routes.size();
+        routeStopOffsets = new int[routeCount + 1];
+        routeTripOffsets = new int[routeCount + 1];
+        routeTimeOffsets = new int[routeCount + 1];
+        for (int r = 0; r < routeCount; r++) {
+            List<Segment> route = routes.get(r);
+            int length = route.get(0).stops.length;
+            routeStopOffsets[r + 1] = routeStopOffsets[r] + length;
+            routeTripOffsets[r + 1] = routeTripOffsets[r] + route.size();
+            routeTimeOffsets[r + 1] = routeTimeOffsets[r] + route.size() * length * 2;
+        }
+        routeStops = new int[routeStopOffsets[routeCount]];
+        tripIds = new int[routeTripOffsets[routeCount]];
+        tripRoute = new int[tripIds.length];
+        times = new int[routeTimeOffsets[routeCount]];
+        stopRouteOffsets = new int[stops + 1];
+        for (int r = 0; r < routeCount; r++) {
+            List<Segment> route = routes.get(r);
+            int[] sequence = route.get(0).stops;
+            System.arraycopy(sequence, 0, routeStops, routeStopOffsets[r], sequence.length);
+            for (int s : sequence) {
+                stopRouteOffsets[s + 1]++;
+            }
+            for (int t = 0; t < route.size(); t++) {
+                Segment trip = route.get(t);
+                tripIds[routeTripOffsets[r] + t] = trip.trip;
+                tripRoute[routeTripOffsets[r] + t] = r;
+                System.arraycopy(trip.times, 0, times, routeTimeOffsets[r] + t * trip.times.length, trip.times.length);
+            }
+        }
+        for (int s = 0; s < stops; s++) {
+            stopRouteOffsets[s + 1] += stopRouteOffsets[s];
+        }
+        stopRoutes = new int[stopRouteOffsets[stops]];
+        stopPositions = new int[stopRoutes.length];
+        int[] cursor = Arrays.copyOf(stopRouteOffsets, stops);
+        for (int r = 0; r < routeCount; r++) {
+            for (int p = 0, start = routeStopOffsets[r], end = routeStopOffsets[r + 1]; start + p < end; p++) {
+                int s = routeStops[start + p];
+                stopRoutes[cursor[s]] = r;
+                stopPositions[cursor[s]++] = p;
+            }
+        }
+
+        IntBuffer[] buffers = timetable.buffers();
+        footOffsets = toArray(buffers[1]);
+        footTargets = toArray(buffers[2]);
+        footSeconds = toArray(buffers[3]);
+
+        this.contexts = ThreadLocal.withInitial(() -> new RoundContext(stops, routeCount));
+    }
+
+    public int stopCount() {
+        return stops;
+    }
+
+    public int routeCount() {
+        return routeStopOffsets.length - 1;
+    }
+
+    // Journeys from source to destination leaving at or after the given second where no other journey both
+    // arrives earlier and changes less often: fewest changes first, each later one arriving strictly earlier.
+    // Empty when no train gets there today.
+    public List<Journey> paretoJourneys(int source, int destination, int second) {
+        checkStop(source);
+        checkStop(destination);
+        RoundContext ctx = contexts.get();
+        int n = stops;
+        int[] arrival = ctx.arrival;
+        int[] best = ctx.best;
+        ctx.reset();
+
+        arrival[source] = second;
+        best[source] = second;
+        ctx.mark(source);
+        walk(ctx, 0, destination);
+
+        int rounds = 0;
+        for (int k = 1; k <= MAX_ROUNDS && ctx.markedCount > 0; k++) {
+            System.arraycopy(arrival, (k - 1) * n, arrival, k * n, n);
+            Arrays.fill(ctx.rideTrip, k * n, (k + 1) * n, CARRIED);
+            Arrays.fill(ctx.walkFrom, k * n, (k + 1) * n, -1);
+
+            // Each route once, from the earliest stop on it that improved last round
+            for (int i = 0; i < ctx.markedCount; i++) {
+                int s = ctx.markedStops[i];
+                ctx.marked[s] = false;
+                for (int e = stopRouteOffsets[s], end = stopRouteOffsets[s + 1]; e < end; e++) {
+                    int r = stopRoutes[e];
+                    int p = stopPositions[e];
+                    if (ctx.queuedFrom[r] < 0)
+                        ctx.queuedRoutes[ctx.queuedCount++] = r;
+                    if (ctx.queuedFrom[r] < 0 || p < ctx.queuedFrom[r])
+                        ctx.queuedFrom[r] = p;
+                }
+            }
+            ctx.markedCount = 0;
+            for (int i = 0; i < ctx.queuedCount; i++) {
+                int r = ctx.queuedRoutes[i];
+                scanRoute(ctx, r, ctx.queuedFrom[r], k, destination);
+                ctx.queuedFrom[r] = -1;
+            }
+            ctx.queuedCount = 0;
+            walk(ctx, k, destination);
+            rounds = k;
+        }
+
+        List<Journey> journeys = new ArrayList<>(2);
+        int previous = UNREACHED;
+        for (int k = 0; k <= rounds; k++) {
+            int time = arrival[k * n + destination];
+            if (time < previous) {
+                journeys.add(journey(ctx, source, destination, second, k));
+                previous = time;
+            }
+        }
+        return journeys;
+    }
+
+    // Rides one route from position start, hopping onto an earlier trip wherever last round got there in time
+    private void scanRoute(RoundContext ctx, int r, int start, int k, int destination) {
+        int n = stops;
+        int[] arrival = ctx.arrival;
+        int[] best = ctx.best;
+        int[] times = this.times;
+        int firstStop = routeStopOffsets[r];
+        int length = routeStopOffsets[r + 1] - firstStop;
+        int timeBase = routeTimeOffsets[r];
+        int tripBase = routeTripOffsets[r];
+        int tripCount = routeTripOffsets[r + 1] - tripBase;
+        int round = k * n;
+        int previousRound = round - n;
+
+        int trip = -1;
+        int row = 0;
+        int board = -1;
+        for (int p = start; p < length; p++) {
+            int stop = routeStops[firstStop + p];
+            if (trip >= 0) {
+                int arrives = times[row + p * 2];
+                if (arrives < best[stop] && arrives < best[destination]) {
+                    arrival[round + stop] = arrives;
+                    best[stop] = arrives;
+                    ctx.rideTrip[round + stop] = tripBase + trip;
+                    ctx.rideBoard[round + stop] = board;
+                    ctx.rideAlight[round + stop] = p;
+                    ctx.walkFrom[round + stop] = -1;
+                    ctx.mark(stop);
+                }
+            }
+            int ready = arrival[previousRound + stop];
+            if (ready == UNREACHED || p + 1 == length || (trip >= 0 && ready > times[row + p * 2 + 1]))
+                continue;
+            // First trip leaving here no earlier than ready; departures are sorted by trip at every position
+            int lo = 0;
+            int hi = trip >= 0 ? trip : tripCount;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (times[timeBase + (mid * length + p) * 2 + 1] < ready)
+                    lo = mid + 1;
+                else
+                    hi = mid;
+            }
+            if (lo < (trip >= 0 ? trip : tripCount)) {
+                trip = lo;
+                row = timeBase + trip * length * 2;
+                board = p;
+            }
+        }
+    }
+
+    // Footpaths from every stop the rides of round k improved, one walk each like the connection scan. A walk
+    // keeps the ride label of the stop it improves, since walks out of that stop still start from the ride.
+    private void walk(RoundContext ctx, int k, int destination) {
+        int round = k * stops;
+        int[] arrival = ctx.arrival;
+        int[] best = ctx.best;
+        int ridden = ctx.markedCount;
+        for (int i = 0; i < ridden; i++) {
+            ctx.rideArrival[i] = arrival[round + ctx.markedStops[i]];
+        }
+        for (int i = 0; i < ridden; i++) {
+            int from = ctx.markedStops[i];
+            int time = ctx.rideArrival[i];
+            for (int f = footOffsets[from], end = footOffsets[from + 1]; f < end; f++) {
+                int target = footTargets[f];
+                int arrives = time + footSeconds[f];
+                if (arrives < best[target] && arrives < best[destination]) {
+                    arrival[round + target] = arrives;
+                    best[target] = arrives;
+                    ctx.walkFrom[round + target] = from;
+                    ctx.walkStart[round + target] = time;
+                    ctx.mark(target);
+                }
+            }
+        }
+    }
+
+    // Follows the labels back from the destination in round k, one ride or walk per leg
+    private Journey journey(RoundContext ctx, int source, int destination, int second, int k) {
+        int n = stops;
+        int legs = 0;
+        int[] from = ctx.legFrom;
+        int[] to = ctx.legTo;
+        int[] departure = ctx.legDeparture;
+        int[] arrive = ctx.legArrival;
+        int[] trip = ctx.legTrip;
+        boolean rode = false; // the stop was reached by this round's ride, a walk having started there
+        for (int stop = destination, round = k; stop != source;) {
+            int at = round * n + stop;
+            if (!rode && ctx.walkFrom[at] >= 0) {
+                from[legs] = ctx.walkFrom[at];
+                to[legs] = stop;
+                departure[legs] = ctx.walkStart[at];
+                arrive[legs] = ctx.arrival[at];
+                trip[legs] = -1;
+                rode = true;
+            } else if (ctx.rideTrip[at] == CARRIED) {
+                round--;
+                continue;
+            } else {
+                int label = ctx.rideTrip[at];
+                int r = tripRoute[label];
+                int length = routeStopOffsets[r + 1] - routeStopOffsets[r];
+                int row = routeTimeOffsets[r] + (label - routeTripOffsets[r]) * length * 2;
+                int board = ctx.rideBoard[at];
+                from[legs] = routeStops[routeStopOffsets[r] + board];
+                to[legs] = stop;
+                departure[legs] = times[row + board * 2 + 1];
+                arrive[legs] = times[row + ctx.rideAlight[at] * 2];
+                trip[legs] = tripIds[label];
+                rode = false;
+                round--;
+            }
+            stop = from[legs];
+            legs++;
+        }
+        return new Journey(source, destination, second, reversed(from, legs), reversed(to, legs),
+                reversed(departure, legs), reversed(arrive, legs), reversed(trip, legs));
+    }
+
+    private static int[] reversed(int[] values, int length) {
+        int[] out = new int[length];
+        for (int i = 0; i < length; i++) {
+            out[i] = values[length - 1 - i];
+        }
+        return out;
+    }
+
+    private void checkStop(int stop) {
+        if (stop < 0 || stop >= stops)
+            throw new IllegalArgumentException("Unknown station index: " + stop);
+    }
+
+    // ===== BUILDING ROUTES =====
+
+    // One run of a trip along consecutive connections, as stops plus (arrival, departure) per stop
+    private static final class Segment {
+        final int trip;
+        final int first; // index of its first connection, for a stable route order
+        final int[] stops;
+        final int[] times;
+
+        Segment(int trip, int first, int[] stops, int[] times) {
+            this.trip = trip;
+            this.first = first;
+            this.stops = stops;
+            this.times = times;
+        }
+    }
+
+    // Cuts every trip into segments; a trip that jumps between stops or back in time starts a new one
+    private static List<Segment> segments(Timetable timetable) {
+        int connections = timetable.connectionCount();
+        int trips = timetable.tripCount();
+        // Connections grouped by trip, in departure order within each trip
+        int[] offsets = new int[trips + 1];
+        for (int c = 0; c < connections; c++) {
+            offsets[timetable.trip(c) + 1]++;
+        }
+        for (int t = 0; t < trips; t++) {
+            offsets[t + 1] += offsets[t];
+        }
+        int[] byTrip = new int[connections];
+        int[] cursor = Arrays.copyOf(offsets, trips);
+        for (int c = 0; c < connections; c++) {
+            byTrip[cursor[timetable.trip(c)]++] = c;
+        }
+
+        List<Segment> segments = new ArrayList<>(trips);
+        int[] stops = new int[16];
+        int[] times = new int[32];
+        for (int t = 0; t < trips; t++) {
+            int length = 0;
+            int first = -1;
+            for (int i = offsets[t]; i <= offsets[t + 1]; i++) {
+                int c = i < offsets[t + 1] ? byTrip[i] : -1;
+                boolean continues = c >= 0 && length > 0 && stops[length - 1] == timetable.departureStop(c)
+                        && times[length * 2 - 2] <= timetable.departureTime(c);
+                if (length > 0 && !continues) {
+                    times[length * 2 - 1] = times[length * 2 - 2];
+                    segments.add(new Segment(t, first, Arrays.copyOf(stops, length), Arrays.copyOf(times, length * 2)));
+                    length = 0;
+                }
+                if (c < 0)
+                    break;
+                if (length == 0) {
+                    first = c;
+                    stops[0] = timetable.departureStop(c);
+                    times[0] = timetable.departureTime(c);
+                    length = 1;
+                }
+                if (length + 1 > stops.length) {
+                    stops = Arrays.copyOf(stops, stops.length * 2);
+                    times = Arrays.copyOf(times, times.length * 2);
+                }
+                times[length * 2 - 1] = timetable.departureTime(c);
+                stops[length] = timetable.arrivalStop(c);
+                times[length * 2] = timetable.arrivalTime(c);
+                length++;
+            }
+        }
+        return segments;
+    }
+
+    // Whether trip a never runs ahead of trip b on the same stops, so b can precede it in a route
+    private static boolean notBefore(Segment a, Segment b) {
+        for (int i = 0; i < a.times.length; i++) {
+            if (a.times[i] < b.times[i])
+                return false;
+        }
+        return true;
+    }
+
+    private static int[] toArray(IntBuffer buffer) {
+        int[] values = new int[buffer.limit()];
+        buffer.get(0, values);
+        return values;
+    }
+
+    // Stop sequence as a hash key
+    private static final class Sequence {
+        final int[] stops;
+        final int hash;
+
+        Sequence(int[] stops) {
+            this.stops = stops;
+            this.hash = Arrays.hashCode(stops);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Sequence && Arrays.equals(stops, ((Sequence) o).stops);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    // ===== PER-THREAD STATE =====
+
+    // Arrivals and labels for every round, round-major so a round is one contiguous slice
+    private static final class RoundContext {
+        final int[] arrival;
+        final int[] rideTrip; // route trip that improved the stop this round, or CARRIED
+        final int[] rideBoard; // positions on its route where it was boarded and left
+        final int[] rideAlight;
+        final int[] walkFrom; // stop a footpath improved it from this round, or -1
+        final int[] walkStart;
+        final int[] best;
+        final boolean[] marked;
+        final int[] markedStops;
+        final int[] rideArrival;
+        int markedCount;
+        final int[] queuedFrom;
+        final int[] queuedRoutes;
+        int queuedCount;
+        final int[] legFrom;
+        final int[] legTo;
+        final int[] legDeparture;
+        final int[] legArrival;
+        final int[] legTrip;
+
+        RoundContext(int stops, int routes) {
+            int slots = (MAX_ROUNDS + 1) * stops;
+            arrival = new int[slots];
+            rideTrip = new int[slots];
+            rideBoard = new int[slots];
+            rideAlight = new int[slots];
+            walkFrom = new int[slots];
+            walkStart = new int[slots];
+            best = new int[stops];
+            marked = new boolean[stops];
+            markedStops = new int[stops];
+            rideArrival = new int[stops];
+            queuedFrom = new int[routes];
+            queuedRoutes = new int[routes];
+            Arrays.fill(queuedFrom, -1);
+            int legs = 2 * MAX_ROUNDS + 1;
+            legFrom = new int[legs];
+            legTo = new int[legs];
+            legDeparture = new int[legs];
+            legArrival = new int[legs];
+            legTrip = new int[legs];
+        }
+
+        void reset() {
+            Arrays.fill(best, UNREACHED);
+            Arrays.fill(arrival, 0, best.length, UNREACHED);
+            Arrays.fill(rideTrip, 0, best.length, CARRIED);
+            Arrays.fill(walkFrom, 0, best.length, -1);
+            for (int i = 0; i < markedCount; i++) {
+                marked[markedStops[i]] = false;
+            }
+            markedCount = 0;
+        }
+
+        void mark(int stop) {
+            if (!marked[stop]) {
+                marked[stop] = true;
+                markedStops[markedCount++] = stop;
+            }
+        }
+    }
+}
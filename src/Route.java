@@ -0,0 +1,61 @@
+// Immutable result of one routing query
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public final class Route {
+    private final int source;
+    private final int destination;
+    private final int[] stations; // source first, destination last; empty when unreachable
+    private final float distance;
+
+    Route(int source, int destination, int[] stations, float distance) {
+        this.source = source;
+        this.destination = destination;
+        this.stations = stations;
+        this.distance = distance;
+    }
+
+    static Route notFound(int source, int destination) {
+        return new Route(source, destination, new int[0], Float.MAX_VALUE);
+    }
+
+    public int source() {
+        return source;
+    }
+
+    public int destination() {
+        return destination;
+    }
+
+    public boolean isFound() {
+        return stations.length > 0;
+    }
+
+    public float distance() {
+        return distance;
+    }
+
+    // Number of stations on the route, including both ends
+    public int length() {
+        return stations.length;
+    }
+
+    public int station(int index) {
+        return stations[index];
+    }
+
+    public int[] stations() {
+        return stations.clone();
+    }
+
+    public List<Integer> asList() {
+        if (stations.length == 0)
+            return Collections.emptyList();
+        List<Integer> list = new ArrayList<>(stations.length);
+        for (int s : stations) {
+            list.add(s);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,174 @@
+// Owns every route animation on the map and drives them from one AnimationTimer: delayed reveal steps,
+// scale pulses, moving dashes and per-frame callbacks all read the same clock. clear() stops the timer and
+// drops everything, so nothing keeps running for routes that are no longer shown and the work per frame
+// only depends on the route on screen. FX thread only.
+import javafx.animation.AnimationTimer;
+import javafx.scene.Node;
+import javafx.scene.shape.Shape;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleConsumer;
+
+final class RouteAnimator {
+    static final int INDEFINITE = -1;
+
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            frame(now);
+        }
+    };
+    private boolean running;
+    private long origin = -1; // System.nanoTime() of the first animation since the last clear
+
+    private final List<Scheduled> scheduled = new ArrayList<>(); // in time order
+    private int nextScheduled;
+    private final List<Pulse> pulses = new ArrayList<>();
+    private final List<Dash> dashes = new ArrayList<>();
+    private final List<DoubleConsumer> frameListeners = new ArrayList<>();
+
+    // Runs action delaySeconds from now
+    void schedule(double delaySeconds, Runnable action) {
+        double at = elapsed() + delaySeconds;
+        int i = scheduled.size();
+        while (i > nextScheduled && scheduled.get(i - 1).at > at) {
+            i--;
+        }
+        scheduled.add(i, new Scheduled(at, action));
+        start();
+    }
+
+    // Scales node from its current scale to toScale and back once per swing, for swings (or INDEFINITE) swings
+    void pulse(Node node, double toScale, double swingSeconds, int swings) {
+        pulses.add(new Pulse(node, node.getScaleX(), toScale, swingSeconds, swings, elapsed()));
+        start();
+    }
+
+    // Moves the stroke dashes of shape by distance every periodSeconds, until clear()
+    void dash(Shape shape, double distance, double periodSeconds) {
+        dashes.add(new Dash(shape, distance, periodSeconds, elapsed()));
+        start();
+    }
+
+    // Called every frame with the seconds since the first animation, until clear()
+    void onFrame(DoubleConsumer listener) {
+        frameListeners.add(listener);
+        start();
+    }
+
+    // Stops the timer and forgets every animation; pulsed nodes go back to their starting scale
+    void clear() {
+        timer.stop();
+        running = false;
+        origin = -1;
+        for (Pulse pulse : pulses) {
+            pulse.node.setScaleX(pulse.from);
+            pulse.node.setScaleY(pulse.from);
+        }
+        scheduled.clear();
+        nextScheduled = 0;
+        pulses.clear();
+        dashes.clear();
+        frameListeners.clear();
+    }
+
+    // Animations currently owned; stays bounded by the route on screen however many routes were shown before
+    int activeCount() {
+        return scheduled.size() - nextScheduled + pulses.size() + dashes.size() + frameListeners.size();
+    }
+
+    private double elapsed() {
+        return origin < 0 ? 0 : (System.nanoTime() - origin) / 1e9;
+    }
+
+    private void start() {
+        if (origin < 0)
+            origin = System.nanoTime();
+        if (!running) {
+            running = true;
+            timer.start();
+        }
+    }
+
+    private void frame(long now) {
+        double t = (now - origin) / 1e9;
+        // Actions may schedule more work; anything due by now runs in this frame
+        while (nextScheduled < scheduled.size() && scheduled.get(nextScheduled).at <= t) {
+            scheduled.get(nextScheduled++).action.run();
+        }
+        if (nextScheduled == scheduled.size()) {
+            scheduled.clear();
+            nextScheduled = 0;
+        }
+
+        for (int i = pulses.size() - 1; i >= 0; i--) {
+            Pulse pulse = pulses.get(i);
+            double phase = Math.max(0, t - pulse.start) / pulse.swingSeconds;
+            double scale;
+            if (pulse.swings != INDEFINITE && phase >= pulse.swings) {
+                scale = pulse.from;
+                // Order does not matter, so finished pulses are swapped out
+                pulses.set(i, pulses.get(pulses.size() - 1));
+                pulses.remove(pulses.size() - 1);
+            } else {
+                scale = pulse.from + (pulse.to - pulse.from) * (1 - Math.cos(2 * Math.PI * phase)) / 2;
+            }
+            pulse.node.setScaleX(scale);
+            pulse.node.setScaleY(scale);
+        }
+        for (Dash dash : dashes) {
+            double phase = Math.max(0, t - dash.start) / dash.periodSeconds;
+            dash.shape.setStrokeDashOffset(dash.distance * (phase - Math.floor(phase)));
+        }
+        for (int i = 0; i < frameListeners.size(); i++) {
+            frameListeners.get(i).accept(t);
+        }
+
+        if (activeCount() == 0) {
+            timer.stop();
+            running = false;
+        }
+    }
+
+    private static final class Scheduled {
+        final double at;
+        final Runnable action;
+
+        Scheduled(double at, Runnable action) {
+            this.at = at;
+            this.action = action;
+        }
+    }
+
+    private static final class Pulse {
+        final Node node;
+        final double from;
+        final double to;
+        final double swingSeconds;
+        final int swings;
+        final double start;
+
+        Pulse(Node node, double from, double to, double swingSeconds, int swings, double start) {
+            this.node = node;
+            this.from = from;
+            this.to = to;
+            this.swingSeconds = swingSeconds;
+            this.swings = swings;
+            this.start = start;
+        }
+    }
+
+    private static final class Dash {
+        final Shape shape;
+        final double distance;
+        final double periodSeconds;
+        final double start;
+
+        Dash(Shape shape, double distance, double periodSeconds, double start) {
+            this.shape = shape;
+            this.distance = distance;
+            this.periodSeconds = periodSeconds;
+            this.start = start;
+        }
+    }
+}
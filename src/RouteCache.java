@@ -0,0 +1,180 @@
+// Bounded LRU cache of planned routes keyed by (source, destination, departure minute).
+// The structured RoutePlan is the primary value; the rendered text is kept next to it the first time
+// somebody asks for it. Entries expire after a TTL so timetable-dependent answers do not go stale.
+// Lookups take a short lock around an access-ordered map; planning and rendering happen outside it.
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+public final class RouteCache {
+    // -Dmetro.cache.size=<entries> and -Dmetro.cache.ttl=<seconds> tune the shared caches
+    static final int DEFAULT_MAX_ENTRIES = Integer.getInteger("metro.cache.size", 4096);
+    static final long DEFAULT_TTL_SECONDS = Long.getLong("metro.cache.ttl", 300);
+
+    private final RoutePlanner planner;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<Long, Entry> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder textHits = new LongAdder();
+    private final LongAdder textMisses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public RouteCache(RoutePlanner planner) {
+        this(planner, DEFAULT_MAX_ENTRIES, DEFAULT_TTL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public RouteCache(RoutePlanner planner, int maxEntries, long ttl, TimeUnit unit) {
+        if (maxEntries < 1)
+            throw new IllegalArgumentException("Cache needs room for at least one route, got " + maxEntries);
+        this.planner = planner;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.entries = new LinkedHashMap<Long, Entry>(Math.min(maxEntries, 1 << 16) * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                if (size() <= RouteCache.this.maxEntries)
+                    return false;
+                evictions.increment();
+                return true;
+            }
+        };
+    }
+
+    public RoutePlanner planner() {
+        return planner;
+    }
+
+    // Plan for leaving source at the given time, computed on a miss
+    public RoutePlan plan(int sourceNumber, int destinationNumber, LocalTime departure) {
+        return entry(sourceNumber, destinationNumber, departure).plan;
+    }
+
+    // Rendered route text for the same key; the names must match the ones the text was rendered with
+    public String render(int sourceNumber, int destinationNumber, String sourceName, String destinationName,
+            LocalTime departure) {
+        Entry entry = entry(sourceNumber, destinationNumber, departure);
+        Rendered rendered = entry.rendered;
+        if (rendered != null && rendered.sourceName.equals(sourceName) && rendered.destinationName.equals(destinationName)) {
+            textHits.increment();
+            return rendered.text;
+        }
+        textMisses.increment();
+        String text = planner.render(entry.plan, sourceName, destinationName, departure);
+        entry.rendered = new Rendered(sourceName, destinationName, text);
+        return text;
+    }
+
+    private Entry entry(int sourceNumber, int destinationNumber, LocalTime departure) {
+        long key = key(sourceNumber, destinationNumber, departure);
+        long now = System.nanoTime();
+        Entry entry;
+        lock.lock();
+        try {
+            entry = entries.get(key);
+            if (entry != null && now - entry.createdAt > ttlNanos) {
+                entries.remove(key);
+                evictions.increment();
+                entry = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (entry != null) {
+            hits.increment();
+            return entry;
+        }
+
+        misses.increment();
+        RoutePlan plan = planner.plan(sourceNumber, destinationNumber, departure.truncatedTo(ChronoUnit.MINUTES));
+        Entry computed = new Entry(plan, System.nanoTime());
+        lock.lock();
+        try {
+            // Another thread may have planned the same key meanwhile; keep whichever got in first
+            Entry raced = entries.putIfAbsent(key, computed);
+            return raced != null ? raced : computed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Source in the high word, then 21 bits of destination and 11 bits of minute of the day
+    private static long key(int sourceNumber, int destinationNumber, LocalTime departure) {
+        int minute = departure.getHour() * 60 + departure.getMinute();
+        return ((long) sourceNumber << 32) | ((long) destinationNumber << 11) | minute;
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long textHits() {
+        return textHits.sum();
+    }
+
+    public long textMisses() {
+        return textMisses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "RouteCache[size=" + size() + ", hits=" + hits() + ", misses=" + misses() + ", textHits=" + textHits()
+                + ", textMisses=" + textMisses() + ", evictions=" + evictions() + "]";
+    }
+
+    private static final class Entry {
+        final RoutePlan plan;
+        final long createdAt;
+        volatile Rendered rendered;
+
+        Entry(RoutePlan plan, long createdAt) {
+            this.plan = plan;
+            this.createdAt = createdAt;
+        }
+    }
+
+    private static final class Rendered {
+        final String sourceName;
+        final String destinationName;
+        final String text;
+
+        Rendered(String sourceName, String destinationName, String text) {
+            this.sourceName = sourceName;
+            this.destinationName = destinationName;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+// Structured answer for one origin-destination query
+public final class RoutePlan {
+    private final Route route;
+    private final int[] hopLines;
+    private final int interchanges;
+    private final int estimatedMinutes;
+    private final Journey journey;
+
+    RoutePlan(Route route, int[] hopLines, int interchanges, int estimatedMinutes, Journey journey) {
+        this.route = route;
+        this.hopLines = hopLines;
+        this.interchanges = interchanges;
+        this.estimatedMinutes = estimatedMinutes;
+        this.journey = journey;
+    }
+
+    public Route route() {
+        return route;
+    }
+
+    public boolean isFound() {
+        return route.isFound();
+    }
+
+    // Line ridden on each hop of the route, MetroLines.WALK for a transfer walk
+    public int[] hopLines() {
+        return hopLines.clone();
+    }
+
+    public int interchanges() {
+        return interchanges;
+    }
+
+    public int estimatedMinutes() {
+        return estimatedMinutes;
+    }
+
+    // Timetabled trains for this trip; not found outside service hours
+    public Journey journey() {
+        return journey;
+    }
+}
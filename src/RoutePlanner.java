@@ -0,0 +1,305 @@
+// Turns a route into the journey summary and step-by-step text shown to riders.
+// Shared by the JavaFX UI and the headless RouteServer; no JavaFX types in here.
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public final class RoutePlanner {
+    private final MetroNetwork network;
+
+    public RoutePlanner(MetroNetwork network) {
+        this.network = network;
+    }
+
+    public MetroNetwork network() {
+        return network;
+    }
+
+    // Searches (station, line) platforms so transfers and line changes are charged while the route is chosen,
+    // then times it against the timetable. Outside service hours the estimate falls back to 2 minutes per hop
+    // plus 5 per interchange.
+    public RoutePlan plan(int sourceNumber, int destinationNumber, LocalTime departure) {
+        MetroLines.LineRoute lineRoute = network.lines().search(sourceNumber, destinationNumber);
+        Route route = lineRoute.route();
+        Journey journey = network.timetable().earliestArrival(sourceNumber, destinationNumber,
+                departure.toSecondOfDay());
+        if (!route.isFound())
+            return new RoutePlan(route, new int[0], 0, 0, journey);
+
+        int[] hopLines = lineRoute.hopLines();
+        int interchanges = lineRoute.interchanges();
+        int estimatedTime;
+        if (journey.isFound()) {
+            estimatedTime = travelMinutes(journey.departure(), journey.arrival());
+        } else {
+            estimatedTime = estimateMinutes(route.length() - 1, interchanges);
+        }
+        return new RoutePlan(route, hopLines, interchanges, estimatedTime, journey);
+    }
+
+    // Up to k routes, each timed by riding its own stations through the timetable: plan()'s route first, then
+    // the shortest loopless others by track km
+    public List<RoutePlan> alternatives(int sourceNumber, int destinationNumber, LocalTime departure, int k) {
+        List<RoutePlan> plans = new ArrayList<>(k);
+        MetroLines.LineRoute planned = network.lines().search(sourceNumber, destinationNumber);
+        if (k < 1 || !planned.route().isFound())
+            return plans;
+        plans.add(timed(planned.route(), planned.hopLines(), planned.interchanges(), departure));
+        for (Route route : network.alternatives(sourceNumber, destinationNumber, k)) {
+            if (plans.size() == k)
+                break;
+            if (Arrays.equals(route.stations(), planned.route().stations()))
+                continue;
+            int[] hopLines = network.lines().hopLines(route.stations());
+            plans.add(timed(route, hopLines, MetroLines.interchanges(hopLines), departure));
+        }
+        return plans;
+    }
+
+    private RoutePlan timed(Route route, int[] hopLines, int interchanges, LocalTime departure) {
+        Journey journey = network.timetable().along(route.stations(), departure.toSecondOfDay());
+        int minutes = journey.isFound() ? travelMinutes(journey.departure(), journey.arrival())
+                : estimateMinutes(route.length() - 1, interchanges);
+        return new RoutePlan(route, hopLines, interchanges, minutes, journey);
+    }
+
+    // Alternatives side by side, one row each, with the station where each leaves the first route
+    public String renderAlternatives(List<RoutePlan> plans) {
+        StringBuilder result = new StringBuilder();
+        result.append("🔀 ALTERNATIVE ROUTES\n");
+        result.append("═".repeat(50)).append("\n");
+        result.append(String.format("%-3s %8s %10s %8s %8s %7s  %s%n", "#", "Stations", "Distance", "Changes", "Time",
+                "Arrive", "Via"));
+        Route first = plans.get(0).route();
+        for (int i = 0; i < plans.size(); i++) {
+            RoutePlan plan = plans.get(i);
+            Route route = plan.route();
+            String arrive = "--:--";
+            if (plan.journey().isFound()) {
+                int minute = plan.journey().arrival() / 60;
+                arrive = String.format("%02d:%02d", minute / 60 % 24, minute % 60);
+            }
+            String via = i == 0 ? "planned" : network.stationName(firstDifference(first, route));
+            result.append(String.format("%-3d %8d %7.2f km %8d %4d min %7s  %s%n", i + 1, route.length(),
+                    route.distance(), plan.interchanges(), plan.estimatedMinutes(), arrive, via));
+        }
+        return result.toString();
+    }
+
+    // Journeys that trade travel time against changes: fewest changes first, each later one arriving earlier
+    public List<Journey> tradeOffs(int sourceNumber, int destinationNumber, LocalTime departure) {
+        return network.raptor().paretoJourneys(sourceNumber, destinationNumber, departure.toSecondOfDay());
+    }
+
+    // Trade-offs side by side, one row each, with the stations where each boards another train
+    public String renderTradeOffs(List<Journey> journeys) {
+        StringBuilder result = new StringBuilder();
+        result.append("⚖️ FEWER CHANGES OR EARLIER ARRIVAL\n");
+        result.append("═".repeat(50)).append("\n");
+        result.append(String.format("%-8s %6s %7s %8s  %s%n", "Changes", "Leave", "Arrive", "Time", "Change at"));
+        for (Journey journey : journeys) {
+            StringBuilder changes = new StringBuilder();
+            boolean rode = false;
+            for (int leg = 0; leg < journey.legCount(); leg++) {
+                if (journey.isWalk(leg))
+                    continue;
+                if (rode)
+                    changes.append(changes.length() > 0 ? ", " : "").append(network.stationName(journey.legFrom(leg)));
+                rode = true;
+            }
+            result.append(String.format("%-8d %6s %7s %4d min  %s%n", journey.transfers(),
+                    clock(journey.departure()), clock(journey.arrival()),
+                    travelMinutes(journey.departure(), journey.arrival()), changes.length() > 0 ? changes : "-"));
+        }
+        return result.toString();
+    }
+
+    private static String clock(int second) {
+        int minute = second / 60;
+        return String.format("%02d:%02d", minute / 60 % 24, minute % 60);
+    }
+
+    // First station of route that is not on reference (the destination if route only reorders stations)
+    private static int firstDifference(Route reference, Route route) {
+        for (int i = 1; i < route.length(); i++) {
+            boolean onReference = false;
+            for (int j = 0; j < reference.length() && !onReference; j++) {
+                onReference = reference.station(j) == route.station(i);
+            }
+            if (!onReference)
+                return route.station(i);
+        }
+        return route.destination();
+    }
+
+    // Hops where a ride on a different line starts after an earlier ride; walks in between keep the last line
+    static List<Integer> interchangeHops(int[] hopLines) {
+        List<Integer> hops = new ArrayList<>();
+        int lastRide = MetroLines.WALK;
+        for (int i = 0; i < hopLines.length; i++) {
+            if (hopLines[i] == MetroLines.WALK)
+                continue;
+            if (lastRide != MetroLines.WALK && hopLines[i] != lastRide)
+                hops.add(i);
+            lastRide = hopLines[i];
+        }
+        return hops;
+    }
+
+    static int travelMinutes(int departureSecond, int arrivalSecond) {
+        return (arrivalSecond - departureSecond + 59) / 60;
+    }
+
+    static int estimateMinutes(int hops, int interchanges) {
+        return hops * 2 + interchanges * 5;
+    }
+
+    // Full route details as shown in the result area
+    public String render(RoutePlan plan, String sourceName, String destinationName, LocalTime now) {
+        Route route = plan.route();
+        int sourceNumber = route.source();
+        int destinationNumber = route.destination();
+        MetroLines lines = network.lines();
+        int[] hopLines = plan.hopLines();
+        int firstRide = firstRide(hopLines);
+        String startingLine = firstRide >= 0 ? lines.name(hopLines[firstRide]) : lines.describe(sourceNumber);
+
+        StringBuilder result = new StringBuilder();
+        result.append("🚇 PUNE METRO ROUTE DETAILS\n");
+        result.append("═".repeat(50)).append("\n\n");
+        result.append("📍 FROM: ").append(sourceName).append(" (Station #").append(sourceNumber).append(")\n");
+        result.append("📍 TO: ").append(destinationName).append(" (Station #").append(destinationNumber)
+                .append(")\n");
+        result.append("🎨 Starting Line: ").append(startingLine).append(" Line\n\n");
+
+        findPath(route, hopLines, now, result);
+        result.append(String.format("\n📏 Total Distance: %.2f Km\n", route.distance()));
+
+        int interchanges = plan.interchanges();
+        int estimatedTime = plan.estimatedMinutes();
+        result.append("🚉 Total Stations: ").append(route.length()).append("\n");
+        Journey journey = plan.journey();
+        if (journey.isFound()) {
+            int arrival = journey.arrival() / 60;
+            result.append(String.format("🏁 Arrival at %s: %02d:%02d%n", destinationName, arrival / 60 % 24,
+                    arrival % 60));
+        }
+        result.append("🔄 Interchanges: ").append(interchanges).append("\n");
+
+        if (estimatedTime >= 60) {
+            int hours = estimatedTime / 60;
+            int minutes = estimatedTime % 60;
+            result.append(String.format("🕒 Estimated Journey Time: %d hour%s %d minute%s\n",
+                    hours, (hours != 1 ? "s" : ""),
+                    minutes, (minutes != 1 ? "s" : "")));
+        } else {
+            result.append("🕒 Estimated Journey Time: ").append(estimatedTime).append(" minute")
+                    .append(estimatedTime != 1 ? "s" : "").append("\n");
+        }
+
+        if (interchanges > 0) {
+            result.append("⚠️ Note: Includes ").append(interchanges).append(" interchange");
+            result.append(interchanges > 1 ? "s" : "");
+            List<String> at = new ArrayList<>();
+            for (int hop : interchangeHops(hopLines)) {
+                String name = network.stationName(route.station(hop));
+                if (!at.contains(name))
+                    at.add(name);
+            }
+            result.append(" at ").append(String.join(", ", at));
+            result.append("\n");
+        }
+        result.append("\n").append("═".repeat(50)).append("\n");
+        result.append("💡 TIP: Watch the map for animated route highlighting!\n");
+        return result.toString();
+    }
+
+    // Minute of the day of the next metro from the route's first station, or -1 when none runs today
+    public int nextArrivalMinute(Route route, LocalTime now) {
+        if (route.length() < 2)
+            return -1;
+        int departure = network.timetable().nextDeparture(route.station(0), route.station(1), now.toSecondOfDay());
+        return departure < 0 ? -1 : departure / 60;
+    }
+
+    private static int firstRide(int[] hopLines) {
+        for (int i = 0; i < hopLines.length; i++) {
+            if (hopLines[i] != MetroLines.WALK)
+                return i;
+        }
+        return -1;
+    }
+
+    // Step-by-step path with the boarding direction, per-hop lines and interchange instructions
+    void findPath(Route route, int[] hopLines, LocalTime now, StringBuilder result) {
+        MetroLines lines = network.lines();
+        int[] correctPath = route.stations();
+        int count = correctPath.length;
+
+        if (count > 1) {
+            // Display ENHANCED time information
+            int hour = now.getHour();
+            int minute = now.getMinute();
+
+            result.append("🕐 CURRENT TIME: ").append(String.format("%02d:%02d", hour, minute)).append("\n");
+
+            int arrival = nextArrivalMinute(route, now);
+            if (arrival >= 0) { // Extended metro hours
+                result.append(String.format("🚇 Next Metro Arrival: %02d:%02d (%s)%n", arrival / 60, arrival % 60,
+                        arrival / 60 == hour ? "Today" : "Next train"));
+            } else {
+                result.append("⚠️ Metro Service: Currently UNAVAILABLE (Operates 6:00 AM - 11:00 PM)\n");
+            }
+
+            // The first train heads for the terminus of its line in the direction of travel
+            result.append("🧭 BOARDING DIRECTION: ");
+            int firstRide = firstRide(hopLines);
+            if (firstRide >= 0) {
+                int line = hopLines[firstRide];
+                int terminus = lines.terminus(line, correctPath[firstRide], correctPath[firstRide + 1]);
+                int towards = terminus >= 0 ? terminus : correctPath[count - 1];
+                result.append(String.format("Towards %s (%s Line)%n", network.stationName(towards), lines.name(line)));
+            } else {
+                result.append("Walk to ").append(network.stationName(correctPath[count - 1])).append("\n");
+            }
+        }
+
+        result.append("\n🗺️ DETAILED JOURNEY PATH:\n");
+        result.append("─".repeat(40)).append("\n");
+
+        StringBuilder pathVisual = new StringBuilder();
+        int lastRide = MetroLines.WALK;
+        int walkSeconds = 0;
+        for (int i = 0; i < count; i++) {
+            int hop = i < count - 1 ? hopLines[i] : MetroLines.WALK;
+            if (hop != MetroLines.WALK) {
+                // Walking over from another station, or changing platforms at this one
+                if (lastRide != MetroLines.WALK && hop != lastRide)
+                    result.append(interchange(correctPath[i], lastRide, hop,
+                            walkSeconds > 0 ? walkSeconds : MetroLines.LINE_CHANGE_SECONDS));
+                lastRide = hop;
+                walkSeconds = 0;
+            } else if (i < count - 1) {
+                walkSeconds += lines.transferSeconds(network.graph().edge(correctPath[i], correctPath[i + 1]));
+            }
+            // Add step number and station name
+            pathVisual.append(String.format("(%d) %s", i + 1, network.stationName(correctPath[i])));
+            if (i < count - 1) {
+                pathVisual.append("\n    ↓ (").append(lines.name(hop)).append(hop == MetroLines.WALK ? ")\n" : " Line)\n");
+            }
+        }
+
+        result.append(pathVisual.toString()).append("\n");
+    }
+
+    private String interchange(int station, int fromLine, int toLine, int walkSeconds) {
+        MetroLines lines = network.lines();
+        return String.format("\n🔄 INTERCHANGE at %s:\n" +
+                "   From: %s Line → To: %s Line\n" +
+                "   Walking time: ~%d minutes\n" +
+                "   Follow signs for %s Line platform\n\n",
+                network.stationName(station), lines.name(fromLine), lines.name(toLine), (walkSeconds + 59) / 60,
+                lines.name(toLine));
+    }
+}
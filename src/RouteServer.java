@@ -0,0 +1,478 @@
+// Headless JSON route API for kiosks and the mobile backend.
+// Built on the JDK's com.sun.net.httpserver with one virtual thread per request; never loads JavaFX.
+// Run with: java -cp bin RouteServer [port]   (needs Java 21+)
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public final class RouteServer {
+    static final int DEFAULT_PORT = 8080;
+    static final int DEFAULT_SUGGESTIONS = 5;
+    static final int MAX_SUGGESTIONS = 20;
+    static final int DEFAULT_ALTERNATIVES = 3;
+    static final int MAX_ALTERNATIVES = 10;
+
+    private final RoutePlanner planner;
+    private final RouteCache cache;
+    private final MetroNetwork network;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final byte[] stationsJson;
+
+    public RouteServer(RoutePlanner planner, InetSocketAddress address) throws IOException {
+        this.planner = planner;
+        this.cache = new RouteCache(planner);
+        this.network = planner.network();
+        this.server = HttpServer.create(address, 1024);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.stationsJson = stationsJson().getBytes(StandardCharsets.UTF_8);
+
+        server.setExecutor(executor);
+        server.createContext("/stations", get(exchange -> send(exchange, 200, stationsJson)));
+        server.createContext("/route", query(this::route));
+        server.createContext("/path", query(this::path));
+        server.createContext("/distance", query(this::distance));
+        server.createContext("/interchanges", query(this::interchanges));
+        server.createContext("/alternatives", query(this::alternatives));
+        server.createContext("/journeys", query(this::journeys));
+        server.createContext("/next-arrival", query(this::nextArrival));
+        server.createContext("/suggest", get(this::suggest));
+        server.createContext("/stats", get(this::stats));
+    }
+
+    public static void main(String[] args) throws IOException {
+        // Small JSON responses: don't let Nagle hold them back
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : Integer.getInteger("metro.server.port", DEFAULT_PORT);
+
+        MetroNetwork network = MetroNetwork.load();
+        // Every endpoint plans its own route; a mapped table is only warmed when one is configured and fits
+        if (MetroNetwork.routeTableFile != null && network.size() <= NextHopTable.MAX_NODES)
+            network.routeTable();
+        RouteServer server = new RouteServer(new RoutePlanner(network), new InetSocketAddress(port));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(1)));
+        server.start();
+        System.out.println("Pune Metro route API listening on port " + server.port());
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    // ===== HANDLERS =====
+
+    private void route(HttpExchange exchange, Query query) throws IOException {
+        RoutePlan plan = cache.plan(query.from, query.to, query.time);
+        if (!plan.isFound()) {
+            sendError(exchange, 404, "No route between the selected stations");
+            return;
+        }
+        Route route = plan.route();
+        StringBuilder json = new StringBuilder(64 + route.length() * 48);
+        json.append("{\"from\":");
+        appendStation(json, query.from);
+        json.append(",\"to\":");
+        appendStation(json, query.to);
+        json.append(",\"stations\":");
+        appendStations(json, route);
+        json.append(",\"distanceKm\":").append(route.distance());
+        json.append(",\"interchanges\":").append(plan.interchanges());
+        json.append(",\"estimatedMinutes\":").append(plan.estimatedMinutes());
+        json.append(",\"nextArrival\":");
+        appendTime(json, planner.nextArrivalMinute(route, query.time));
+        json.append(",\"arrival\":");
+        appendTime(json, plan.journey().isFound() ? plan.journey().arrival() / 60 % (24 * 60) : -1);
+        json.append('}');
+        send(exchange, 200, json);
+    }
+
+    private void path(HttpExchange exchange, Query query) throws IOException {
+        Route route = cache.plan(query.from, query.to, query.time).route();
+        if (!route.isFound()) {
+            sendError(exchange, 404, "No route between the selected stations");
+            return;
+        }
+        StringBuilder json = new StringBuilder(16 + route.length() * 48);
+        json.append("{\"stations\":");
+        appendStations(json, route);
+        json.append('}');
+        send(exchange, 200, json);
+    }
+
+    private void distance(HttpExchange exchange, Query query) throws IOException {
+        // Same plan as /route, so both report the same kilometres for a pair
+        Route route = cache.plan(query.from, query.to, query.time).route();
+        if (!route.isFound()) {
+            sendError(exchange, 404, "No route between the selected stations");
+            return;
+        }
+        send(exchange, 200, new StringBuilder(32).append("{\"distanceKm\":").append(route.distance()).append('}'));
+    }
+
+    private void interchanges(HttpExchange exchange, Query query) throws IOException {
+        RoutePlan plan = cache.plan(query.from, query.to, query.time);
+        if (!plan.isFound()) {
+            sendError(exchange, 404, "No route between the selected stations");
+            return;
+        }
+        send(exchange, 200, new StringBuilder(32).append("{\"interchanges\":").append(plan.interchanges()).append('}'));
+    }
+
+    private void nextArrival(HttpExchange exchange, Query query) throws IOException {
+        Route route = cache.plan(query.from, query.to, query.time).route();
+        if (!route.isFound()) {
+            sendError(exchange, 404, "No route between the selected stations");
+            return;
+        }
+        StringBuilder json = new StringBuilder(96);
+        json.append("{\"from\":");
+        appendStation(json, query.from);
+        json.append(",\"nextArrival\":");
+        appendTime(json, planner.nextArrivalMinute(route, query.time));
+        json.append('}');
+        send(exchange, 200, json);
+    }
+
+    // /suggest?q=<typed text>&k=<count>: ranked station names for typeahead and typo correction
+    private void suggest(HttpExchange exchange) throws IOException {
+        Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+        String q = params.get("q");
+        if (q == null) {
+            sendError(exchange, 400, "Missing 'q'");
+            return;
+        }
+        int k;
+        try {
+            k = count(params.get("k"), DEFAULT_SUGGESTIONS, MAX_SUGGESTIONS);
+        } catch (NumberFormatException e) {
+            sendError(exchange, 400, "'k' must be a number");
+            return;
+        }
+        if (k < 1) {
+            sendError(exchange, 400, "'k' must be at least 1");
+            return;
+        }
+        List<StationSuggester.Suggestion> suggestions = network.suggest(q, k);
+        StringBuilder json = new StringBuilder(32 + suggestions.size() * 64).append("{\"suggestions\":");
+        appendSuggestions(json, suggestions);
+        send(exchange, 200, json.append('}'));
+    }
+
+    // /alternatives?from=&to=&k=: up to k loopless routes, /route's first, each timed along its own stations
+    private void alternatives(HttpExchange exchange, Query query) throws IOException {
+        int k;
+        try {
+            k = count(query.params.get("k"), DEFAULT_ALTERNATIVES, MAX_ALTERNATIVES);
+        } catch (NumberFormatException e) {
+            sendError(exchange, 400, "'k' must be a number");
+            return;
+        }
+        if (k < 1) {
+            sendError(exchange, 400, "'k' must be at least 1");
+            return;
+        }
+        List<RoutePlan> plans = planner.alternatives(query.from, query.to, query.time, k);
+        if (plans.isEmpty()) {
+            sendError(exchange, 404, "No route between the selected stations");
+            return;
+        }
+        StringBuilder json = new StringBuilder(64 + plans.size() * 512);
+        json.append("{\"from\":");
+        appendStation(json, query.from);
+        json.append(",\"to\":");
+        appendStation(json, query.to);
+        json.append(",\"routes\":[");
+        for (int i = 0; i < plans.size(); i++) {
+            RoutePlan plan = plans.get(i);
+            if (i > 0)
+                json.append(',');
+            json.append("{\"stations\":");
+            appendStations(json, plan.route());
+            json.append(",\"distanceKm\":").append(plan.route().distance());
+            json.append(",\"interchanges\":").append(plan.interchanges());
+            json.append(",\"estimatedMinutes\":").append(plan.estimatedMinutes());
+            json.append(",\"arrival\":");
+            appendTime(json, plan.journey().isFound() ? plan.journey().arrival() / 60 % (24 * 60) : -1);
+            json.append('}');
+        }
+        send(exchange, 200, json.append("]}"));
+    }
+
+    // /journeys?from=&to=&at=: the timetable journeys no other one beats on both arrival and changes,
+    // fewest changes first
+    private void journeys(HttpExchange exchange, Query query) throws IOException {
+        List<Journey> journeys = planner.tradeOffs(query.from, query.to, query.time);
+        if (journeys.isEmpty()) {
+            sendError(exchange, 404, "No train between the selected stations today");
+            return;
+        }
+        StringBuilder json = new StringBuilder(64 + journeys.size() * 256);
+        json.append("{\"from\":");
+        appendStation(json, query.from);
+        json.append(",\"to\":");
+        appendStation(json, query.to);
+        json.append(",\"journeys\":[");
+        for (int i = 0; i < journeys.size(); i++) {
+            Journey journey = journeys.get(i);
+            if (i > 0)
+                json.append(',');
+            json.append("{\"changes\":").append(journey.transfers());
+            json.append(",\"departure\":");
+            appendTime(json, journey.departure() / 60 % (24 * 60));
+            json.append(",\"arrival\":");
+            appendTime(json, journey.arrival() / 60 % (24 * 60));
+            json.append(",\"legs\":[");
+            for (int leg = 0; leg < journey.legCount(); leg++) {
+                if (leg > 0)
+                    json.append(',');
+                json.append("{\"from\":");
+                appendStation(json, journey.legFrom(leg));
+                json.append(",\"to\":");
+                appendStation(json, journey.legTo(leg));
+                json.append(",\"departure\":");
+                appendTime(json, journey.legDeparture(leg) / 60 % (24 * 60));
+                json.append(",\"arrival\":");
+                appendTime(json, journey.legArrival(leg) / 60 % (24 * 60));
+                json.append(",\"walk\":").append(journey.isWalk(leg)).append('}');
+            }
+            json.append("]}");
+        }
+        send(exchange, 200, json.append("]}"));
+    }
+
+    // Route cache counters for monitoring
+    private void stats(HttpExchange exchange) throws IOException {
+        StringBuilder json = new StringBuilder(160);
+        json.append("{\"cache\":{\"size\":").append(cache.size());
+        json.append(",\"hits\":").append(cache.hits());
+        json.append(",\"misses\":").append(cache.misses());
+        json.append(",\"textHits\":").append(cache.textHits());
+        json.append(",\"textMisses\":").append(cache.textMisses());
+        json.append(",\"evictions\":").append(cache.evictions()).append("}}");
+        send(exchange, 200, json);
+    }
+
+    // ===== PLUMBING =====
+
+    private interface QueryHandler {
+        void handle(HttpExchange exchange, Query query) throws IOException;
+    }
+
+    private static final class Query {
+        final int from;
+        final int to;
+        final LocalTime time;
+        final Map<String, String> params;
+
+        Query(int from, int to, LocalTime time, Map<String, String> params) {
+            this.from = from;
+            this.to = to;
+            this.time = time;
+            this.params = params;
+        }
+    }
+
+    private static HttpHandler get(HttpHandler handler) {
+        return exchange -> {
+            try (exchange) {
+                if (!"GET".equals(exchange.getRequestMethod())) {
+                    exchange.getResponseHeaders().set("Allow", "GET");
+                    sendError(exchange, 405, "Only GET is supported");
+                    return;
+                }
+                handler.handle(exchange);
+            } catch (RuntimeException e) {
+                sendError(exchange, 500, "Internal error");
+            }
+        };
+    }
+
+    private HttpHandler query(QueryHandler handler) {
+        return get(exchange -> {
+            Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+            int from = resolveStation(params.get("from"));
+            int to = resolveStation(params.get("to"));
+            if (from < 0 || to < 0) {
+                sendUnknownStation(exchange, from < 0 ? "from" : "to", params.get(from < 0 ? "from" : "to"));
+                return;
+            }
+            LocalTime time = LocalTime.now();
+            String at = params.get("at");
+            if (at != null) {
+                try {
+                    time = LocalTime.parse(at);
+                } catch (DateTimeParseException e) {
+                    sendError(exchange, 400, "'at' must look like HH:mm");
+                    return;
+                }
+            }
+            handler.handle(exchange, new Query(from, to, time, params));
+        });
+    }
+
+    // Accepts a station number or any name/alias the network knows
+    private int resolveStation(String value) {
+        if (value == null || value.isEmpty())
+            return -1;
+        boolean numeric = true;
+        for (int i = 0; i < value.length() && numeric; i++) {
+            numeric = Character.isDigit(value.charAt(i));
+        }
+        if (numeric && value.length() < 10) {
+            int index = Integer.parseInt(value);
+            return index < network.size() ? index : -1;
+        }
+        return network.stationIndex(value);
+    }
+
+    // Optional count parameter, capped at max
+    private static int count(String value, int fallback, int max) {
+        return value == null ? fallback : Math.min(Integer.parseInt(value), max);
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null)
+            return params;
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    private String stationsJson() {
+        StringBuilder json = new StringBuilder("{\"stations\":[");
+        for (int i = 0; i < network.size(); i++) {
+            if (i > 0)
+                json.append(',');
+            json.append("{\"id\":").append(i).append(",\"name\":");
+            appendString(json, network.stationName(i));
+            json.append(",\"line\":");
+            appendString(json, network.lines().describe(i));
+            json.append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    private void appendStation(StringBuilder json, int station) {
+        json.append("{\"id\":").append(station).append(",\"name\":");
+        appendString(json, network.stationName(station));
+        json.append('}');
+    }
+
+    private void appendStations(StringBuilder json, Route route) {
+        json.append('[');
+        for (int i = 0; i < route.length(); i++) {
+            if (i > 0)
+                json.append(',');
+            appendStation(json, route.station(i));
+        }
+        json.append(']');
+    }
+
+    private static void appendSuggestions(StringBuilder json, List<StationSuggester.Suggestion> suggestions) {
+        json.append('[');
+        for (int i = 0; i < suggestions.size(); i++) {
+            StationSuggester.Suggestion suggestion = suggestions.get(i);
+            if (i > 0)
+                json.append(',');
+            json.append("{\"id\":").append(suggestion.station()).append(",\"name\":");
+            appendString(json, suggestion.name());
+            json.append(",\"score\":").append(suggestion.score()).append('}');
+        }
+        json.append(']');
+    }
+
+    private static void appendTime(StringBuilder json, int minuteOfDay) {
+        if (minuteOfDay < 0) {
+            json.append("null");
+            return;
+        }
+        int hour = minuteOfDay / 60;
+        int minute = minuteOfDay % 60;
+        json.append('"').append((char) ('0' + hour / 10)).append((char) ('0' + hour % 10)).append(':')
+                .append((char) ('0' + minute / 10)).append((char) ('0' + minute % 10)).append('"');
+    }
+
+    static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        appendString(json, message);
+        send(exchange, status, json.append('}'));
+    }
+
+    // 400 for an unresolvable 'from'/'to', with the closest names so clients can offer a correction
+    private void sendUnknownStation(HttpExchange exchange, String param, String value) throws IOException {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        if (value == null || value.isEmpty()) {
+            appendString(json, "Missing station in '" + param + "'");
+            send(exchange, 400, json.append('}'));
+            return;
+        }
+        appendString(json, "Unknown station in '" + param + "'");
+        json.append(",\"suggestions\":");
+        appendSuggestions(json, network.suggest(value, DEFAULT_SUGGESTIONS));
+        send(exchange, 400, json.append('}'));
+    }
+
+    private static void send(HttpExchange exchange, int status, CharSequence json) throws IOException {
+        send(exchange, status, json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,637 @@
+// Thread-safe routing over an immutable MetroGraph.
+// All per-query state lives in a SearchContext that is reused per thread, so queries can run in parallel.
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public final class RoutingEngine {
+    private final MetroGraph graph;
+    private final ThreadLocal<SearchContext> contexts;
+    private volatile MetroGraph reverse; // edges flipped, for distances towards a destination
+    private final FloatBuffer latitudes;
+    private final FloatBuffer longitudes;
+    // A* heuristic: x, y, z per node on a sphere scaled so that no edge is shorter than the straight line
+    // between its ends. Built on the first A* query; NO_POINTS without coordinates for every station, and
+    // A* then searches like Dijkstra
+    private volatile float[] points;
+    private static final float[] NO_POINTS = new float[0];
+
+    public RoutingEngine(MetroGraph graph) {
+        this(graph, null, null);
+    }
+
+    // Latitudes and longitudes in degrees, NaN where unknown; they only steer A*, never change a route's length
+    public RoutingEngine(MetroGraph graph, FloatBuffer latitudes, FloatBuffer longitudes) {
+        this.graph = graph;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.contexts = ThreadLocal.withInitial(() -> new SearchContext(graph.size()));
+    }
+
+    public MetroGraph graph() {
+        return graph;
+    }
+
+    public int size() {
+        return graph.size();
+    }
+
+    // Shortest route using the heap-based search
+    public Route route(int source, int destination) {
+        checkNode(source);
+        checkNode(destination);
+        SearchContext ctx = contexts.get();
+        search(ctx, source, destination);
+        return ctx.toRoute(source, destination);
+    }
+
+    // Shortest route by A* towards the destination: same length as route(), usually far fewer nodes settled
+    public Route routeAStar(int source, int destination) {
+        checkNode(source);
+        checkNode(destination);
+        SearchContext ctx = contexts.get();
+        ctx.reset();
+        IndexedMinHeap queue = ctx.queue;
+        float[] points = points();
+        int t = destination * 3;
+
+        ctx.reach(source, 0, -1);
+        queue.insertOrDecrease(source, 0);
+        while (!queue.isEmpty()) {
+            int minNode = queue.poll();
+            ctx.settled++;
+            if (minNode == destination)
+                break;
+
+            float base = ctx.dist[minNode];
+            for (int e = graph.firstEdge(minNode), end = graph.endEdge(minNode); e < end; e++) {
+                int k = graph.target(e);
+                float candidate = base + graph.weight(e);
+                if (candidate < ctx.distance(k)) {
+                    ctx.reach(k, candidate, minNode);
+                    float estimate = 0;
+                    if (points != NO_POINTS) {
+                        float dx = points[k * 3] - points[t];
+                        float dy = points[k * 3 + 1] - points[t + 1];
+                        float dz = points[k * 3 + 2] - points[t + 2];
+                        estimate = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+                    }
+                    queue.insertOrDecrease(k, candidate + estimate);
+                }
+            }
+        }
+        return ctx.toRoute(source, destination);
+    }
+
+    // Shortest route by searching forward from the source and backward from the destination at once,
+    // stopping when the two frontiers together cannot improve on the best meeting point
+    public Route routeBidirectional(int source, int destination) {
+        checkNode(source);
+        checkNode(destination);
+        MetroGraph backward = reverse();
+        SearchContext ctx = contexts.get();
+        ctx.reset();
+        IndexedMinHeap forwardQueue = ctx.queue;
+        IndexedMinHeap backwardQueue = ctx.backQueue;
+
+        ctx.reach(source, 0, -1);
+        forwardQueue.insertOrDecrease(source, 0);
+        ctx.reachBack(destination, 0, -1, -1);
+        backwardQueue.insertOrDecrease(destination, 0);
+        float best = source == destination ? 0 : Float.MAX_VALUE;
+        int meet = source == destination ? source : -1;
+
+        while (!forwardQueue.isEmpty() && !backwardQueue.isEmpty()) {
+            float forwardKey = forwardQueue.peekKey();
+            float backwardKey = backwardQueue.peekKey();
+            if (forwardKey + backwardKey >= best)
+                break;
+            ctx.settled++;
+            if (forwardKey <= backwardKey) {
+                int u = forwardQueue.poll();
+                float base = ctx.dist[u];
+                for (int e = graph.firstEdge(u), end = graph.endEdge(u); e < end; e++) {
+                    int v = graph.target(e);
+                    float candidate = base + graph.weight(e);
+                    if (candidate < ctx.distance(v)) {
+                        ctx.reach(v, candidate, u);
+                        forwardQueue.insertOrDecrease(v, candidate);
+                        float through = candidate + ctx.backDistance(v);
+                        if (through < best) {
+                            best = through;
+                            meet = v;
+                        }
+                    }
+                }
+            } else {
+                int u = backwardQueue.poll();
+                float base = ctx.backDist[u];
+                for (int e = backward.firstEdge(u), end = backward.endEdge(u); e < end; e++) {
+                    int v = backward.target(e);
+                    float candidate = base + backward.weight(e);
+                    if (candidate < ctx.backDistance(v)) {
+                        ctx.reachBack(v, candidate, u, e);
+                        backwardQueue.insertOrDecrease(v, candidate);
+                        float through = candidate + ctx.distance(v);
+                        if (through < best) {
+                            best = through;
+                            meet = v;
+                        }
+                    }
+                }
+            }
+        }
+        if (meet < 0)
+            return Route.notFound(source, destination);
+
+        // Source to meeting point along forward predecessors, then on to the destination along backward ones
+        int count = 0;
+        for (int node = meet; node != -1; node = ctx.predecessor[node]) {
+            ctx.pathBuffer[count++] = node;
+        }
+        int forwardCount = count;
+        int[] stations = new int[forwardCount - 1 + pathLength(ctx.backPredecessor, meet)];
+        for (int i = 0; i < forwardCount; i++) {
+            stations[i] = ctx.pathBuffer[forwardCount - 1 - i];
+        }
+        // Summed from the source like the one-way searches do, so equal routes report bit-identical lengths, and
+        // over the edges the backward search relaxed, since parallel edges can join the same two stations
+        float distance = ctx.dist[meet];
+        int at = forwardCount;
+        for (int node = ctx.backPredecessor[meet]; node != -1; node = ctx.backPredecessor[node]) {
+            distance += backward.weight(ctx.backEdge[stations[at - 1]]);
+            stations[at++] = node;
+        }
+        return new Route(source, destination, stations, distance);
+    }
+
+    private static int pathLength(int[] next, int from) {
+        int length = 1;
+        for (int node = next[from]; node != -1; node = next[node]) {
+            length++;
+        }
+        return length;
+    }
+
+    // Nodes settled by the calling thread's last route(), routeAStar() or routeBidirectional()
+    public int lastSettledCount() {
+        return contexts.get().settled;
+    }
+
+    // Shortest route using the original O(V^2) linear scan, kept as a reference for benchmarks
+    public Route routeReference(int source, int destination) {
+        checkNode(source);
+        checkNode(destination);
+        SearchContext ctx = contexts.get();
+        searchLinearScan(ctx, source, destination);
+        return ctx.toRoute(source, destination);
+    }
+
+    // Runs a full single-source search and reports every reachable node in settle order,
+    // so a node's predecessor is always reported before the node itself
+    public void shortestPathTree(int source, TreeVisitor visitor) {
+        checkNode(source);
+        SearchContext ctx = contexts.get();
+        ctx.reset();
+        IndexedMinHeap queue = ctx.queue;
+
+        ctx.reach(source, 0, -1);
+        queue.insertOrDecrease(source, 0);
+
+        while (!queue.isEmpty()) {
+            int minNode = queue.poll();
+            float base = ctx.dist[minNode];
+            visitor.settled(minNode, ctx.predecessor[minNode], base);
+
+            for (int e = graph.firstEdge(minNode), end = graph.endEdge(minNode); e < end; e++) {
+                int k = graph.target(e);
+                float candidate = base + graph.weight(e);
+                if (candidate < ctx.distance(k)) {
+                    ctx.reach(k, candidate, minNode);
+                    queue.insertOrDecrease(k, candidate);
+                }
+            }
+        }
+    }
+
+    // Up to k loopless routes in order of distance, shortest first (Yen's algorithm); empty when unreachable.
+    // Every spur search is an A* towards the destination guided by exact distances in the unrestricted
+    // graph, and stops as soon as it cannot beat the candidates already queued.
+    public List<Route> kShortestRoutes(int source, int destination, int k) {
+        checkNode(source);
+        checkNode(destination);
+        if (k < 1)
+            throw new IllegalArgumentException("Need at least one route, got k=" + k);
+        SearchContext ctx = contexts.get();
+        List<Route> accepted = new ArrayList<>(k);
+        search(ctx, source, destination);
+        Route first = ctx.toRoute(source, destination);
+        if (!first.isFound())
+            return accepted;
+        accepted.add(first);
+        if (k == 1 || source == destination)
+            return accepted;
+
+        distancesTo(ctx, destination);
+        List<Route> candidates = new ArrayList<>();
+        int[] usedNext = new int[k];
+        while (accepted.size() < k) {
+            Route last = accepted.get(accepted.size() - 1);
+            int needed = k - accepted.size();
+            float rootCost = 0;
+            ctx.clearBans();
+            for (int j = 0; j < last.length() - 1; j++) {
+                int spur = last.station(j);
+                if (j > 0) {
+                    rootCost += graph.weight(last.station(j - 1), spur);
+                    ctx.ban(last.station(j - 1)); // keeps the rest of the route loopless
+                }
+                // Routes already accepted with this root must leave the spur node some other way
+                int used = 0;
+                for (Route route : accepted) {
+                    if (route.length() > j + 1 && sharesPrefix(route, last, j))
+                        usedNext[used++] = route.station(j + 1);
+                }
+                float bound = candidates.size() >= needed ? candidates.get(needed - 1).distance() : Float.MAX_VALUE;
+                if (ctx.toTarget[spur] == Float.MAX_VALUE || rootCost + ctx.toTarget[spur] >= bound)
+                    continue;
+                if (!spurSearch(ctx, spur, destination, rootCost, bound, usedNext, used))
+                    continue;
+                Route candidate = join(ctx, last, j, destination);
+                if (!containsPath(accepted, candidate) && !containsPath(candidates, candidate))
+                    insertCandidate(candidates, candidate, needed);
+            }
+            if (candidates.isEmpty())
+                break;
+            accepted.add(candidates.remove(0));
+        }
+        return accepted;
+    }
+
+    // Fills ctx.toTarget with every node's distance to destination, by a full search over the reversed graph
+    private void distancesTo(SearchContext ctx, int destination) {
+        MetroGraph reversed = reverse();
+        float[] out = ctx.toTarget;
+        Arrays.fill(out, Float.MAX_VALUE);
+        ctx.reset();
+        IndexedMinHeap queue = ctx.queue;
+        ctx.reach(destination, 0, -1);
+        queue.insertOrDecrease(destination, 0);
+        while (!queue.isEmpty()) {
+            int u = queue.poll();
+            float base = ctx.dist[u];
+            out[u] = base;
+            for (int e = reversed.firstEdge(u), end = reversed.endEdge(u); e < end; e++) {
+                int v = reversed.target(e);
+                float candidate = base + reversed.weight(e);
+                if (candidate < ctx.distance(v)) {
+                    ctx.reach(v, candidate, u);
+                    queue.insertOrDecrease(v, candidate);
+                }
+            }
+        }
+    }
+
+    // A* from the spur node avoiding banned nodes and the used first hops; false once no path under bound is left
+    private boolean spurSearch(SearchContext ctx, int spur, int destination, float rootCost, float bound,
+            int[] usedNext, int used) {
+        ctx.reset();
+        IndexedMinHeap queue = ctx.queue;
+        float[] toTarget = ctx.toTarget;
+        ctx.reach(spur, 0, -1);
+        queue.insertOrDecrease(spur, toTarget[spur]);
+
+        while (!queue.isEmpty()) {
+            if (rootCost + queue.peekKey() >= bound)
+                return false;
+            int u = queue.poll();
+            if (u == destination)
+                return true;
+            float base = ctx.dist[u];
+            for (int e = graph.firstEdge(u), end = graph.endEdge(u); e < end; e++) {
+                int v = graph.target(e);
+                if (ctx.isBanned(v) || toTarget[v] == Float.MAX_VALUE || (u == spur && contains(usedNext, used, v)))
+                    continue;
+                float candidate = base + graph.weight(e);
+                if (candidate < ctx.distance(v)) {
+                    ctx.reach(v, candidate, u);
+                    queue.insertOrDecrease(v, candidate + toTarget[v]);
+                }
+            }
+        }
+        return false;
+    }
+
+    // Root of last up to (excluding) index j, then the spur path found by the last spurSearch
+    private Route join(SearchContext ctx, Route last, int j, int destination) {
+        int count = 0;
+        for (int node = destination; node != -1; node = ctx.predecessor[node]) {
+            ctx.pathBuffer[count++] = node;
+        }
+        int[] stations = new int[j + count];
+        for (int i = 0; i < j; i++) {
+            stations[i] = last.station(i);
+        }
+        for (int i = 0; i < count; i++) {
+            stations[j + i] = ctx.pathBuffer[count - 1 - i];
+        }
+        float distance = 0;
+        for (int i = 1; i < stations.length; i++) {
+            distance += graph.weight(stations[i - 1], stations[i]);
+        }
+        return new Route(last.source(), destination, stations, distance);
+    }
+
+    private static boolean sharesPrefix(Route a, Route b, int j) {
+        for (int i = 0; i <= j; i++) {
+            if (a.station(i) != b.station(i))
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean containsPath(List<Route> routes, Route route) {
+        for (Route other : routes) {
+            if (other.length() == route.length() && sharesPrefix(other, route, route.length() - 1))
+                return true;
+        }
+        return false;
+    }
+
+    // Keeps candidates sorted by distance, then by fewer stations, and no longer than the routes still needed
+    private static void insertCandidate(List<Route> candidates, Route candidate, int needed) {
+        int at = candidates.size();
+        while (at > 0) {
+            Route before = candidates.get(at - 1);
+            if (before.distance() < candidate.distance()
+                    || (before.distance() == candidate.distance() && before.length() <= candidate.length()))
+                break;
+            at--;
+        }
+        if (at >= needed)
+            return;
+        candidates.add(at, candidate);
+        if (candidates.size() > needed)
+            candidates.remove(candidates.size() - 1);
+    }
+
+    private static boolean contains(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value)
+                return true;
+        }
+        return false;
+    }
+
+    // Lazy like reverse(), so opening a network never walks its edges; racing threads at worst both build it
+    private float[] points() {
+        float[] built = points;
+        if (built == null) {
+            built = latitudes == null ? null : heuristicPoints(graph, latitudes, longitudes);
+            if (built == null)
+                built = NO_POINTS;
+            points = built;
+        }
+        return built;
+    }
+
+    private MetroGraph reverse() {
+        MetroGraph reversed = reverse;
+        if (reversed == null) {
+            MetroGraph.Builder b = MetroGraph.builder(graph.size());
+            for (int u = 0; u < graph.size(); u++) {
+                for (int e = graph.firstEdge(u), end = graph.endEdge(u); e < end; e++) {
+                    b.addEdge(graph.target(e), u, graph.weight(e));
+                }
+            }
+            reversed = b.build();
+            reverse = reversed;
+        }
+        return reversed;
+    }
+
+    public interface TreeVisitor {
+        void settled(int node, int predecessor, float distance);
+    }
+
+    private void search(SearchContext ctx, int source, int destination) {
+        ctx.reset();
+        IndexedMinHeap queue = ctx.queue;
+
+        ctx.reach(source, 0, -1);
+        queue.insertOrDecrease(source, 0);
+
+        while (!queue.isEmpty()) {
+            int minNode = queue.poll();
+            ctx.settled++;
+            if (minNode == destination)
+                break;
+
+            float base = ctx.dist[minNode];
+            for (int e = graph.firstEdge(minNode), end = graph.endEdge(minNode); e < end; e++) {
+                int k = graph.target(e);
+                float candidate = base + graph.weight(e);
+                if (candidate < ctx.distance(k)) {
+                    ctx.reach(k, candidate, minNode);
+                    queue.insertOrDecrease(k, candidate);
+                }
+            }
+        }
+    }
+
+    private void searchLinearScan(SearchContext ctx, int source, int destination) {
+        int n = graph.size();
+        float[] dist = ctx.dist;
+        boolean[] visited = ctx.visited;
+        Arrays.fill(dist, Float.MAX_VALUE);
+        Arrays.fill(ctx.predecessor, -1);
+        Arrays.fill(visited, false);
+        ctx.reset();
+        for (int i = 0; i < n; i++) {
+            ctx.stamp[i] = ctx.generation;
+        }
+
+        dist[source] = 0;
+
+        for (int j = 0; j < n; j++) {
+            int minNode = minDistanceNode(dist, visited);
+            if (minNode == -1)
+                break;
+
+            visited[minNode] = true;
+
+            for (int e = graph.firstEdge(minNode), end = graph.endEdge(minNode); e < end; e++) {
+                int k = graph.target(e);
+                float w = graph.weight(e);
+                if (!visited[k] && dist[minNode] + w < dist[k]) {
+                    ctx.predecessor[k] = minNode;
+                    dist[k] = dist[minNode] + w;
+                }
+            }
+        }
+    }
+
+    public static int minDistanceNode(float[] dist, boolean[] visited) {
+        float min = Float.MAX_VALUE;
+        int minNode = -1;
+
+        for (int i = 0; i < dist.length; i++) {
+            if (!visited[i] && dist[i] < min) {
+                min = dist[i];
+                minNode = i;
+            }
+        }
+        return minNode;
+    }
+
+    // Unit-sphere points centred on their mean (so floats keep city-scale precision), scaled by the smallest
+    // edge weight to chord ratio. A chord never exceeds the great-circle distance, and the scale keeps every
+    // edge at least as long as its scaled chord, so the heuristic is admissible and consistent.
+    private static float[] heuristicPoints(MetroGraph graph, FloatBuffer latitudes, FloatBuffer longitudes) {
+        int n = graph.size();
+        if (n == 0)
+            return null;
+        double[] xyz = new double[3 * n];
+        double[] mean = new double[3];
+        for (int i = 0; i < n; i++) {
+            float lat = latitudes.get(i);
+            float lon = longitudes.get(i);
+            if (Float.isNaN(lat) || Float.isNaN(lon))
+                return null;
+            double phi = Math.toRadians(lat);
+            double lambda = Math.toRadians(lon);
+            xyz[i * 3] = Math.cos(phi) * Math.cos(lambda);
+            xyz[i * 3 + 1] = Math.cos(phi) * Math.sin(lambda);
+            xyz[i * 3 + 2] = Math.sin(phi);
+            for (int c = 0; c < 3; c++) {
+                mean[c] += xyz[i * 3 + c] / n;
+            }
+        }
+        double scale = Double.MAX_VALUE;
+        for (int u = 0; u < n; u++) {
+            for (int e = graph.firstEdge(u), end = graph.endEdge(u); e < end; e++) {
+                int v = graph.target(e);
+                double dx = xyz[u * 3] - xyz[v * 3];
+                double dy = xyz[u * 3 + 1] - xyz[v * 3 + 1];
+                double dz = xyz[u * 3 + 2] - xyz[v * 3 + 2];
+                double chord = Math.sqrt(dx * dx + dy * dy + dz * dz);
+                if (chord > 0)
+                    scale = Math.min(scale, graph.weight(e) / chord);
+            }
+        }
+        if (scale == Double.MAX_VALUE)
+            return null;
+        scale *= 0.999; // headroom for float rounding in the search
+        float[] points = new float[3 * n];
+        for (int i = 0; i < 3 * n; i++) {
+            points[i] = (float) ((xyz[i] - mean[i % 3]) * scale);
+        }
+        return points;
+    }
+
+    private void checkNode(int node) {
+        if (node < 0 || node >= graph.size())
+            throw new IllegalArgumentException("Unknown station index: " + node);
+    }
+
+    // Per-thread scratch buffers. A generation stamp marks which entries belong to the
+    // current query, so a search that exits early does not pay O(V) to reset them.
+    static final class SearchContext {
+        final float[] dist;
+        final int[] predecessor;
+        final int[] stamp;
+        final boolean[] visited;
+        final IndexedMinHeap queue;
+        final int[] pathBuffer;
+        final float[] toTarget; // k-shortest: exact distance to the destination, the A* heuristic
+        final int[] banStamp; // k-shortest: nodes on the current root path
+        final float[] backDist; // bidirectional: distances to the destination, the next node towards it
+        final int[] backPredecessor;
+        final int[] backEdge; // and the reversed-graph edge that leads there
+        final int[] backStamp;
+        final IndexedMinHeap backQueue;
+        int generation;
+        int banGeneration;
+        int settled;
+
+        SearchContext(int n) {
+            dist = new float[n];
+            predecessor = new int[n];
+            stamp = new int[n];
+            visited = new boolean[n];
+            queue = new IndexedMinHeap(n);
+            pathBuffer = new int[n];
+            toTarget = new float[n];
+            banStamp = new int[n];
+            backDist = new float[n];
+            backPredecessor = new int[n];
+            backEdge = new int[n];
+            backStamp = new int[n];
+            backQueue = new IndexedMinHeap(n);
+        }
+
+        void reset() {
+            queue.clear();
+            backQueue.clear();
+            settled = 0;
+            if (++generation == 0) {
+                Arrays.fill(stamp, 0);
+                Arrays.fill(backStamp, 0);
+                generation = 1;
+            }
+        }
+
+        void clearBans() {
+            if (++banGeneration == 0) {
+                Arrays.fill(banStamp, 0);
+                banGeneration = 1;
+            }
+        }
+
+        void ban(int node) {
+            banStamp[node] = banGeneration;
+        }
+
+        boolean isBanned(int node) {
+            return banStamp[node] == banGeneration;
+        }
+
+        float distance(int node) {
+            return stamp[node] == generation ? dist[node] : Float.MAX_VALUE;
+        }
+
+        void reach(int node, float distance, int from) {
+            stamp[node] = generation;
+            dist[node] = distance;
+            predecessor[node] = from;
+        }
+
+        float backDistance(int node) {
+            return backStamp[node] == generation ? backDist[node] : Float.MAX_VALUE;
+        }
+
+        void reachBack(int node, float distance, int next, int edge) {
+            backStamp[node] = generation;
+            backDist[node] = distance;
+            backPredecessor[node] = next;
+            backEdge[node] = edge;
+        }
+
+        Route toRoute(int source, int destination) {
+            float total = distance(destination);
+            if (total == Float.MAX_VALUE)
+                return Route.notFound(source, destination);
+
+            int count = 0;
+            for (int current = destination; current != -1; current = predecessor[current]) {
+                pathBuffer[count++] = current;
+            }
+            int[] stations = new int[count];
+            for (int i = 0; i < count; i++) {
+                stations[i] = pathBuffer[count - 1 - i];
+            }
+            return new Route(source, destination, stations, total);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+// Uniform grid over axis-aligned boxes, for hit-testing and culling on the map canvas.
+// Cells hold item ids in CSR form like MetroGraph: items of cell c live in [offsets[c], offsets[c + 1]).
+// An item is listed in every cell its box touches; queries report it once.
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+final class SpatialGrid {
+    private final float[] bounds; // minX, minY, maxX, maxY per item
+    private final double originX;
+    private final double originY;
+    private final double cellSize;
+    private final int columns;
+    private final int rows;
+    private final int[] offsets;
+    private final int[] items;
+
+    // Stamp per item so an item spanning several cells is visited once per query; FX thread only
+    private final int[] seen;
+    private int stamp;
+
+    private SpatialGrid(float[] bounds, double originX, double originY, double cellSize, int columns, int rows,
+            int[] offsets, int[] items) {
+        this.bounds = bounds;
+        this.originX = originX;
+        this.originY = originY;
+        this.cellSize = cellSize;
+        this.columns = columns;
+        this.rows = rows;
+        this.offsets = offsets;
+        this.items = items;
+        this.seen = new int[bounds.length / 4];
+    }
+
+    // bounds holds four floats per item; cellSize should be around the size of a typical box
+    static SpatialGrid build(float[] bounds, double cellSize) {
+        if (bounds.length % 4 != 0 || !(cellSize > 0))
+            throw new IllegalArgumentException("Need four bounds per item and a positive cell size");
+        int count = bounds.length / 4;
+        double minX = 0;
+        double minY = 0;
+        double maxX = 0;
+        double maxY = 0;
+        for (int i = 0; i < count; i++) {
+            minX = i == 0 ? bounds[0] : Math.min(minX, bounds[4 * i]);
+            minY = i == 0 ? bounds[1] : Math.min(minY, bounds[4 * i + 1]);
+            maxX = Math.max(i == 0 ? bounds[2] : maxX, bounds[4 * i + 2]);
+            maxY = Math.max(i == 0 ? bounds[3] : maxY, bounds[4 * i + 3]);
+        }
+        int columns = Math.max(1, (int) Math.ceil((maxX - minX) / cellSize));
+        int rows = Math.max(1, (int) Math.ceil((maxY - minY) / cellSize));
+        SpatialGrid sizing = new SpatialGrid(bounds, minX, minY, cellSize, columns, rows, null, null);
+
+        // Count per cell, prefix-sum, then fill: the same two passes as MetroGraph.Builder
+        int[] offsets = new int[columns * rows + 1];
+        for (int i = 0; i < count; i++) {
+            for (int r = sizing.row(bounds[4 * i + 1]); r <= sizing.row(bounds[4 * i + 3]); r++) {
+                for (int c = sizing.column(bounds[4 * i]); c <= sizing.column(bounds[4 * i + 2]); c++) {
+                    offsets[r * columns + c + 1]++;
+                }
+            }
+        }
+        for (int c = 0; c < columns * rows; c++) {
+            offsets[c + 1] += offsets[c];
+        }
+        int[] cursor = Arrays.copyOf(offsets, columns * rows);
+        int[] items = new int[offsets[columns * rows]];
+        for (int i = 0; i < count; i++) {
+            for (int r = sizing.row(bounds[4 * i + 1]); r <= sizing.row(bounds[4 * i + 3]); r++) {
+                for (int c = sizing.column(bounds[4 * i]); c <= sizing.column(bounds[4 * i + 2]); c++) {
+                    items[cursor[r * columns + c]++] = i;
+                }
+            }
+        }
+        return new SpatialGrid(bounds, minX, minY, cellSize, columns, rows, offsets, items);
+    }
+
+    int size() {
+        return seen.length;
+    }
+
+    // Visits every item whose box intersects [x0, x1] x [y0, y1], each once, in cell order
+    void query(double x0, double y0, double x1, double y1, IntConsumer visitor) {
+        if (x1 < x0 || y1 < y0)
+            return;
+        if (++stamp == 0) {
+            Arrays.fill(seen, 0);
+            stamp = 1;
+        }
+        for (int r = row(y0); r <= row(y1); r++) {
+            for (int c = column(x0); c <= column(x1); c++) {
+                int cell = r * columns + c;
+                for (int k = offsets[cell]; k < offsets[cell + 1]; k++) {
+                    int item = items[k];
+                    if (seen[item] == stamp || bounds[4 * item] > x1 || bounds[4 * item + 2] < x0
+                            || bounds[4 * item + 1] > y1 || bounds[4 * item + 3] < y0)
+                        continue;
+                    seen[item] = stamp;
+                    visitor.accept(item);
+                }
+            }
+        }
+    }
+
+    // Item whose point (px[i], py[i]) is closest to (x, y) within radius, or -1. The point must lie inside the
+    // item's box, which holds for stations: their boxes cover the drawn circle and label.
+    int nearest(double x, double y, double radius, float[] px, float[] py) {
+        int[] best = { -1 };
+        double[] bestDistance = { radius * radius };
+        query(x - radius, y - radius, x + radius, y + radius, item -> {
+            double dx = px[item] - x;
+            double dy = py[item] - y;
+            double d = dx * dx + dy * dy;
+            if (d <= bestDistance[0]) {
+                bestDistance[0] = d;
+                best[0] = item;
+            }
+        });
+        return best[0];
+    }
+
+    // Cells clamp to the grid, so a query reaching past the indexed area still sees the edge cells
+    private int column(double x) {
+        return Math.max(0, Math.min(columns - 1, (int) Math.floor((x - originX) / cellSize)));
+    }
+
+    private int row(double y) {
+        return Math.max(0, Math.min(rows - 1, (int) Math.floor((y - originY) / cellSize)));
+    }
+}
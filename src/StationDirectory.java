@@ -0,0 +1,307 @@
+// Station name dictionary: id -> name array, open-addressing hash for exact/alias lookup and a
+// trie for prefix lookup. Built once; lookups are O(1) / O(length) and do not allocate.
+// Keys are matched case-insensitively, ignoring surrounding and repeated whitespace.
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public final class StationDirectory {
+    private final String[] names; // id -> display name
+
+    // Every searchable key (names and aliases, normalised) with its station, in insertion order
+    private final String[] entryKeys;
+    private final int[] entryIds;
+
+    // Open-addressing hash with linear probing; keys are stored normalised
+    private final String[] keys;
+    private final int[] values;
+    private final int mask;
+
+    // Trie in flat arrays: node 0 is the root, children are a first-child / next-sibling list
+    private final char[] label;
+    private final int[] firstChild;
+    private final int[] nextSibling;
+    private final int[] terminal; // station id ending at this node, or -1
+
+    private StationDirectory(String[] names, String[] entryKeys, int[] entryIds, String[] keys, int[] values,
+            char[] label, int[] firstChild, int[] nextSibling, int[] terminal) {
+        this.names = names;
+        this.entryKeys = entryKeys;
+        this.entryIds = entryIds;
+        this.keys = keys;
+        this.values = values;
+        this.mask = keys.length - 1;
+        this.label = label;
+        this.firstChild = firstChild;
+        this.nextSibling = nextSibling;
+        this.terminal = terminal;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public String name(int id) {
+        return id >= 0 && id < names.length ? names[id] : "Unknown Station";
+    }
+
+    public int entryCount() {
+        return entryKeys.length;
+    }
+
+    // Normalised name or alias of entry i
+    public String entryKey(int entry) {
+        return entryKeys[entry];
+    }
+
+    public int entryStation(int entry) {
+        return entryIds[entry];
+    }
+
+    // Exact name or alias lookup, -1 when unknown
+    public int lookup(CharSequence name) {
+        if (name == null)
+            return -1;
+        for (int slot = hash(name) & mask;; slot = (slot + 1) & mask) {
+            String key = keys[slot];
+            if (key == null)
+                return -1;
+            if (matches(key, name))
+                return values[slot];
+        }
+    }
+
+    // Writes the ids of stations with a name or alias starting with prefix into out (each id once,
+    // in trie order) and returns how many were written
+    public int findByPrefix(CharSequence prefix, int[] out) {
+        int node = 0;
+        int end = trimEnd(prefix);
+        boolean space = false;
+        for (int i = trimStart(prefix); i < end && node >= 0; i++) {
+            char c = prefix.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = true;
+                continue;
+            }
+            if (space) {
+                node = child(node, ' ');
+                space = false;
+                if (node < 0)
+                    break;
+            }
+            node = child(node, Character.toLowerCase(c));
+        }
+        return node < 0 ? 0 : collect(node, out, 0);
+    }
+
+    private int child(int node, char c) {
+        for (int ch = firstChild[node]; ch >= 0; ch = nextSibling[ch]) {
+            if (label[ch] == c)
+                return ch;
+        }
+        return -1;
+    }
+
+    private int collect(int node, int[] out, int count) {
+        if (count == out.length)
+            return count;
+        int id = terminal[node];
+        if (id >= 0 && !contains(out, count, id))
+            out[count++] = id;
+        for (int ch = firstChild[node]; ch >= 0 && count < out.length; ch = nextSibling[ch]) {
+            count = collect(ch, out, count);
+        }
+        return count;
+    }
+
+    private static boolean contains(int[] ids, int count, int id) {
+        for (int i = 0; i < count; i++) {
+            if (ids[i] == id)
+                return true;
+        }
+        return false;
+    }
+
+    // ===== NORMALISATION =====
+    // Both functions walk the same virtual string: trimmed, lower-cased, whitespace runs as one space
+
+    static int hash(CharSequence s) {
+        int h = 0;
+        boolean space = false;
+        for (int i = trimStart(s), end = trimEnd(s); i < end; i++) {
+            char c = s.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = true;
+                continue;
+            }
+            if (space) {
+                h = 31 * h + ' ';
+                space = false;
+            }
+            h = 31 * h + Character.toLowerCase(c);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean matches(String key, CharSequence s) {
+        int k = 0;
+        boolean space = false;
+        for (int i = trimStart(s), end = trimEnd(s); i < end; i++) {
+            char c = s.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = true;
+                continue;
+            }
+            if (space) {
+                if (k == key.length() || key.charAt(k++) != ' ')
+                    return false;
+                space = false;
+            }
+            if (k == key.length() || key.charAt(k++) != Character.toLowerCase(c))
+                return false;
+        }
+        return k == key.length();
+    }
+
+    static String normalize(CharSequence s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        boolean space = false;
+        for (int i = trimStart(s), end = trimEnd(s); i < end; i++) {
+            char c = s.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = true;
+                continue;
+            }
+            if (space) {
+                sb.append(' ');
+                space = false;
+            }
+            sb.append(Character.toLowerCase(c));
+        }
+        return sb.toString();
+    }
+
+    private static int trimStart(CharSequence s) {
+        int i = 0;
+        while (i < s.length() && Character.isWhitespace(s.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int trimEnd(CharSequence s) {
+        int end = s.length();
+        while (end > 0 && Character.isWhitespace(s.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    // Stations and aliases can be added in any order; ids must be dense from 0
+    public static final class Builder {
+        private String[] names = new String[32];
+        private int stationCount;
+        private String[] entryKeys = new String[64];
+        private int[] entryIds = new int[64];
+        private int entries;
+        private final Map<String, Integer> seen = new HashMap<>();
+
+        private Builder() {
+        }
+
+        public Builder addStation(int id, String name) {
+            if (id < 0)
+                throw new IllegalArgumentException("Negative station id for " + name);
+            if (id >= names.length)
+                names = Arrays.copyOf(names, Math.max(id + 1, names.length * 2));
+            if (names[id] != null)
+                throw new IllegalArgumentException("Station id " + id + " used by both " + names[id] + " and " + name);
+            names[id] = name.trim();
+            stationCount = Math.max(stationCount, id + 1);
+            return addAlias(id, name);
+        }
+
+        public Builder addAlias(int id, String alias) {
+            String key = normalize(alias);
+            if (key.isEmpty())
+                throw new IllegalArgumentException("Empty name for station " + id);
+            Integer existing = seen.putIfAbsent(key, id);
+            if (existing != null) {
+                if (existing != id)
+                    throw new IllegalArgumentException("'" + alias + "' names both station " + existing + " and " + id);
+                return this;
+            }
+            if (entries == entryKeys.length) {
+                entryKeys = Arrays.copyOf(entryKeys, entries * 2);
+                entryIds = Arrays.copyOf(entryIds, entries * 2);
+            }
+            entryKeys[entries] = key;
+            entryIds[entries] = id;
+            entries++;
+            return this;
+        }
+
+        public StationDirectory build() {
+            String[] stationNames = Arrays.copyOf(names, stationCount);
+            for (int i = 0; i < stationCount; i++) {
+                if (stationNames[i] == null)
+                    throw new IllegalStateException("No station with id " + i);
+            }
+
+            int capacity = Integer.highestOneBit(Math.max(4, entries * 2 - 1)) << 1;
+            String[] keys = new String[capacity];
+            int[] values = new int[capacity];
+            for (int i = 0; i < entries; i++) {
+                int slot = hash(entryKeys[i]) & (capacity - 1);
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                keys[slot] = entryKeys[i];
+                values[slot] = entryIds[i];
+            }
+
+            int maxNodes = 1;
+            for (int i = 0; i < entries; i++) {
+                maxNodes += entryKeys[i].length();
+            }
+            char[] label = new char[maxNodes];
+            int[] firstChild = new int[maxNodes];
+            int[] nextSibling = new int[maxNodes];
+            int[] terminal = new int[maxNodes];
+            Arrays.fill(firstChild, -1);
+            Arrays.fill(nextSibling, -1);
+            Arrays.fill(terminal, -1);
+            int nodes = 1;
+            for (int i = 0; i < entries; i++) {
+                String key = entryKeys[i];
+                int node = 0;
+                for (int c = 0; c < key.length(); c++) {
+                    char ch = key.charAt(c);
+                    int next = -1;
+                    for (int k = firstChild[node]; k >= 0; k = nextSibling[k]) {
+                        if (label[k] == ch) {
+                            next = k;
+                            break;
+                        }
+                    }
+                    if (next < 0) {
+                        next = nodes++;
+                        label[next] = ch;
+                        nextSibling[next] = firstChild[node];
+                        firstChild[node] = next;
+                    }
+                    node = next;
+                }
+                terminal[node] = entryIds[i];
+            }
+
+            return new StationDirectory(stationNames, Arrays.copyOf(entryKeys, entries), Arrays.copyOf(entryIds, entries),
+                    keys, values, Arrays.copyOf(label, nodes),
+                    Arrays.copyOf(firstChild, nodes), Arrays.copyOf(nextSibling, nodes), Arrays.copyOf(terminal, nodes));
+        }
+    }
+}
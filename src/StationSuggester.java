@@ -0,0 +1,340 @@
+// Ranked "did you mean" suggestions for station names.
+// Candidates come from a trigram inverted index over every name and alias, so a query only touches
+// entries that share at least one trigram with it. The best candidates are then re-scored with a
+// bounded edit distance (typos, swapped letters) and prefix/substring bonuses.
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public final class StationSuggester {
+    static final float MIN_SCORE = 0.3f;
+    private static final int RERANK_FACTOR = 4;
+    private static final int MIN_RERANK = 16;
+
+    private final StationDirectory directory;
+    private final int[] entryGramCount;
+
+    // Inverted index: gram -> entries, as open-addressing gram table plus CSR postings
+    private final long[] gramKeys;
+    private final int[] gramSlot;
+    private final int gramMask;
+    private final int[] postingOffsets;
+    private final int[] postings;
+
+    private final ThreadLocal<Scratch> scratch;
+
+    public StationSuggester(StationDirectory directory) {
+        this.directory = directory;
+        int entries = directory.entryCount();
+        entryGramCount = new int[entries];
+
+        long[][] entryGrams = new long[entries][];
+        int totalGrams = 0;
+        for (int e = 0; e < entries; e++) {
+            entryGrams[e] = grams(directory.entryKey(e));
+            entryGramCount[e] = entryGrams[e].length;
+            totalGrams += entryGrams[e].length;
+        }
+
+        int capacity = Integer.highestOneBit(Math.max(4, totalGrams * 2 - 1)) << 1;
+        gramKeys = new long[capacity];
+        gramSlot = new int[capacity];
+        gramMask = capacity - 1;
+        Arrays.fill(gramSlot, -1);
+
+        // First pass: assign a dense index per distinct gram and count its postings
+        int[] counts = new int[totalGrams + 1];
+        int distinct = 0;
+        for (long[] gs : entryGrams) {
+            for (long g : gs) {
+                int slot = findSlot(g);
+                if (gramSlot[slot] < 0) {
+                    gramKeys[slot] = g;
+                    gramSlot[slot] = distinct++;
+                }
+                counts[gramSlot[slot]]++;
+            }
+        }
+
+        postingOffsets = new int[distinct + 1];
+        for (int i = 0; i < distinct; i++) {
+            postingOffsets[i + 1] = postingOffsets[i] + counts[i];
+        }
+        postings = new int[postingOffsets[distinct]];
+        int[] cursor = Arrays.copyOf(postingOffsets, distinct);
+        for (int e = 0; e < entries; e++) {
+            for (long g : entryGrams[e]) {
+                postings[cursor[gramSlot[findSlot(g)]]++] = e;
+            }
+        }
+
+        int stations = directory.size();
+        scratch = ThreadLocal.withInitial(() -> new Scratch(entries, stations));
+    }
+
+    // Up to k stations ranked by similarity to the query, best first; empty for blank input
+    public List<Suggestion> suggest(String query, int k) {
+        if (query == null || k <= 0)
+            return Collections.emptyList();
+        String q = StationDirectory.normalize(query);
+        if (q.isEmpty())
+            return Collections.emptyList();
+
+        Scratch s = scratch.get();
+        s.reset();
+
+        // Exact name or alias always wins
+        int exact = directory.lookup(q);
+        if (exact >= 0)
+            s.offer(exact, 1f, -1);
+
+        // Candidate generation: count shared trigrams per entry
+        long[] queryGrams = grams(q);
+        for (long g : queryGrams) {
+            int slot = findSlot(g);
+            int gram = gramSlot[slot];
+            if (gram < 0)
+                continue;
+            for (int p = postingOffsets[gram], end = postingOffsets[gram + 1]; p < end; p++) {
+                s.hit(postings[p]);
+            }
+        }
+
+        // Keep the entries with the best trigram (Dice) overlap for re-scoring
+        int rerank = Math.max(k * RERANK_FACTOR, MIN_RERANK);
+        int candidates = s.topByDice(queryGrams.length, entryGramCount, rerank);
+
+        // Short queries share few trigrams; let prefix matches through as well
+        if (candidates < rerank) {
+            int found = directory.findByPrefix(q, s.prefixIds);
+            for (int i = 0; i < found; i++) {
+                int station = s.prefixIds[i];
+                s.offer(station, score(q, StationDirectory.normalize(directory.name(station)), 0f, s), -1);
+            }
+        }
+
+        for (int i = 0; i < candidates; i++) {
+            int entry = s.candidates[i];
+            float dice = 2f * s.counts[entry] / (queryGrams.length + entryGramCount[entry]);
+            s.offer(directory.entryStation(entry), score(q, directory.entryKey(entry), dice, s), entry);
+        }
+
+        return s.results(k, directory);
+    }
+
+    // Combined similarity in [0, 1] of the normalised query against one normalised key
+    private static float score(String q, String key, float dice, Scratch s) {
+        if (key.equals(q))
+            return 1f;
+        int longer = Math.max(q.length(), key.length());
+        float best = dice;
+
+        // Typo tolerance: up to a third of the characters may be wrong
+        int limit = Math.max(1, longer / 3);
+        int distance = s.editDistance(q, key, limit);
+        if (distance <= limit)
+            best = Math.max(best, 1f - (float) distance / longer);
+
+        float lengthRatio = (float) Math.min(q.length(), key.length()) / longer;
+        if (key.startsWith(q))
+            best = Math.max(best, 0.85f + 0.14f * lengthRatio);
+        else if (key.contains(q) || q.contains(key))
+            best = Math.max(best, 0.7f + 0.2f * lengthRatio);
+        return Math.min(best, 0.99f);
+    }
+
+    private int findSlot(long gram) {
+        int slot = (int) (gram ^ (gram >>> 29) ^ (gram >>> 17)) * 0x9E3779B9 & gramMask;
+        while (gramSlot[slot] >= 0 && gramKeys[slot] != gram) {
+            slot = (slot + 1) & gramMask;
+        }
+        return slot;
+    }
+
+    // Distinct trigrams of "  key " packed as three 16-bit chars
+    static long[] grams(String key) {
+        String padded = "  " + key + " ";
+        long[] out = new long[padded.length() - 2];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = ((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2);
+        }
+        Arrays.sort(out);
+        int n = 0;
+        for (int i = 0; i < out.length; i++) {
+            if (i == 0 || out[i] != out[i - 1])
+                out[n++] = out[i];
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    public static final class Suggestion {
+        private final int station;
+        private final String name;
+        private final String matched;
+        private final float score;
+
+        Suggestion(int station, String name, String matched, float score) {
+            this.station = station;
+            this.name = name;
+            this.matched = matched;
+            this.score = score;
+        }
+
+        public int station() {
+            return station;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        // The name or alias that matched, normalised
+        public String matched() {
+            return matched;
+        }
+
+        public float score() {
+            return score;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    // Per-thread query buffers, sized to the directory once
+    private static final class Scratch {
+        final int[] counts; // entry -> shared trigrams with the query
+        final int[] touched;
+        int touchedCount;
+        final int[] candidates;
+        final int[] prefixIds = new int[MIN_RERANK];
+        final float[] best; // station -> best score so far
+        final int[] bestEntry;
+        final int[] stationsSeen;
+        int stationCount;
+        int[] previousRow = new int[32];
+        int[] row = new int[32];
+        int[] beforeRow = new int[32];
+
+        Scratch(int entries, int stations) {
+            counts = new int[entries];
+            touched = new int[entries];
+            candidates = new int[entries];
+            best = new float[stations];
+            bestEntry = new int[stations];
+            stationsSeen = new int[stations];
+        }
+
+        void reset() {
+            for (int i = 0; i < touchedCount; i++) {
+                counts[touched[i]] = 0;
+            }
+            touchedCount = 0;
+            for (int i = 0; i < stationCount; i++) {
+                best[stationsSeen[i]] = 0f;
+            }
+            stationCount = 0;
+        }
+
+        void hit(int entry) {
+            if (counts[entry]++ == 0)
+                touched[touchedCount++] = entry;
+        }
+
+        // Partial selection of the `limit` touched entries with the highest Dice coefficient
+        int topByDice(int queryGrams, int[] entryGramCount, int limit) {
+            int n = 0;
+            for (int i = 0; i < touchedCount; i++) {
+                int entry = touched[i];
+                float dice = 2f * counts[entry] / (queryGrams + entryGramCount[entry]);
+                if (n < limit) {
+                    candidates[n++] = entry;
+                    continue;
+                }
+                int worst = 0;
+                float worstDice = Float.MAX_VALUE;
+                for (int j = 0; j < n; j++) {
+                    int c = candidates[j];
+                    float d = 2f * counts[c] / (queryGrams + entryGramCount[c]);
+                    if (d < worstDice) {
+                        worstDice = d;
+                        worst = j;
+                    }
+                }
+                if (dice > worstDice)
+                    candidates[worst] = entry;
+            }
+            return n;
+        }
+
+        void offer(int station, float score, int entry) {
+            if (score < MIN_SCORE)
+                return;
+            if (best[station] == 0f)
+                stationsSeen[stationCount++] = station;
+            if (score > best[station]) {
+                best[station] = score;
+                bestEntry[station] = entry;
+            }
+        }
+
+        List<Suggestion> results(int k, StationDirectory directory) {
+            Integer[] order = new Integer[stationCount];
+            for (int i = 0; i < stationCount; i++) {
+                order[i] = stationsSeen[i];
+            }
+            Arrays.sort(order, (a, b) -> {
+                int byScore = Float.compare(best[b], best[a]);
+                return byScore != 0 ? byScore : directory.name(a).compareTo(directory.name(b));
+            });
+            List<Suggestion> out = new ArrayList<>(Math.min(k, stationCount));
+            for (int i = 0; i < order.length && i < k; i++) {
+                int station = order[i];
+                int entry = bestEntry[station];
+                String matched = entry >= 0 ? directory.entryKey(entry) : StationDirectory.normalize(directory.name(station));
+                out.add(new Suggestion(station, directory.name(station), matched, best[station]));
+            }
+            return out;
+        }
+
+        // Optimal string alignment distance, giving up (returning limit + 1) once it must exceed limit
+        int editDistance(String a, String b, int limit) {
+            int n = a.length();
+            int m = b.length();
+            if (Math.abs(n - m) > limit)
+                return limit + 1;
+            if (row.length <= m) {
+                row = new int[m + 1];
+                previousRow = new int[m + 1];
+                beforeRow = new int[m + 1];
+            }
+            for (int j = 0; j <= m; j++) {
+                previousRow[j] = j;
+            }
+            for (int i = 1; i <= n; i++) {
+                row[0] = i;
+                int rowMin = i;
+                char ca = a.charAt(i - 1);
+                for (int j = 1; j <= m; j++) {
+                    char cb = b.charAt(j - 1);
+                    int cost = ca == cb ? 0 : 1;
+                    int v = Math.min(Math.min(row[j - 1] + 1, previousRow[j] + 1), previousRow[j - 1] + cost);
+                    if (i > 1 && j > 1 && ca == b.charAt(j - 2) && a.charAt(i - 2) == cb)
+                        v = Math.min(v, beforeRow[j - 2] + 1);
+                    row[j] = v;
+                    rowMin = Math.min(rowMin, v);
+                }
+                if (rowMin > limit)
+                    return limit + 1;
+                int[] t = beforeRow;
+                beforeRow = previousRow;
+                previousRow = row;
+                row = t;
+            }
+            return previousRow[m];
+        }
+    }
+}
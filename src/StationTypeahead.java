@@ -0,0 +1,178 @@
+// Type-to-filter for an editable station ComboBox.
+// Keystrokes are debounced and matched on a background executor; only the newest keystroke's result
+// reaches the FX thread, as one items update. Each query narrows the previous query's matches when
+// the user keeps typing, so the work per keystroke shrinks as the text gets longer.
+import javafx.application.Platform;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.TextField;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public final class StationTypeahead {
+    static final long DEBOUNCE_MS = 120;
+    static final int FUZZY_SUGGESTIONS = 8;
+
+    private final MetroNetwork network;
+    private final StationDirectory directory;
+    private final ComboBox<String> comboBox;
+    private final ScheduledExecutorService executor;
+    private final List<String> allNames; // sorted display names, shown for an empty box
+
+    // Bumped on every keystroke; a query whose generation is no longer current is dropped
+    private final AtomicLong generation = new AtomicLong();
+    private ScheduledFuture<?> pending; // FX thread only
+    private boolean publishing; // FX thread only
+
+    // Owned by the executor thread: the last query and the directory entries it matched
+    private String lastQuery = "";
+    private int[] lastMatches;
+    private int lastMatchCount;
+    private final int[] scratch;
+    private final int[] rank;
+    private final boolean[] seen;
+
+    // The executor must run tasks one at a time (a single-thread scheduler) for the narrowing state
+    public StationTypeahead(MetroNetwork network, ComboBox<String> comboBox, List<String> allNames,
+            ScheduledExecutorService executor) {
+        this.network = network;
+        this.directory = network.stations();
+        this.comboBox = comboBox;
+        this.executor = executor;
+        this.allNames = List.copyOf(allNames);
+        int entries = directory.entryCount();
+        this.lastMatches = new int[entries];
+        this.scratch = new int[entries];
+        this.rank = new int[entries];
+        this.seen = new boolean[directory.size()];
+        resetMatches();
+
+        comboBox.getEditor().textProperty().addListener((obs, oldText, newText) -> onTextChanged(newText));
+    }
+
+    private void onTextChanged(String text) {
+        if (publishing)
+            return;
+        long current = generation.incrementAndGet();
+        if (pending != null)
+            pending.cancel(false);
+        String query = text == null ? "" : text;
+        pending = executor.schedule(() -> filter(query, current), DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // ===== BACKGROUND =====
+
+    private void filter(String text, long current) {
+        if (generation.get() != current)
+            return;
+        String query = StationDirectory.normalize(text);
+        // A complete station name keeps the full list so the drop-down still offers every station
+        List<String> items = query.isEmpty() || directory.lookup(query) >= 0 ? allNames : match(query);
+        if (generation.get() != current)
+            return;
+        Platform.runLater(() -> publish(text, items, current));
+    }
+
+    private List<String> match(String query) {
+        // Substring matches of a longer query are a subset of the shorter one's
+        int count;
+        if (!lastQuery.isEmpty() && query.startsWith(lastQuery)) {
+            count = narrow(query, lastMatches, lastMatchCount);
+        } else {
+            resetMatches();
+            count = narrow(query, lastMatches, lastMatchCount);
+        }
+        System.arraycopy(scratch, 0, lastMatches, 0, count);
+        lastMatchCount = count;
+        lastQuery = query;
+
+        if (count == 0) {
+            // Nothing contains the text: fall back to ranked typo correction
+            List<String> names = new ArrayList<>(FUZZY_SUGGESTIONS);
+            for (StationSuggester.Suggestion suggestion : network.suggest(query, FUZZY_SUGGESTIONS)) {
+                names.add(suggestion.name());
+            }
+            return names;
+        }
+        return rankedNames(query, count);
+    }
+
+    // Writes the entries among candidates whose key contains query into scratch
+    private int narrow(String query, int[] candidates, int candidateCount) {
+        int count = 0;
+        for (int i = 0; i < candidateCount; i++) {
+            int entry = candidates[i];
+            if (directory.entryKey(entry).contains(query))
+                scratch[count++] = entry;
+        }
+        return count;
+    }
+
+    // Whole-name prefix first, then a word starting with the query, then any substring;
+    // alphabetical within a rank, each station once
+    private List<String> rankedNames(String query, int count) {
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            int entry = lastMatches[i];
+            String key = directory.entryKey(entry);
+            int at = key.indexOf(query);
+            rank[entry] = at == 0 ? 0 : key.charAt(at - 1) == ' ' ? 1 : 2;
+            order[i] = entry;
+        }
+        Arrays.sort(order, (a, b) -> {
+            int byRank = Integer.compare(rank[a], rank[b]);
+            return byRank != 0 ? byRank
+                    : directory.name(directory.entryStation(a)).compareTo(directory.name(directory.entryStation(b)));
+        });
+        List<String> names = new ArrayList<>(count);
+        for (Integer entry : order) {
+            int station = directory.entryStation(entry);
+            if (!seen[station]) {
+                seen[station] = true;
+                names.add(directory.name(station));
+            }
+        }
+        for (Integer entry : order) {
+            seen[directory.entryStation(entry)] = false;
+        }
+        return names;
+    }
+
+    private void resetMatches() {
+        lastMatchCount = directory.entryCount();
+        for (int i = 0; i < lastMatchCount; i++) {
+            lastMatches[i] = i;
+        }
+        lastQuery = "";
+    }
+
+    // ===== FX THREAD =====
+
+    private void publish(String text, List<String> items, long current) {
+        if (generation.get() != current)
+            return;
+        TextField editor = comboBox.getEditor();
+        int caret = editor.getCaretPosition();
+        publishing = true;
+        try {
+            comboBox.getItems().setAll(items);
+            // Replacing the items can reset the editor; put the typed text back
+            if (!text.equals(editor.getText()))
+                editor.setText(text);
+            editor.positionCaret(Math.min(caret, text.length()));
+        } finally {
+            publishing = false;
+        }
+
+        boolean typing = editor.isFocused() && !text.isBlank() && network.stationIndex(text) < 0;
+        if (typing && !items.isEmpty()) {
+            comboBox.show();
+        } else if (items.isEmpty()) {
+            comboBox.hide();
+        }
+    }
+}
@@ -0,0 +1,482 @@
+// A day of scheduled train movements, answered with the Connection Scan Algorithm (CSA).
+// Every hop of every trip is one connection; connections are kept in one flat record array sorted by
+// departure, so a query binary-searches to the requested time and scans forward once. Times are seconds
+// of the day. Like MetroGraph, the arrays are buffers so a network snapshot can map them without copying.
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+public final class Timetable {
+    // Sort keys pack departure, arrival and index into one long
+    static final int MAX_TIME = (1 << 20) - 1; // about 12 days, enough for after-midnight trips
+    static final int MAX_CONNECTIONS = 1 << 23;
+
+    private final int stops;
+    private final int trips;
+
+    // Connection i is the record at [i * STRIDE, (i + 1) * STRIDE), fields in the order the scan reads them;
+    // one record per connection keeps the scan on a single buffer, which is much cheaper than five
+    static final int STRIDE = 5;
+    static final int DEP_TIME = 0;
+    static final int TRIP = 1;
+    static final int DEP_STOP = 2;
+    static final int ARR_STOP = 3;
+    static final int ARR_TIME = 4;
+    private final IntBuffer records;
+    private final int connections;
+
+    // Walking links between stops, in CSR form
+    private final IntBuffer footOffsets;
+    private final IntBuffer footTargets;
+    private final IntBuffer footSeconds;
+
+    private final ThreadLocal<ScanContext> contexts;
+
+    private Timetable(int stops, int trips, IntBuffer records, IntBuffer footOffsets, IntBuffer footTargets,
+            IntBuffer footSeconds) {
+        this.stops = stops;
+        this.trips = trips;
+        this.records = records;
+        this.connections = records.limit() / STRIDE;
+        this.footOffsets = footOffsets;
+        this.footTargets = footTargets;
+        this.footSeconds = footSeconds;
+        this.contexts = ThreadLocal.withInitial(() -> new ScanContext(stops, trips));
+    }
+
+    public static Builder builder(int stopCount) {
+        return new Builder(stopCount);
+    }
+
+    // Wraps existing buffers without copying or re-sorting; connections must already be in scan order
+    static Timetable wrap(int stops, int trips, IntBuffer records, IntBuffer footOffsets, IntBuffer footTargets,
+            IntBuffer footSeconds) {
+        if (records.limit() % STRIDE != 0 || footOffsets.limit() != stops + 1
+                || footTargets.limit() != footSeconds.limit())
+            throw new IllegalArgumentException("Inconsistent timetable buffers");
+        return new Timetable(stops, trips, records, footOffsets, footTargets, footSeconds);
+    }
+
+    // Read-only views for writing snapshots, in the order wrap() takes them
+    IntBuffer[] buffers() {
+        IntBuffer[] all = { records, footOffsets, footTargets, footSeconds };
+        for (int i = 0; i < all.length; i++) {
+            all[i] = all[i].asReadOnlyBuffer();
+        }
+        return all;
+    }
+
+    public int stopCount() {
+        return stops;
+    }
+
+    public int tripCount() {
+        return trips;
+    }
+
+    public int connectionCount() {
+        return connections;
+    }
+
+    public int departureStop(int connection) {
+        return records.get(connection * STRIDE + DEP_STOP);
+    }
+
+    public int arrivalStop(int connection) {
+        return records.get(connection * STRIDE + ARR_STOP);
+    }
+
+    public int departureTime(int connection) {
+        return records.get(connection * STRIDE + DEP_TIME);
+    }
+
+    public int arrivalTime(int connection) {
+        return records.get(connection * STRIDE + ARR_TIME);
+    }
+
+    public int trip(int connection) {
+        return records.get(connection * STRIDE + TRIP);
+    }
+
+    // Index of the first connection departing at or after the given second
+    public int firstConnectionAfter(int second) {
+        int lo = 0;
+        int hi = connections;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (records.get(mid * STRIDE + DEP_TIME) < second)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    // Departure second of the next train from one stop straight to the next, or -1 if none runs today
+    public int nextDeparture(int from, int to, int second) {
+        for (int c = firstConnectionAfter(second); c < connections; c++) {
+            int at = c * STRIDE;
+            if (records.get(at + DEP_STOP) == from && records.get(at + ARR_STOP) == to)
+                return records.get(at + DEP_TIME);
+        }
+        return -1;
+    }
+
+    // Rides (or walks) one fixed sequence of stations, taking the first train for each hop; consecutive hops on
+    // the same trip become one leg. Not found if some hop has no train left today and no footpath.
+    public Journey along(int[] stations, int second) {
+        int source = stations[0];
+        int destination = stations[stations.length - 1];
+        int hops = stations.length - 1;
+        int[] from = new int[hops];
+        int[] to = new int[hops];
+        int[] departure = new int[hops];
+        int[] arrival = new int[hops];
+        int[] trips = new int[hops];
+        int legs = 0;
+        int time = second;
+        for (int i = 0; i < hops; i++) {
+            int u = stations[i];
+            int v = stations[i + 1];
+            checkStop(u);
+            checkStop(v);
+            int walk = footpathSeconds(u, v);
+            int ride = -1;
+            for (int c = firstConnectionAfter(time); c < connections; c++) {
+                int at = c * STRIDE;
+                if (records.get(at + DEP_STOP) == u && records.get(at + ARR_STOP) == v) {
+                    ride = c;
+                    break;
+                }
+            }
+            if (ride >= 0 && (walk < 0 || arrivalTime(ride) <= time + walk)) {
+                if (legs > 0 && trips[legs - 1] == trip(ride) && to[legs - 1] == u) {
+                    to[legs - 1] = v;
+                    arrival[legs - 1] = arrivalTime(ride);
+                } else {
+                    from[legs] = u;
+                    to[legs] = v;
+                    departure[legs] = departureTime(ride);
+                    arrival[legs] = arrivalTime(ride);
+                    trips[legs] = trip(ride);
+                    legs++;
+                }
+            } else if (walk >= 0) {
+                from[legs] = u;
+                to[legs] = v;
+                departure[legs] = time;
+                arrival[legs] = time + walk;
+                trips[legs] = -1;
+                legs++;
+            } else {
+                return Journey.notFound(source, destination, second);
+            }
+            time = arrival[legs - 1];
+        }
+        return new Journey(source, destination, second, Arrays.copyOf(from, legs), Arrays.copyOf(to, legs),
+                Arrays.copyOf(departure, legs), Arrays.copyOf(arrival, legs), Arrays.copyOf(trips, legs));
+    }
+
+    // Walking time from one stop to another, or -1 without a footpath
+    public int footpathSeconds(int from, int to) {
+        for (int f = footOffsets.get(from), end = footOffsets.get(from + 1); f < end; f++) {
+            if (footTargets.get(f) == to)
+                return footSeconds.get(f);
+        }
+        return -1;
+    }
+
+    // Earliest arrival at destination when ready to leave source at the given second
+    public Journey earliestArrival(int source, int destination, int second) {
+        checkStop(source);
+        checkStop(destination);
+        ScanContext ctx = contexts.get();
+        ctx.reset();
+        ctx.reach(source, second, -1, -1, -1);
+        relaxFootpaths(ctx, source, second);
+
+        IntBuffer records = this.records;
+        int best = ctx.arrival(destination);
+        for (int c = firstConnectionAfter(second), end = connections; c < end; c++) {
+            int at = c * STRIDE;
+            // Nothing departing from here on can arrive any earlier
+            int departs = records.get(at + DEP_TIME);
+            if (departs >= best)
+                break;
+            int t = records.get(at + TRIP);
+            int board = ctx.boarded(t);
+            if (board < 0) {
+                if (ctx.arrival(records.get(at + DEP_STOP)) > departs)
+                    continue;
+                board = c;
+                ctx.board(t, c);
+            }
+            int to = records.get(at + ARR_STOP);
+            int arrives = records.get(at + ARR_TIME);
+            if (arrives < ctx.arrival(to)) {
+                ctx.reach(to, arrives, c, board, -1);
+                relaxFootpaths(ctx, to, arrives);
+                best = ctx.arrival(destination);
+            }
+        }
+        return ctx.toJourney(this, source, destination, second);
+    }
+
+    // One scan for every destination at once: fills arrival[stop] with the earliest arrival and departure[stop]
+    // with the departure of that journey's first leg, both -1 where no train gets there today
+    public void earliestArrivals(int source, int second, int[] arrival, int[] departure) {
+        checkStop(source);
+        if (arrival.length < stops || departure.length < stops)
+            throw new IllegalArgumentException("Result arrays need room for " + stops + " stops");
+        ScanContext ctx = contexts.get();
+        ctx.reset();
+        ctx.reach(source, second, -1, -1, -1);
+        relaxFootpaths(ctx, source, second);
+
+        IntBuffer records = this.records;
+        for (int c = firstConnectionAfter(second), end = connections; c < end; c++) {
+            int at = c * STRIDE;
+            int departs = records.get(at + DEP_TIME);
+            int t = records.get(at + TRIP);
+            if (ctx.boarded(t) < 0) {
+                if (ctx.arrival(records.get(at + DEP_STOP)) > departs)
+                    continue;
+                ctx.board(t, c);
+            }
+            int to = records.get(at + ARR_STOP);
+            int arrives = records.get(at + ARR_TIME);
+            if (arrives < ctx.arrival(to)) {
+                ctx.reach(to, arrives, c, ctx.boarded(t), -1);
+                relaxFootpaths(ctx, to, arrives);
+            }
+        }
+
+        // First-leg departures follow the journey pointers back to the source, memoised in departure[]
+        for (int stop = 0; stop < stops; stop++) {
+            int time = ctx.arrival(stop);
+            arrival[stop] = time == Integer.MAX_VALUE ? -1 : time;
+            departure[stop] = Integer.MIN_VALUE;
+        }
+        departure[source] = second;
+        for (int stop = 0; stop < stops; stop++) {
+            if (arrival[stop] >= 0)
+                firstDeparture(ctx, source, stop, departure);
+            else
+                departure[stop] = -1;
+        }
+    }
+
+    private int firstDeparture(ScanContext ctx, int source, int stop, int[] departure) {
+        if (departure[stop] != Integer.MIN_VALUE)
+            return departure[stop];
+        int from = ctx.inFoot[stop] >= 0 ? ctx.inFoot[stop] : departureStop(ctx.inBoard[stop]);
+        int leg = ctx.inFoot[stop] >= 0 ? ctx.inBoard[stop] : departureTime(ctx.inBoard[stop]);
+        int first = from == source ? leg : firstDeparture(ctx, source, from, departure);
+        departure[stop] = first;
+        return first;
+    }
+
+    private void relaxFootpaths(ScanContext ctx, int stop, int time) {
+        for (int f = footOffsets.get(stop), end = footOffsets.get(stop + 1); f < end; f++) {
+            int target = footTargets.get(f);
+            int arrival = time + footSeconds.get(f);
+            if (arrival < ctx.arrival(target))
+                ctx.reach(target, arrival, -1, time, stop);
+        }
+    }
+
+    private void checkStop(int stop) {
+        if (stop < 0 || stop >= stops)
+            throw new IllegalArgumentException("Unknown station index: " + stop);
+    }
+
+    // Per-thread scan state, stamped per query like RoutingEngine's search contexts
+    private static final class ScanContext {
+        final int[] arrival;
+        final int[] inConnection; // connection that reached the stop, or -1
+        final int[] inBoard; // where that connection's trip was boarded, or when the walk started
+        final int[] inFoot; // stop walked from, or -1
+        final int[] stopStamp;
+        final int[] tripBoard;
+        final int[] tripStamp;
+        final int[] legBuffer;
+        int generation;
+
+        ScanContext(int stops, int trips) {
+            arrival = new int[stops];
+            inConnection = new int[stops];
+            inBoard = new int[stops];
+            inFoot = new int[stops];
+            stopStamp = new int[stops];
+            tripBoard = new int[trips];
+            tripStamp = new int[trips];
+            legBuffer = new int[2 * stops + 2];
+        }
+
+        void reset() {
+            if (++generation == 0) {
+                Arrays.fill(stopStamp, 0);
+                Arrays.fill(tripStamp, 0);
+                generation = 1;
+            }
+        }
+
+        int arrival(int stop) {
+            return stopStamp[stop] == generation ? arrival[stop] : Integer.MAX_VALUE;
+        }
+
+        void reach(int stop, int time, int connection, int board, int walkedFrom) {
+            stopStamp[stop] = generation;
+            arrival[stop] = time;
+            inConnection[stop] = connection;
+            inBoard[stop] = board;
+            inFoot[stop] = walkedFrom;
+        }
+
+        int boarded(int trip) {
+            return tripStamp[trip] == generation ? tripBoard[trip] : -1;
+        }
+
+        void board(int trip, int connection) {
+            tripStamp[trip] = generation;
+            tripBoard[trip] = connection;
+        }
+
+        // Walks the journey pointers back from the destination, one ride or walk per leg
+        Journey toJourney(Timetable timetable, int source, int destination, int second) {
+            if (arrival(destination) == Integer.MAX_VALUE)
+                return Journey.notFound(source, destination, second);
+
+            int legs = 0;
+            for (int stop = destination; stop != source;) {
+                legBuffer[legs++] = stop;
+                stop = inFoot[stop] >= 0 ? inFoot[stop] : timetable.departureStop(inBoard[stop]);
+            }
+
+            int[] from = new int[legs];
+            int[] to = new int[legs];
+            int[] departure = new int[legs];
+            int[] arrive = new int[legs];
+            int[] trip = new int[legs];
+            for (int i = 0; i < legs; i++) {
+                int stop = legBuffer[legs - 1 - i];
+                to[i] = stop;
+                arrive[i] = arrival[stop];
+                if (inFoot[stop] >= 0) {
+                    from[i] = inFoot[stop];
+                    departure[i] = inBoard[stop];
+                    trip[i] = -1;
+                } else {
+                    int board = inBoard[stop];
+                    from[i] = timetable.departureStop(board);
+                    departure[i] = timetable.departureTime(board);
+                    trip[i] = timetable.trip(board);
+                }
+            }
+            return new Journey(source, destination, second, from, to, departure, arrive, trip);
+        }
+    }
+
+    // Collects connections in any order and sorts them by departure on build()
+    public static final class Builder {
+        private final int stopCount;
+        private int tripCount;
+        private int[] from = new int[256];
+        private int[] to = new int[256];
+        private int[] departs = new int[256];
+        private int[] arrives = new int[256];
+        private int[] trips = new int[256];
+        private int connections;
+        private final MetroGraph.Builder footpaths;
+
+        private Builder(int stopCount) {
+            if (stopCount < 0)
+                throw new IllegalArgumentException("Negative stop count: " + stopCount);
+            this.stopCount = stopCount;
+            this.footpaths = MetroGraph.builder(stopCount);
+        }
+
+        // Allocates the id for a new trip
+        public int newTrip() {
+            return tripCount++;
+        }
+
+        public Builder addConnection(int trip, int fromStop, int toStop, int departure, int arrival) {
+            if (fromStop < 0 || fromStop >= stopCount || toStop < 0 || toStop >= stopCount)
+                throw new IllegalArgumentException("Connection " + fromStop + " -> " + toStop + " outside 0.." + (stopCount - 1));
+            if (trip < 0 || trip >= tripCount)
+                throw new IllegalArgumentException("Unknown trip " + trip);
+            if (departure < 0 || arrival < departure || arrival > MAX_TIME)
+                throw new IllegalArgumentException("Connection " + fromStop + " -> " + toStop + " has bad times "
+                        + departure + " -> " + arrival);
+            if (connections == MAX_CONNECTIONS)
+                throw new IllegalStateException("Timetable holds at most " + MAX_CONNECTIONS + " connections");
+            if (connections == from.length) {
+                int capacity = connections * 2;
+                from = Arrays.copyOf(from, capacity);
+                to = Arrays.copyOf(to, capacity);
+                departs = Arrays.copyOf(departs, capacity);
+                arrives = Arrays.copyOf(arrives, capacity);
+                trips = Arrays.copyOf(trips, capacity);
+            }
+            from[connections] = fromStop;
+            to[connections] = toStop;
+            departs[connections] = departure;
+            arrives[connections] = arrival;
+            trips[connections] = trip;
+            connections++;
+            return this;
+        }
+
+        // Walking transfer in both directions
+        public Builder addFootpath(int a, int b, int seconds) {
+            if (seconds <= 0)
+                throw new IllegalArgumentException("Footpath " + a + " <-> " + b + " needs a positive walking time");
+            footpaths.connect(a, b, seconds);
+            return this;
+        }
+
+        public Timetable build() {
+            // Sort by departure, then arrival, so a zero-slack connection is scanned after the one feeding it;
+            // the original index rides along in the low bits
+            long[] order = new long[connections];
+            for (int i = 0; i < connections; i++) {
+                order[i] = ((long) departs[i] << 43) | ((long) arrives[i] << 23) | i;
+            }
+            Arrays.sort(order);
+
+            int[] records = new int[connections * STRIDE];
+            for (int i = 0; i < connections; i++) {
+                int c = (int) (order[i] & (MAX_CONNECTIONS - 1));
+                int at = i * STRIDE;
+                records[at + DEP_TIME] = departs[c];
+                records[at + TRIP] = trips[c];
+                records[at + DEP_STOP] = from[c];
+                records[at + ARR_STOP] = to[c];
+                records[at + ARR_TIME] = arrives[c];
+            }
+
+            MetroGraph walking = footpaths.build();
+            int[] footOffsets = new int[stopCount + 1];
+            int[] footTargets = new int[walking.edgeCount()];
+            int[] footSeconds = new int[walking.edgeCount()];
+            for (int s = 0; s < stopCount; s++) {
+                footOffsets[s + 1] = walking.endEdge(s);
+                for (int e = walking.firstEdge(s); e < walking.endEdge(s); e++) {
+                    footTargets[e] = walking.target(e);
+                    footSeconds[e] = Math.round(walking.weight(e));
+                }
+            }
+            return new Timetable(stopCount, tripCount, direct(records), direct(footOffsets), direct(footTargets),
+                    direct(footSeconds));
+        }
+
+        // Off-heap like a mapped snapshot, so the scan loop only ever sees one buffer class and stays fast
+        private static IntBuffer direct(int[] values) {
+            IntBuffer buffer = ByteBuffer.allocateDirect(4 * values.length).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            buffer.put(values).flip();
+            return buffer;
+        }
+    }
+}